@@ -0,0 +1,100 @@
+// Carico con 5000 client keep-alive concorrenti (k6: ogni VU riusa la sua connessione).
+//
+//   k6 run -e BASE_URL=http://localhost:8080 perf/k6/keepalive-5k.js
+//
+// Da lanciare due volte, con APP_VIRTUAL_THREADS=true e =false, e confrontare
+// http_reqs/s, p95/p99 di http_req_duration ed errori (vedi perf/README.md).
+import http from "k6/http";
+import { check, sleep } from "k6";
+import { Counter } from "k6/metrics";
+
+const BASE = __ENV.BASE_URL || "http://localhost:8080";
+const VUS = Number(__ENV.VUS || 5000);
+const USERS = Number(__ENV.USERS || 200); // utenti registrati in setup, condivisi tra i VU
+const GAMES = ["flappy", "snake", "tetris"];
+
+// pool BCrypt pieno: 429 con Retry-After (TooManyRequestsException)
+const rejected = new Counter("rejected_429");
+
+export const options = {
+    setupTimeout: "5m",
+    scenarios: {
+        // letture + submit con sessione: il grosso del traffico reale
+        players: {
+            executor: "ramping-vus",
+            startVUs: 0,
+            stages: [
+                { duration: "1m", target: VUS },
+                { duration: "3m", target: VUS },
+                { duration: "30s", target: 0 },
+            ],
+            exec: "player",
+        },
+        // login continui: mettono sotto pressione il pool BCrypt
+        logins: {
+            executor: "constant-arrival-rate",
+            rate: Number(__ENV.LOGIN_RATE || 50),
+            timeUnit: "1s",
+            duration: "4m",
+            preAllocatedVUs: 100,
+            exec: "login",
+        },
+    },
+    thresholds: {
+        http_req_failed: ["rate<0.01"],
+        "http_req_duration{kind:read}": ["p(95)<250"],
+        "http_req_duration{kind:submit}": ["p(95)<500"],
+    },
+};
+
+const JSON_HEADERS = { headers: { "Content-Type": "application/json" } };
+
+function credentials(i) {
+    return { username: `load_${i}`, password: "loadtest-pw" };
+}
+
+export function setup() {
+    for (let i = 0; i < USERS; i++) {
+        const c = credentials(i);
+        // 409 se esiste già da un giro precedente: va bene
+        http.post(`${BASE}/auth/register`,
+            JSON.stringify({ ...c, email: `${c.username}@load.test`, avatarId: 1 }), JSON_HEADERS);
+    }
+}
+
+export function player() {
+    const jar = http.cookieJar();
+    if (!jar.cookiesForURL(BASE).JSESSIONID) {
+        const c = credentials(__VU % USERS);
+        const res = http.post(`${BASE}/auth/login`, JSON.stringify(c), JSON_HEADERS);
+        check(res, { "login ok": (r) => r.status === 200 });
+    }
+
+    const game = GAMES[Math.floor(Math.random() * GAMES.length)];
+    const roll = Math.random();
+    let res;
+
+    if (roll < 0.5) {
+        res = http.get(`${BASE}/api/leaderboard/game/${game}?limit=20`, { tags: { kind: "read" } });
+    } else if (roll < 0.7) {
+        res = http.get(`${BASE}/api/leaderboard/global?limit=20`, { tags: { kind: "read" } });
+    } else if (roll < 0.85) {
+        res = http.get(`${BASE}/api/game/progress?gameCode=${game}`, { tags: { kind: "read" } });
+    } else {
+        res = http.post(`${BASE}/api/game/score`,
+            JSON.stringify({ gameCode: game, score: Math.floor(Math.random() * 5000) }),
+            { ...JSON_HEADERS, tags: { kind: "submit" } });
+    }
+
+    if (res.status === 429) rejected.add(1);
+    check(res, { "2xx": (r) => r.status >= 200 && r.status < 300 });
+
+    sleep(0.5 + Math.random()); // client "umani": connessione aperta, poche richieste al secondo
+}
+
+export function login() {
+    const c = credentials(Math.floor(Math.random() * USERS));
+    const res = http.post(`${BASE}/auth/login`, JSON.stringify(c), { ...JSON_HEADERS, tags: { kind: "login" } });
+    if (res.status === 429) rejected.add(1);
+    check(res, { "login ok": (r) => r.status === 200 });
+}
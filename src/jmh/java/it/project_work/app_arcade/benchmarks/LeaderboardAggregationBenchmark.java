@@ -0,0 +1,148 @@
+package it.project_work.app_arcade.benchmarks;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.project_work.app_arcade.dto.GameTopDTO;
+import it.project_work.app_arcade.dto.LeaderboardResponse;
+import it.project_work.app_arcade.dto.PlayerRankResponse;
+import it.project_work.app_arcade.leaderboard.LeaderboardEngine;
+import it.project_work.app_arcade.leaderboard.NoopLeaderboardCache;
+import it.project_work.app_arcade.leaderboard.PlayerRow;
+import it.project_work.app_arcade.leaderboard.ScoreRow;
+import it.project_work.app_arcade.repositories.ProgressRepository;
+import it.project_work.app_arcade.repositories.ScoreEventRepository;
+import it.project_work.app_arcade.repositories.UserRepository;
+import it.project_work.app_arcade.services.LeaderboardService;
+
+/**
+ * Aggregazione classifiche (LeaderboardService + motore in memoria) con 1k/100k/1M utenti
+ * sintetici, ognuno con un punteggio su ciascuno dei giochi.
+ *
+ * I repository sono finti (proxy che restituiscono righe generate): si misura
+ * solo la logica in JVM, senza DB. Cache disattivata (Noop) per non misurare gli hit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class LeaderboardAggregationBenchmark {
+
+    private static final String[] GAMES = {"flappy", "snake", "tetris"};
+
+    @Param({"1000", "100000", "1000000"})
+    public int users;
+
+    private LeaderboardEngine engine;
+    private LeaderboardService service;
+    private SplittableRandom rnd;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        engine = newEngine(users);
+        engine.warmUp();
+        service = new LeaderboardService(engine, new NoopLeaderboardCache());
+        rnd = new SplittableRandom(7);
+    }
+
+    @Benchmark
+    public List<LeaderboardResponse> topGlobal() {
+        return service.topTot(20);
+    }
+
+    @Benchmark
+    public List<GameTopDTO> topGame() {
+        return service.getTopScoresPerGame("flappy", 20);
+    }
+
+    @Benchmark
+    public PlayerRankResponse rankGlobal() {
+        return engine.rankGlobal(1 + rnd.nextInt(users), 2);
+    }
+
+    // submit: aggiorna gioco + globale (punteggi crescenti, quindi la posizione cambia davvero)
+    @Benchmark
+    public void recordScore() {
+        long userId = 1 + rnd.nextInt(users);
+        engine.recordScore(userId, GAMES[rnd.nextInt(GAMES.length)], rnd.nextInt(200_000), 1, null);
+    }
+
+    /**
+     * Caricamento completo all'avvio (una misura per iterazione).
+     */
+    @State(Scope.Benchmark)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    @Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+    public static class WarmUp {
+
+        @Param({"1000", "100000", "1000000"})
+        public int users;
+
+        private LeaderboardEngine engine;
+
+        @Setup(Level.Invocation)
+        public void setup() {
+            engine = newEngine(users);
+        }
+
+        @Benchmark
+        public LeaderboardEngine warmUp() {
+            engine.warmUp();
+            return engine;
+        }
+    }
+
+    static LeaderboardEngine newEngine(int users) {
+        List<PlayerRow> players = new ArrayList<>(users);
+        List<ScoreRow> scores = new ArrayList<>(users * GAMES.length);
+        SplittableRandom rnd = new SplittableRandom(users);
+        LocalDateTime now = LocalDateTime.now();
+
+        for (long id = 1; id <= users; id++) {
+            players.add(new PlayerRow(id, "player" + id, "/images/avatars/avatar" + (id % 12 + 1) + ".png",
+                    1 + rnd.nextInt(40)));
+            for (String game : GAMES) {
+                scores.add(new ScoreRow(id, game, rnd.nextInt(100_000), 1 + rnd.nextInt(500), now));
+            }
+        }
+
+        UserRepository userRepository = stub(UserRepository.class, "findAllPlayerRows", players);
+        ProgressRepository progressRepository = stub(ProgressRepository.class, "findAllScoreRows", scores);
+        ScoreEventRepository scoreEventRepository = stub(ScoreEventRepository.class, "findWindowRows", List.of());
+        return new LeaderboardEngine(userRepository, progressRepository, scoreEventRepository, event -> {
+        });
+    }
+
+    // repository finto: risponde solo al metodo usato dal warm-up
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, String method, Object result) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, m, args) -> {
+            if (m.getName().equals(method)) {
+                return result;
+            }
+            throw new UnsupportedOperationException(m.getName());
+        });
+    }
+}
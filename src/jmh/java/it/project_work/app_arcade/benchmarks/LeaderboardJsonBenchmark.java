@@ -0,0 +1,67 @@
+package it.project_work.app_arcade.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.project_work.app_arcade.dto.GameTopDTO;
+import it.project_work.app_arcade.dto.LeaderboardResponse;
+import it.project_work.app_arcade.dto.LeaderboardResponseDto;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Serializzazione JSON delle risposte classifica (quello che fa Spring MVC a ogni GET).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LeaderboardJsonBenchmark {
+
+    @Param({"20", "100", "1000"})
+    public int rows;
+
+    private JsonMapper mapper;
+    private LeaderboardResponseDto<GameTopDTO> gameBoard;
+    private List<LeaderboardResponse> globalBoard;
+
+    @Setup
+    public void setup() {
+        mapper = JsonMapper.builder().build();
+
+        List<GameTopDTO> game = new ArrayList<>(rows);
+        List<LeaderboardResponse> global = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            String username = "player" + i;
+            String avatar = "/images/avatars/avatar" + (i % 12 + 1) + ".png";
+            game.add(new GameTopDTO(username, avatar, 100_000 - i, 1 + i % 40, 10 + i % 500));
+            global.add(new LeaderboardResponse(username, avatar, 1_000_000L - i, 50L + i % 900, 1 + i % 40));
+        }
+        gameBoard = new LeaderboardResponseDto<>(game, "flappy");
+        globalBoard = global;
+    }
+
+    @Benchmark
+    public byte[] gameLeaderboard() {
+        return mapper.writeValueAsBytes(gameBoard);
+    }
+
+    @Benchmark
+    public byte[] globalLeaderboard() {
+        return mapper.writeValueAsBytes(globalBoard);
+    }
+}
@@ -0,0 +1,60 @@
+package it.project_work.app_arcade.benchmarks;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import it.project_work.app_arcade.utilities.Leveling;
+
+/**
+ * Leveling.fromTotalXp su valori XP realistici (nuovi utenti, veterani) e sul caso peggiore.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LevelingBenchmark {
+
+    private static final int VALUES = 1024; // potenza di 2: indice con maschera
+
+    @Param({"new", "veteran", "max"})
+    public String profile;
+
+    private long[] xp;
+    private int i;
+
+    @Setup
+    public void setup() {
+        SplittableRandom rnd = new SplittableRandom(42);
+        xp = new long[VALUES];
+        for (int k = 0; k < VALUES; k++) {
+            xp[k] = switch (profile) {
+                case "new" ->
+                    rnd.nextLong(0, 10_000);
+                case "veteran" ->
+                    rnd.nextLong(100_000, 50_000_000);
+                default ->
+                    Long.MAX_VALUE - rnd.nextLong(0, 1_000_000);
+            };
+        }
+    }
+
+    @Benchmark
+    public void fromTotalXp(Blackhole bh) {
+        bh.consume(Leveling.fromTotalXp(xp[i++ & (VALUES - 1)]));
+    }
+}
@@ -0,0 +1,162 @@
+package it.project_work.app_arcade.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tempo fino alla prima richiesta servita, a freddo (non è un benchmark JMH:
+ * ogni giro è un processo nuovo).
+ *
+ * Per ogni variante avvia il jar N volte su una porta libera e misura:
+ * - ready: dall'avvio del processo al primo 200 su /health/live (porta aperta);
+ * - first: durata della prima richiesta "vera" (default /api/leaderboard/global),
+ *   che con lazy init paga anche la creazione dei bean che usa.
+ * Tempo alla prima richiesta = ready + first.
+ *
+ * Varianti: "default" (fat jar) e "startup" (jar estratto + CDS + AOT + profilo
+ * startup, se target/startup esiste: ./mvnw -Pstartup -DskipTests package).
+ * Il DB va configurato come per l'app (SPRING_DATASOURCE_URL, ...): l'ambiente
+ * viene passato ai processi.
+ *
+ *   ./mvnw -Pjmh -DskipTests test-compile exec:exec@startup -Dstartup.args="--runs 10"
+ *
+ * Opzioni: --runs N, --path /api/..., --variants default,startup.
+ * Risultati in target/startup-result.json, log dei processi in target/startup-bench/.
+ */
+public class StartupBenchmark {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(120);
+
+    private record Run(long readyMs, long firstMs, int firstStatus) {
+
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = parse(args);
+        int runs = Integer.parseInt(opts.getOrDefault("runs", "5"));
+        String path = opts.getOrDefault("path", "/api/leaderboard/global");
+        List<String> wanted = Arrays.asList(opts.getOrDefault("variants", "default,startup").split(","));
+
+        Path jar = Path.of(System.getProperty("startup.jar"));
+        Path startupDir = Path.of(System.getProperty("startup.dir"));
+        Path logs = jar.getParent().resolve("startup-bench");
+        Files.createDirectories(logs);
+
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        Map<String, List<String>> variants = new LinkedHashMap<>();
+        variants.put("default", List.of(java, "-jar", jar.toString()));
+        Path archive = startupDir.resolve("app.jsa");
+        if (Files.exists(archive)) {
+            variants.put("startup", List.of(java, "-XX:SharedArchiveFile=" + archive, "-Dspring.aot.enabled=true",
+                    "-jar", startupDir.resolve(jar.getFileName()).toString(), "--spring.profiles.active=startup"));
+        }
+
+        HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(200)).build();
+        StringBuilder json = new StringBuilder("{");
+        for (var variant : variants.entrySet()) {
+            if (!wanted.contains(variant.getKey())) {
+                continue;
+            }
+            List<Run> results = new ArrayList<>();
+            for (int i = 0; i < runs; i++) {
+                File log = logs.resolve(variant.getKey() + "-" + i + ".log").toFile();
+                Run r = runOnce(http, variant.getValue(), path, log);
+                System.out.printf(Locale.ROOT, "%-8s #%d  ready %5d ms  first %s %5d ms  (%d)%n",
+                        variant.getKey(), i, r.readyMs(), path, r.firstMs(), r.firstStatus());
+                results.add(r);
+            }
+            long[] ready = results.stream().mapToLong(Run::readyMs).sorted().toArray();
+            long[] total = results.stream().mapToLong(r -> r.readyMs() + r.firstMs()).sorted().toArray();
+            System.out.printf(Locale.ROOT, "%-8s ready p50 %d ms (min %d, max %d) | prima richiesta p50 %d ms (min %d, max %d)%n",
+                    variant.getKey(), median(ready), ready[0], ready[ready.length - 1],
+                    median(total), total[0], total[total.length - 1]);
+
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append(String.format(Locale.ROOT,
+                    "\"%s\":{\"runs\":%d,\"readyMsP50\":%d,\"readyMsMin\":%d,\"readyMsMax\":%d,"
+                    + "\"firstRequestMsP50\":%d,\"firstRequestMsMin\":%d,\"firstRequestMsMax\":%d}",
+                    variant.getKey(), runs, median(ready), ready[0], ready[ready.length - 1],
+                    median(total), total[0], total[total.length - 1]));
+        }
+        json.append('}');
+        Path out = jar.getParent().resolve("startup-result.json");
+        Files.writeString(out, json);
+        System.out.println("Risultati in " + out);
+    }
+
+    private static Run runOnce(HttpClient http, List<String> command, String path, File log) throws Exception {
+        int port = freePort();
+        List<String> cmd = new ArrayList<>(command);
+        cmd.add("--server.port=" + port);
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(cmd).redirectErrorStream(true).redirectOutput(log).start();
+        try {
+            URI live = URI.create("http://localhost:" + port + "/health/live");
+            long deadline = start + TIMEOUT.toNanos();
+            while (status(http, live) != 200) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("Processo terminato prima di rispondere, vedi " + log);
+                }
+                if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException("Nessuna risposta entro " + TIMEOUT + ", vedi " + log);
+                }
+                Thread.sleep(5);
+            }
+            long ready = System.nanoTime();
+            int firstStatus = status(http, URI.create("http://localhost:" + port + path));
+            long first = System.nanoTime();
+            return new Run(TimeUnit.NANOSECONDS.toMillis(ready - start), TimeUnit.NANOSECONDS.toMillis(first - ready),
+                    firstStatus);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private static int status(HttpClient http, URI uri) throws InterruptedException {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(30)).GET().build();
+            return http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (IOException ex) {
+            return -1; // porta non ancora aperta
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static long median(long[] sorted) {
+        return sorted[sorted.length / 2];
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> opts = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            opts.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        return opts;
+    }
+}
@@ -0,0 +1,52 @@
+package it.project_work.app_arcade.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.project_work.app_arcade.dto.UserResponse;
+import it.project_work.app_arcade.models.Avatar;
+import it.project_work.app_arcade.models.User;
+
+/**
+ * UserResponse.fromEntity: gira a ogni login e /auth/me.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserResponseBenchmark {
+
+    private User user;
+
+    @Setup
+    public void setup() {
+        Avatar avatar = new Avatar();
+        avatar.setId(3L);
+
+        user = new User();
+        user.setId(42L);
+        user.setUsername("player42");
+        user.setEmail("player42@example.com");
+        user.setRole(User.Role.USER);
+        user.setLevel(12);
+        user.setXpTotal(3_456_789L);
+        user.setSelectedAvatar(avatar);
+    }
+
+    @Benchmark
+    public UserResponse fromEntity() {
+        return UserResponse.fromEntity(user);
+    }
+}
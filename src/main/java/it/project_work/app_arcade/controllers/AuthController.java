@@ -9,21 +9,25 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.context.SecurityContextRepository;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import it.project_work.app_arcade.dto.ApiResponse;
+import it.project_work.app_arcade.dto.AvailabilityResponse;
 import it.project_work.app_arcade.dto.LoginRequest;
 import it.project_work.app_arcade.dto.RegisterRequest;
 import it.project_work.app_arcade.dto.UserResponse;
 import it.project_work.app_arcade.exceptions.BadRequestException;
 import it.project_work.app_arcade.repositories.UserRepository;
+import it.project_work.app_arcade.security.ArcadePrincipal;
+import it.project_work.app_arcade.security.LoginSessions;
 import it.project_work.app_arcade.services.AuthService;
+import it.project_work.app_arcade.services.AvailabilityService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
@@ -36,15 +40,21 @@ public class AuthController {
     private final AuthenticationManager authenticationManager;
     private final SecurityContextRepository securityContextRepository;
     private final UserRepository userRepository;
+    private final LoginSessions loginSessions;
+    private final AvailabilityService availabilityService;
 
     public AuthController(AuthService authService,
             AuthenticationManager authenticationManager,
             SecurityContextRepository securityContextRepository,
-            UserRepository userRepository) {
+            UserRepository userRepository,
+            LoginSessions loginSessions,
+            AvailabilityService availabilityService) {
         this.authService = authService;
         this.authenticationManager = authenticationManager;
         this.securityContextRepository = securityContextRepository;
         this.userRepository = userRepository;
+        this.loginSessions = loginSessions;
+        this.availabilityService = availabilityService;
     }
 
     // Registrazione
@@ -57,7 +67,28 @@ public class AuthController {
                 .body(new ApiResponse<>("Utente registrato", user));
     }
 
-    // LOGIN custom: crea sessione + cookie JSESSIONID
+    // Controllo "al volo" del form di registrazione (Bloom filter, DB solo sui possibili duplicati)
+    @GetMapping("/availability")
+    public ResponseEntity<ApiResponse<AvailabilityResponse>> availability(
+            @RequestParam(required = false) String username,
+            @RequestParam(required = false) String email) {
+        if (username == null && email == null) {
+            throw new BadRequestException("AVAILABILITY_EMPTY", "Indicare username o email");
+        }
+        if (username != null && (username.isBlank() || username.length() > 50)) {
+            throw new BadRequestException("USERNAME_INVALID", "Username non valido");
+        }
+        if (email != null && (email.isBlank() || email.length() > 255)) {
+            throw new BadRequestException("EMAIL_INVALID", "Email non valida");
+        }
+
+        AvailabilityResponse res = new AvailabilityResponse(
+                username != null ? availabilityService.isUsernameAvailable(username) : null,
+                email != null ? availabilityService.isEmailAvailable(email) : null);
+        return ResponseEntity.ok(new ApiResponse<>("OK", res));
+    }
+
+    // LOGIN custom: crea sessione + cookie JSESSIONID (o cookie col token, app.auth.mode=token)
     @PostMapping("/login")
     public ResponseEntity<ApiResponse<UserResponse>> login(
             @Valid @RequestBody LoginRequest dto,
@@ -73,16 +104,14 @@ public class AuthController {
             context.setAuthentication(auth);
             SecurityContextHolder.setContext(context);
 
-            // salva in sessione (fondamentale per session+cookie JSESSIONID)
+            // salva in sessione (fondamentale per session+cookie JSESSIONID) o emette il token
             securityContextRepository.saveContext(context, request, response);
 
-            // recupero l'utente reale dal DB per risposta completa
-            String username = auth.getName();
-            var user = userRepository.findByUsername(username)
-                    .orElseThrow(() -> new BadRequestException("USER_NOT_FOUND", "Utente non trovato"));
+            // il principal è stato appena caricato dal DB: la risposta si costruisce da lì
+            ArcadePrincipal principal = (ArcadePrincipal) auth.getPrincipal();
 
             return ResponseEntity.ok(
-                    new ApiResponse<>("Login OK", UserResponse.fromEntity(user))
+                    new ApiResponse<>("Login OK", UserResponse.fromPrincipal(principal))
             );
 
         } catch (BadCredentialsException ex) {
@@ -94,21 +123,8 @@ public class AuthController {
     @PostMapping("/logout")
     public ResponseEntity<ApiResponse<Void>> logout(HttpServletRequest request, HttpServletResponse response) {
         try {
-            // 1) invalida sessione (server-side)
-            var session = request.getSession(false);
-            if (session != null) {
-                session.invalidate(); // -> distrugge la sessione sul server → l’utente non è più autenticato.
-            }
-
-            // 2) pulisci SecurityContext (thread-local)
-            SecurityContextHolder.clearContext(); // -> pulisce l’autenticazione dal thread corrente
-
-            // 3) scade il cookie JSESSIONID (client-side) -> evita "cookie zombie"
-            jakarta.servlet.http.Cookie cookie = new jakarta.servlet.http.Cookie("JSESSIONID", "");
-            cookie.setMaxAge(0); // -> dice al browser “cancella questo cookie” → niente residui.
-            cookie.setPath("/"); // stesso path del cookie originale
-            cookie.setHttpOnly(true);
-            response.addCookie(cookie);
+            // sessione invalidata / token revocato, context pulito, cookie scaduti
+            loginSessions.logout(request, response);
 
             return ResponseEntity.ok(new ApiResponse<>("Logout OK", null));
         } catch (Exception e) {
@@ -118,17 +134,16 @@ public class AuthController {
 
     // Profilo dell’utente loggato
     @GetMapping("/me")
-    public ResponseEntity<ApiResponse<UserResponse>> me(@AuthenticationPrincipal UserDetails userDetails) {
+    public ResponseEntity<ApiResponse<UserResponse>> me(@AuthenticationPrincipal ArcadePrincipal principal) {
         // guest => 200 con data null (niente "rosso" in console)
-        if (userDetails == null) {
+        if (principal == null) {
             return ResponseEntity.ok(new ApiResponse<>("GUEST", null));
         }
 
-        String username = userDetails.getUsername();
-
-        var user = userRepository.findByUsername(username)
+        // XP cambia a ogni partita: si rilegge, per chiave primaria e solo le colonne che servono
+        var user = userRepository.findSnapshotById(principal.getId())
                 .orElseThrow(() -> new BadRequestException("USER_NOT_FOUND", "Utente non trovato"));
 
-        return ResponseEntity.ok(new ApiResponse<>("OK", UserResponse.fromEntity(user)));
+        return ResponseEntity.ok(new ApiResponse<>("OK", UserResponse.fromSnapshot(user)));
     }
 }
@@ -1,78 +1,98 @@
 package it.project_work.app_arcade.controllers;
 
 import java.util.List;
+import java.util.Map;
 
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
-import org.springframework.security.core.Authentication;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
 import it.project_work.app_arcade.dto.AvatarDto;
 import it.project_work.app_arcade.dto.SelectAvatarRequest;
-import it.project_work.app_arcade.models.Avatar;
-import it.project_work.app_arcade.models.User;
-import it.project_work.app_arcade.repositories.AvatarRepository;
+import it.project_work.app_arcade.leaderboard.LeaderboardEngine;
 import it.project_work.app_arcade.repositories.UserRepository;
+import it.project_work.app_arcade.security.ArcadePrincipal;
+import it.project_work.app_arcade.security.PrincipalRefresher;
+import it.project_work.app_arcade.services.AvatarRegistry;
 
 @RestController
 @RequestMapping("/api")
 public class AvatarController {
 
-    private final AvatarRepository avatarRepo;
+    private final AvatarRegistry avatarRegistry;
     private final UserRepository userRepo;
+    private final LeaderboardEngine leaderboardEngine;
+    private final PrincipalRefresher principalRefresher;
 
-    public AvatarController(AvatarRepository avatarRepo, UserRepository userRepo) {
-        this.avatarRepo = avatarRepo;
+    public AvatarController(AvatarRegistry avatarRegistry, UserRepository userRepo,
+            LeaderboardEngine leaderboardEngine, PrincipalRefresher principalRefresher) {
+        this.avatarRegistry = avatarRegistry;
         this.userRepo = userRepo;
+        this.leaderboardEngine = leaderboardEngine;
+        this.principalRefresher = principalRefresher;
     }
 
     @GetMapping("/avatars")
-    public List<AvatarDto> list(Authentication auth) {
+    public ResponseEntity<List<AvatarDto>> list(@AuthenticationPrincipal ArcadePrincipal me, WebRequest request) {
 
-        int lvl = 1; // guest/nuovo utente
+        // guest/nuovo utente = 1, altrimenti il livello è già nel principal di sessione
+        final int userLvl = (me == null) ? 1 : me.getLevel();
 
-        if (auth != null && auth.isAuthenticated()
-                && !"anonymousUser".equals(String.valueOf(auth.getPrincipal()))) {
-            User user = userRepo.findByUsername(auth.getName()).orElseThrow();
-            lvl = (user.getLevel() == null) ? 1 : user.getLevel();
+        // la risposta dipende solo dal catalogo e dal livello dell'utente:
+        // se il client ha già questa versione -> 304, altrimenti la lista già pronta del registry
+        if (request.checkNotModified(avatarRegistry.etagFor(userLvl))) {
+            return null;
         }
 
-        final int userLvl = lvl; // variabile “final” per usarla nella lambda
-
-        return avatarRepo.findByActiveTrueOrderByRequiredLevelAsc()
-                .stream()
-                .map(a -> new AvatarDto(
-                a.getId(),
-                a.getName(),
-                a.getImageUrl(),
-                a.getRequiredLevel(),
-                a.getRequiredLevel() <= userLvl
-        ))
-                .toList();
+        List<AvatarDto> body = avatarRegistry.viewFor(userLvl);
+
+        // private: il flag "unlocked" è per-utente, niente cache condivise
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(body);
     }
 
     @PostMapping("/me/avatar")
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    public void select(@RequestBody SelectAvatarRequest dto, Authentication auth) {
+    public void select(@RequestBody SelectAvatarRequest dto, @AuthenticationPrincipal ArcadePrincipal me) {
         if (dto == null || dto.avatarId() == null) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "avatarId richiesto");
         }
 
-        User user = userRepo.findByUsername(auth.getName()).orElseThrow();
-        Avatar a = avatarRepo.findById(dto.avatarId()).orElseThrow();
+        AvatarRegistry.Entry a = avatarRegistry.find(dto.avatarId()).orElseThrow();
 
-        int lvl = user.getLevel() == null ? 1 : user.getLevel();
+        int lvl = me.getLevel();
+        if (a.requiredLevel() > lvl) {
+            // il principal può essere indietro (livello salito da un'altra sessione): ricontrollo sul DB
+            lvl = userRepo.findLevel(me.getId()).orElse(1);
+        }
 
-        if (!Boolean.TRUE.equals(a.getActive()) || a.getRequiredLevel() > lvl) {
+        if (!a.active() || a.requiredLevel() > lvl) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Avatar locked");
         }
 
-        user.setSelectedAvatar(a);
-        userRepo.save(user);
+        userRepo.updateSelectedAvatar(me.getId(), a.id());
+        leaderboardEngine.changeAvatar(me.getId(), a.imageUrl());
+
+        final int level = lvl;
+        principalRefresher.refresh(p -> p.withAvatarId(a.id()).withLevel(level));
+    }
+
+    /**
+     * Admin: ricarica il catalogo dopo una modifica alla tabella avatars
+     * (il nuovo snapshot sostituisce il vecchio in un colpo solo).
+     */
+    @PostMapping("/admin/avatars/reload")
+    public Map<String, Integer> reload() {
+        return Map.of("avatars", avatarRegistry.reload());
     }
 }
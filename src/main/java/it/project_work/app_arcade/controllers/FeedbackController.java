@@ -1,13 +1,14 @@
 package it.project_work.app_arcade.controllers;
 
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import it.project_work.app_arcade.dto.FeedbackCreateRequest;
+import it.project_work.app_arcade.security.ArcadePrincipal;
 import it.project_work.app_arcade.services.FeedbackService;
 import jakarta.validation.Valid;
 
@@ -23,8 +24,8 @@ public class FeedbackController {
 
     @PostMapping
     public ResponseEntity<Void> create(@Valid @RequestBody FeedbackCreateRequest req,
-            Authentication auth) {
-        feedbackService.create(req, auth);
+            @AuthenticationPrincipal ArcadePrincipal me) {
+        feedbackService.create(req, me.getId());
         return ResponseEntity.noContent().build();
     }
 }
@@ -1,17 +1,32 @@
 package it.project_work.app_arcade.controllers;
 
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Supplier;
 
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import it.project_work.app_arcade.dto.GameTopDTO;
+import it.project_work.app_arcade.dto.LeaderboardPage;
 import it.project_work.app_arcade.dto.LeaderboardResponse;
 import it.project_work.app_arcade.dto.LeaderboardResponseDto;
+import it.project_work.app_arcade.dto.PlayerRankResponse;
+import it.project_work.app_arcade.leaderboard.LeaderboardStream;
+import it.project_work.app_arcade.leaderboard.LeaderboardWindow;
+import it.project_work.app_arcade.security.ArcadePrincipal;
+import it.project_work.app_arcade.leaderboard.LeaderboardEngine.BoardVersion;
+import it.project_work.app_arcade.services.GameCatalog;
 import it.project_work.app_arcade.services.LeaderboardService;
 
 @RestController
@@ -19,9 +34,14 @@ import it.project_work.app_arcade.services.LeaderboardService;
 public class LeaderboardController {
 
     private final LeaderboardService leaderboardService;
+    private final LeaderboardStream leaderboardStream;
+    private final GameCatalog gameCatalog;
 
-    public LeaderboardController(LeaderboardService leaderboardService) {
+    public LeaderboardController(LeaderboardService leaderboardService, LeaderboardStream leaderboardStream,
+            GameCatalog gameCatalog) {
         this.leaderboardService = leaderboardService;
+        this.leaderboardStream = leaderboardStream;
+        this.gameCatalog = gameCatalog;
     }
 
     /**
@@ -29,10 +49,11 @@ public class LeaderboardController {
      */
     @GetMapping("/flappy")
     public ResponseEntity<LeaderboardResponseDto> getFlappyLeaderboard(
-            @RequestParam(defaultValue = "20") int limit) {
+            @RequestParam(defaultValue = "20") int limit,
+            WebRequest request) {
 
-        List<GameTopDTO> topPlayers = leaderboardService.getTopScoresPerGame("flappy", limit);
-        return ResponseEntity.ok(new LeaderboardResponseDto(topPlayers, "flappy"));
+        return conditional(request, leaderboardService.boardVersion("flappy"), "flappy", "flappy", limit,
+                () -> new LeaderboardResponseDto(leaderboardService.getTopScoresPerGame("flappy", limit), "flappy"));
     }
 
     /**
@@ -40,9 +61,11 @@ public class LeaderboardController {
      */
     @GetMapping("/global")
     public ResponseEntity<List<LeaderboardResponse>> getGlobal(
-            @RequestParam(defaultValue = "20") int limit) {
+            @RequestParam(defaultValue = "20") int limit,
+            WebRequest request) {
 
-        return ResponseEntity.ok(leaderboardService.topTot(limit));
+        return conditional(request, leaderboardService.boardVersion(null), "global", null, limit,
+                () -> leaderboardService.topTot(limit));
     }
 
     /**
@@ -51,10 +74,101 @@ public class LeaderboardController {
     @GetMapping("/game/{gameCode}")
     public ResponseEntity<LeaderboardResponseDto<GameTopDTO>> getGameLeaderboard(
             @PathVariable String gameCode,
-            @RequestParam(defaultValue = "20") int limit) {
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String window,
+            WebRequest request) {
 
         String code = gameCode.toLowerCase();
-        List<GameTopDTO> rows = leaderboardService.getTopScoresPerGame(code, limit);
-        return ResponseEntity.ok(new LeaderboardResponseDto<>(rows, code));
+        LeaderboardWindow w = LeaderboardWindow.parse(window);
+        if (w != LeaderboardWindow.ALL) {
+            // ?window=day|week|month: la versione della classifica di sempre non vale, niente ETag
+            return ResponseEntity.ok().cacheControl(CacheControl.noCache().cachePublic())
+                    .body(new LeaderboardResponseDto<>(leaderboardService.getTopScoresPerGame(code, w, limit), code));
+        }
+        return conditional(request, leaderboardService.boardVersion(code), "game", code, limit,
+                () -> new LeaderboardResponseDto<>(leaderboardService.getTopScoresPerGame(code, limit), code));
+    }
+
+    /**
+     * Pagine successive alla top: ?after= è il cursore "next" della pagina
+     * precedente (assente = dall'inizio). Niente OFFSET: ogni pagina costa uguale.
+     */
+    @GetMapping("/game/{gameCode}/page")
+    public ResponseEntity<LeaderboardPage<GameTopDTO>> getGamePage(
+            @PathVariable String gameCode,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "20") int size) {
+
+        return ResponseEntity.ok(leaderboardService.pageOfGame(gameCode.toLowerCase(), after, size));
+    }
+
+    @GetMapping("/global/page")
+    public ResponseEntity<LeaderboardPage<LeaderboardResponse>> getGlobalPage(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "20") int size) {
+
+        return ResponseEntity.ok(leaderboardService.pageGlobal(after, size));
+    }
+
+    /**
+     * Posizione dell'utente loggato nel gioco + "around" vicini sopra e sotto.
+     */
+    @GetMapping("/game/{gameCode}/me")
+    public ResponseEntity<PlayerRankResponse> getMyGameRank(
+            @PathVariable String gameCode,
+            @RequestParam(defaultValue = "2") int around,
+            @AuthenticationPrincipal ArcadePrincipal me) {
+
+        return ResponseEntity.ok(
+                leaderboardService.myRankInGame(me.getId(), gameCode.toLowerCase(), around)
+        );
+    }
+
+    /**
+     * Posizione dell'utente loggato nella classifica globale.
+     */
+    @GetMapping("/global/me")
+    public ResponseEntity<PlayerRankResponse> getMyGlobalRank(
+            @RequestParam(defaultValue = "2") int around,
+            @AuthenticationPrincipal ArcadePrincipal me) {
+
+        return ResponseEntity.ok(leaderboardService.myRankGlobal(me.getId(), around));
+    }
+
+    /**
+     * Classifica live (SSE): "snapshot" alla connessione, poi solo i "diff"
+     * della top-K. Senza ?game= si segue la globale.
+     */
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestParam(required = false) String game) {
+        String code = null;
+        if (game != null && !game.isBlank()) {
+            code = gameCatalog.require(game); // un feed per gioco esistente, non per ogni codice inventato
+        }
+        return leaderboardStream.subscribe(code);
+    }
+
+    /*
+     * GET condizionale: l'ETag deriva dalla versione della classifica nel motore,
+     * quindi con If-None-Match ancora valido si risponde 304 senza costruire né
+     * serializzare le righe. Se il motore non è pronto niente validatori.
+     * no-cache: il browser può tenere la copia ma deve sempre rivalidarla.
+     */
+    private <T> ResponseEntity<T> conditional(WebRequest request, Optional<BoardVersion> version,
+            String scope, String gameCode, int limit, Supplier<T> body) {
+
+        CacheControl cacheControl = CacheControl.noCache().cachePublic();
+        if (version.isEmpty()) {
+            return ResponseEntity.ok().cacheControl(cacheControl).body(body.get());
+        }
+
+        BoardVersion v = version.get();
+        String etag = "\"" + v.tag() + "-" + Integer.toHexString(Objects.hash(scope, gameCode, limit)) + "\"";
+        if (request.checkNotModified(etag, v.lastModified())) {
+            return null; // 304 già impostato da checkNotModified
+        }
+
+        // ETag e Last-Modified sono già sulla risposta (li scrive checkNotModified)
+        return ResponseEntity.ok().cacheControl(cacheControl).body(body.get());
     }
 }
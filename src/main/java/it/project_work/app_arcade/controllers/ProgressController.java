@@ -1,7 +1,7 @@
 package it.project_work.app_arcade.controllers;
 
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -11,6 +11,10 @@ import org.springframework.web.bind.annotation.RestController;
 
 import it.project_work.app_arcade.dto.ProgressResponse;
 import it.project_work.app_arcade.dto.SubmitScoreRequest;
+import it.project_work.app_arcade.ingest.ScoreIngestionService;
+import it.project_work.app_arcade.security.ArcadePrincipal;
+import it.project_work.app_arcade.security.PrincipalRefresher;
+import it.project_work.app_arcade.services.GameCatalog;
 import it.project_work.app_arcade.services.ProgressService;
 import jakarta.validation.Valid;
 
@@ -19,30 +23,44 @@ import jakarta.validation.Valid;
 public class ProgressController {
 
     private final ProgressService progressService;
+    private final ScoreIngestionService scoreIngestionService;
+    private final PrincipalRefresher principalRefresher;
+    private final GameCatalog gameCatalog;
 
-    public ProgressController(ProgressService progressService) {
+    public ProgressController(ProgressService progressService, ScoreIngestionService scoreIngestionService,
+            PrincipalRefresher principalRefresher, GameCatalog gameCatalog) {
         this.progressService = progressService;
+        this.scoreIngestionService = scoreIngestionService;
+        this.principalRefresher = principalRefresher;
+        this.gameCatalog = gameCatalog;
     }
 
     @PostMapping("/score")
     public ResponseEntity<ProgressResponse> submitScore(
             @Valid @RequestBody SubmitScoreRequest dto,
-            Authentication auth
+            @AuthenticationPrincipal ArcadePrincipal me
     ) {
-        String username = auth.getName();
-        return ResponseEntity.ok(
-                progressService.submitScore(username, dto.gameCode(), dto.score())
-        );
+        // solo giochi esistenti: prima di toccare motore classifiche e DB
+        String code = gameCatalog.require(dto.gameCode());
+
+        // app.ingest.mode=batched/log: risposta dallo stato in memoria, scrittura su DB in batch
+        ProgressResponse res = scoreIngestionService.isEnabled()
+                ? scoreIngestionService.submit(me.getId(), code, dto.score())
+                : progressService.submitScore(me.getId(), code, dto.score());
+
+        // livello salito: il principal in sessione si aggiorna (serve per lo sblocco avatar);
+        // se il livello è lo stesso withLevel non cambia nulla e la sessione non viene riscritta
+        principalRefresher.refresh(p -> p.withLevel(res.level()));
+        return ResponseEntity.ok(res);
     }
 
     @GetMapping("/progress")
     public ResponseEntity<ProgressResponse> getProgress(
             @RequestParam String gameCode,
-            Authentication auth
+            @AuthenticationPrincipal ArcadePrincipal me
     ) {
-        String username = auth.getName();
         return ResponseEntity.ok(
-                progressService.getProgress(username, gameCode)
+                progressService.getProgress(me.getId(), gameCode)
         );
     }
 }
@@ -1,9 +1,7 @@
 package it.project_work.app_arcade.controllers;
 
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.web.authentication.logout.SecurityContextLogoutHandler;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PutMapping;
@@ -18,8 +16,10 @@ import it.project_work.app_arcade.dto.ChangeUsernameRequest;
 import it.project_work.app_arcade.dto.DeleteAccountRequest;
 import it.project_work.app_arcade.dto.MeResponse;
 import it.project_work.app_arcade.exceptions.BadRequestException;
+import it.project_work.app_arcade.security.ArcadePrincipal;
+import it.project_work.app_arcade.security.LoginSessions;
+import it.project_work.app_arcade.security.PrincipalRefresher;
 import it.project_work.app_arcade.services.UserService;
-import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
@@ -29,65 +29,62 @@ import jakarta.validation.Valid;
 public class UserController {
 
     private final UserService userService;
+    private final PrincipalRefresher principalRefresher;
+    private final LoginSessions loginSessions;
 
-    public UserController(UserService userService) {
+    public UserController(UserService userService, PrincipalRefresher principalRefresher,
+            LoginSessions loginSessions) {
         this.userService = userService;
+        this.principalRefresher = principalRefresher;
+        this.loginSessions = loginSessions;
     }
 
     @GetMapping("/me")
-    public ResponseEntity<MeResponse> getMe(Authentication auth) {
-        return ResponseEntity.ok(userService.meByUsername(auth.getName()));
+    public ResponseEntity<MeResponse> getMe(@AuthenticationPrincipal ArcadePrincipal me) {
+        return ResponseEntity.ok(userService.me(me.getId()));
     }
 
     @PutMapping("/me/avatar")
-    public ResponseEntity<MeResponse> updateAvatar(Authentication auth,
+    public ResponseEntity<MeResponse> updateAvatar(@AuthenticationPrincipal ArcadePrincipal me,
             @RequestParam Long avatarId) {
-        return ResponseEntity.ok(userService.updateAvatarByUsername(auth.getName(), avatarId));
+        MeResponse res = userService.updateAvatar(me.getId(), avatarId);
+        principalRefresher.refresh(p -> p.withAvatarId(avatarId));
+        return ResponseEntity.ok(res);
     }
 
     @PutMapping("/me/password")
-    public ResponseEntity<ApiResponse<Void>> updatePassword(Authentication auth,
+    public ResponseEntity<ApiResponse<Void>> updatePassword(
+            @AuthenticationPrincipal ArcadePrincipal me,
             @RequestBody @Valid ChangePasswordRequest dto, HttpServletRequest request,
             HttpServletResponse response
     ) {
 
-        userService.updatePassword(auth.getName(), dto);
+        userService.updatePassword(me.getId(), dto);
 
-        // logout  invalida sessione + clear context
-        new SecurityContextLogoutHandler().logout(request, response, auth);
-
-        // scade il cookie della sessione
-        Cookie jsid = new Cookie("JSESSIONID", "");
-        jsid.setPath("/");
-        jsid.setMaxAge(0);
-        response.addCookie(jsid);
+        // logout ovunque: sessione/token corrente + token già emessi
+        loginSessions.logoutEverywhere(me.getId(), request, response);
 
         return ResponseEntity.noContent().build(); // -> 204
     }
 
     @PutMapping("/me/username")
-    public ResponseEntity<Void> changeUsername(Authentication auth,
+    public ResponseEntity<Void> changeUsername(
+            @AuthenticationPrincipal ArcadePrincipal me,
             @Valid @RequestBody ChangeUsernameRequest dto,
             HttpServletRequest request,
             HttpServletResponse response) {
 
-        userService.updateUsername(auth.getName(), dto.newUsername());
-
-        // logout “secure”
-        new SecurityContextLogoutHandler().logout(request, response, auth);
+        userService.updateUsername(me.getId(), dto.newUsername());
 
-        Cookie jsid = new Cookie("JSESSIONID", "");
-        jsid.setPath("/");
-        jsid.setMaxAge(0);
-        jsid.setHttpOnly(true);
-        response.addCookie(jsid);
+        // logout “secure”: i token emessi portano ancora il vecchio username
+        loginSessions.logoutEverywhere(me.getId(), request, response);
 
         return ResponseEntity.noContent().build(); // 204
     }
 
     @DeleteMapping("/me")
     public ResponseEntity<ApiResponse<Void>> deleteMe(
-            Authentication auth,
+            @AuthenticationPrincipal ArcadePrincipal me,
             @Valid @RequestBody DeleteAccountRequest dto,
             HttpServletRequest request,
             HttpServletResponse response
@@ -96,21 +93,10 @@ public class UserController {
             throw new BadRequestException("CONFIRM_INVALID", "Conferma non valida");
         }
 
-        userService.deleteUser(auth.getName());
-
-        // invalidate session + cookie (come logout)
-        var session = request.getSession(false);
-        if (session != null) {
-            session.invalidate();
-        }
-
-        SecurityContextHolder.clearContext();
+        userService.deleteUser(me.getId());
 
-        jakarta.servlet.http.Cookie cookie = new jakarta.servlet.http.Cookie("JSESSIONID", "");
-        cookie.setMaxAge(0);
-        cookie.setPath("/");
-        cookie.setHttpOnly(true);
-        response.addCookie(cookie);
+        // invalidate session/token + cookie (come logout, su tutti i dispositivi)
+        loginSessions.logoutEverywhere(me.getId(), request, response);
 
         return ResponseEntity.ok(new ApiResponse<>("Account eliminato", null));
     }
@@ -0,0 +1,137 @@
+package it.project_work.app_arcade.datasource;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Bulkhead davanti al pool JDBC: al massimo "permits" connessioni in uso,
+ * gli altri aspettano in fila (FIFO) su un semaforo.
+ *
+ * Con i virtual thread le richieste concorrenti possono essere migliaia: senza
+ * questo limite arriverebbero tutte insieme a contendersi le poche connessioni
+ * di Hikari. Un virtual thread parcheggiato sul semaforo costa pochissimo e
+ * non occupa un carrier. Il permesso si rilascia alla close() della
+ * connessione (proxy), una volta sola.
+ */
+public class BulkheadDataSource extends DelegatingDataSource implements AutoCloseable {
+
+    private final Semaphore permits;
+    private final long acquireTimeoutMs;
+
+    // attesa sul semaforo (metriche): con permessi = connessioni del pool è qui che si aspetta
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    public BulkheadDataSource(DataSource target, int permits, long acquireTimeoutMs) {
+        super(target);
+        this.permits = new Semaphore(permits, true);
+        this.acquireTimeoutMs = acquireTimeoutMs;
+    }
+
+    public int availablePermits() {
+        return permits.availablePermits();
+    }
+
+    public int queueLength() {
+        return permits.getQueueLength();
+    }
+
+    public long acquiredCount() {
+        return acquired.sum();
+    }
+
+    public long waitNanos() {
+        return waitNanos.sum();
+    }
+
+    // il bean esposto è questo wrapper: la chiusura del pool allo shutdown passa da qui;
+    // niente eccezioni checked (con "throws Exception" javac -Xlint segnala [try])
+    @Override
+    public void close() {
+        if (getTargetDataSource() instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                if (ex instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IllegalStateException("Chiusura del DataSource fallita", ex);
+            }
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        acquire();
+        try {
+            return guard(super.getConnection());
+        } catch (SQLException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        acquire();
+        try {
+            return guard(super.getConnection(username, password));
+        } catch (SQLException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    private void acquire() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            boolean ok = permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+            waitNanos.add(System.nanoTime() - start);
+            if (!ok) {
+                throw new SQLTransientConnectionException(
+                        "Bulkhead DB: nessuna connessione libera entro " + acquireTimeoutMs + " ms");
+            }
+            acquired.increment();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrotto in attesa di una connessione", ex);
+        }
+    }
+
+    private Connection guard(Connection target) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if ("close".equals(method.getName()) && method.getParameterCount() == 0) {
+                        try {
+                            target.close();
+                        } finally {
+                            if (released.compareAndSet(false, true)) {
+                                permits.release();
+                            }
+                        }
+                        return null;
+                    }
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException ex) {
+                        throw ex.getTargetException();
+                    }
+                });
+    }
+}
@@ -0,0 +1,45 @@
+package it.project_work.app_arcade.datasource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Avvolge il DataSource Hikari in un BulkheadDataSource con tanti permessi
+ * quante sono le connessioni del pool e lo stesso connectionTimeout.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.db.bulkhead.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class DataSourceBulkheadConfig {
+
+    @Bean
+    public static BeanPostProcessor dataSourceBulkheadPostProcessor() {
+        return new BulkheadPostProcessor();
+    }
+
+    // Ordered: gira prima dei post-processor senza ordine (es. CountingDataSource), così vede ancora Hikari
+    private static final class BulkheadPostProcessor implements BeanPostProcessor, Ordered {
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (bean instanceof HikariDataSource hikari) {
+                int permits = hikari.getMaximumPoolSize();
+                log.info("Bulkhead DB attivo su '{}': {} permessi", beanName, permits);
+                return new BulkheadDataSource(hikari, permits, hikari.getConnectionTimeout());
+            }
+            return bean;
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.LOWEST_PRECEDENCE;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package it.project_work.app_arcade.dto;
+
+// GET /auth/availability: null = campo non richiesto
+public record AvailabilityResponse(
+        Boolean usernameAvailable,
+        Boolean emailAvailable
+        ) {
+
+}
@@ -0,0 +1,21 @@
+package it.project_work.app_arcade.dto;
+
+import java.util.List;
+
+/**
+ * Evento SSE della classifica live: size = lunghezza della top-K dopo la
+ * modifica, changes = solo le posizioni (1-based) il cui contenuto è cambiato.
+ * Il client aggiorna rows[rank-1] e tronca a size.
+ * Lo "snapshot" iniziale ha lo stesso formato con tutte le righe.
+ */
+public record LeaderboardDiff<T>(
+        String game, // null = globale
+        long seq,
+        int size,
+        List<Change<T>> changes
+        ) {
+
+    public record Change<T>(int rank, T row) {
+
+    }
+}
@@ -0,0 +1,11 @@
+package it.project_work.app_arcade.dto;
+
+import java.util.List;
+
+// Pagina di classifica: next è il cursore opaco per la pagina dopo (null = fine)
+public record LeaderboardPage<T>(
+        List<T> rows,
+        String next
+        ) {
+
+}
@@ -0,0 +1,15 @@
+package it.project_work.app_arcade.dto;
+
+import java.util.List;
+
+// "sei #1.234 su 50.000": rank/percentile null se l'utente non ha ancora giocato
+public record PlayerRankResponse(
+        String gameCode, // null per la classifica globale
+        Integer rank,
+        int total,
+        Double percentile, // % di giocatori con posizione peggiore
+        Long score,
+        List<RankRowDTO> neighbours
+        ) {
+
+}
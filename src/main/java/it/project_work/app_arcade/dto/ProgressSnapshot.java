@@ -0,0 +1,12 @@
+package it.project_work.app_arcade.dto;
+
+// xp/livello di un utente + riga di un gioco (campi del gioco null se non ci ha mai giocato)
+public record ProgressSnapshot(
+        long xpTotal,
+        Integer level,
+        Integer bestScore,
+        Integer lastScore,
+        Integer playedCount
+        ) {
+
+}
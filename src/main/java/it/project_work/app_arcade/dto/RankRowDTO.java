@@ -0,0 +1,13 @@
+package it.project_work.app_arcade.dto;
+
+public record RankRowDTO(
+        int rank,
+        String username,
+        String avatarUrl,
+        Long score, // bestScore del gioco o somma dei bestScore (globale)
+        Long playedCount,
+        Integer level,
+        boolean me
+        ) {
+
+}
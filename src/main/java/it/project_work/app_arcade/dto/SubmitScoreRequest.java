@@ -3,9 +3,14 @@ package it.project_work.app_arcade.dto;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
 
 public record SubmitScoreRequest(
+        // game_code varchar(20)
         @NotBlank
+        @Size(max = 20, message = "Codice gioco max 20 caratteri")
+        @Pattern(regexp = "[A-Za-z0-9_-]+", message = "Codice gioco non valido")
         String gameCode,
         @NotNull
         @Min(0)
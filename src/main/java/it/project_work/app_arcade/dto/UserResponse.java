@@ -1,6 +1,7 @@
 package it.project_work.app_arcade.dto;
 
 import it.project_work.app_arcade.models.User;
+import it.project_work.app_arcade.security.ArcadePrincipal;
 import it.project_work.app_arcade.utilities.Leveling;
 
 public record UserResponse(
@@ -21,17 +22,33 @@ public record UserResponse(
     }
 
     public static UserResponse fromEntity(User u) {
-        long xpTotal = u.getXpTotal(); // primitive long => mai null
+        return of(u.getId(), u.getUsername(), u.getEmail(), u.getRole(), u.isEnabled(),
+                u.getSelectedAvatar() != null ? u.getSelectedAvatar().getId() : null,
+                u.getXpTotal()); // primitive long => mai null
+    }
+
+    public static UserResponse fromSnapshot(UserSnapshot s) {
+        return of(s.id(), s.username(), s.email(), s.role(), s.enabled(), s.avatarId(), s.xpTotal());
+    }
+
+    // risposta del login: dati già nel principal appena autenticato, nessuna query in più
+    public static UserResponse fromPrincipal(ArcadePrincipal p) {
+        return of(p.getId(), p.getUsername(), p.getEmail(), p.getRole(), p.isEnabled(),
+                p.getAvatarId(), p.getXpTotal());
+    }
+
+    private static UserResponse of(Long id, String username, String email, User.Role role,
+            boolean enabled, Long avatarId, long xpTotal) {
         var info = Leveling.fromTotalXp(xpTotal);
 
         return new UserResponse(
-                u.getId(),
-                u.getUsername(),
-                u.getEmail(),
-                u.getRole(),
+                id,
+                username,
+                email,
+                role,
                 info.level(),
-                u.isEnabled(),
-                u.getSelectedAvatar() != null ? u.getSelectedAvatar().getId() : 1L,
+                enabled,
+                avatarId != null ? avatarId : 1L,
                 xpTotal,
                 safeInt(info.xpIntoLevel()),
                 safeInt(info.xpToNext())
@@ -0,0 +1,16 @@
+package it.project_work.app_arcade.dto;
+
+import it.project_work.app_arcade.models.User;
+
+// colonne di users per /auth/me, lette senza entity (avatarId = FK, nessuna join con avatars)
+public record UserSnapshot(
+        Long id,
+        String username,
+        String email,
+        User.Role role,
+        boolean enabled,
+        Long avatarId,
+        long xpTotal
+        ) {
+
+}
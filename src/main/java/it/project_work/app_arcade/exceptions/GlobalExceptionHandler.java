@@ -1,20 +1,30 @@
 package it.project_work.app_arcade.exceptions;
 
+import java.sql.SQLTransientConnectionException;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.hibernate.exception.JDBCConnectionException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
 import it.project_work.app_arcade.dto.ApiError;
+import lombok.extern.slf4j.Slf4j;
 
+@Slf4j
 @RestControllerAdvice
 public class GlobalExceptionHandler {
 
+    // DB saturo: il bulkhead/pool libera una connessione in pochi secondi
+    private static final long DB_RETRY_AFTER_SECONDS = 2;
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ApiError> handleValidation(MethodArgumentNotValidException ex) {
         Map<String, String> fieldErrors = new HashMap<>();
@@ -37,6 +47,31 @@ public class GlobalExceptionHandler {
                 .body(new ApiError(ex.code, ex.getMessage(), Map.of()));
     }
 
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<ApiError> handleTooManyRequests(TooManyRequestsException ex) {
+        return ResponseEntity.status(429)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(ex.retryAfterSeconds))
+                .body(new ApiError(ex.code, ex.getMessage(), Map.of()));
+    }
+
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<ApiError> handleServiceUnavailable(ServiceUnavailableException ex) {
+        return ResponseEntity.status(503)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(ex.retryAfterSeconds))
+                .body(new ApiError(ex.code, ex.getMessage(), Map.of()));
+    }
+
+    // nessuna connessione entro il timeout (bulkhead o Hikari: SQLTransientConnectionException,
+    // arriva avvolta da Spring/Hibernate) o DB irraggiungibile: 503, non 500
+    @ExceptionHandler({SQLTransientConnectionException.class, CannotCreateTransactionException.class,
+        DataAccessResourceFailureException.class, JDBCConnectionException.class})
+    public ResponseEntity<ApiError> handleDatabaseUnavailable(Exception ex) {
+        log.warn("DB non disponibile: {}", ex.getMessage());
+        return ResponseEntity.status(503)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(DB_RETRY_AFTER_SECONDS))
+                .body(new ApiError("SERVICE_UNAVAILABLE", "Server occupato, riprova tra poco", Map.of()));
+    }
+
     @ExceptionHandler(BadCredentialsException.class)
     public ResponseEntity<ApiError> handleBadCredentials() {
         return ResponseEntity.status(401)
@@ -50,5 +85,7 @@ Perché questo è meglio per te (front)
 fieldErrors è una map: { username: "...", password: "..." } → la appiccichi direttamente ai data-error-for
 401 è chiaro per “login sbagliato”
 409 è chiaro per “username/email già usati”
+429 = server saturo (es. coda BCrypt piena): riprovare dopo Retry-After secondi
+503 = punteggi non accettati (coda di scrittura piena o shutdown) o DB saturo: riprovare dopo Retry-After secondi
 niente rumore (timestamp/path) finché non vi serve
 */
\ No newline at end of file
@@ -0,0 +1,17 @@
+package it.project_work.app_arcade.exceptions;
+
+public class ServiceUnavailableException extends RuntimeException {
+
+    public final String code;
+    public final long retryAfterSeconds;
+
+    public ServiceUnavailableException(String code, String message, long retryAfterSeconds) {
+        super(message);
+        this.code = code;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public String getCode() {
+        return code;
+    }
+}
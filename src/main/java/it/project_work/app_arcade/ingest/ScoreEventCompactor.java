@@ -0,0 +1,264 @@
+package it.project_work.app_arcade.ingest;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import it.project_work.app_arcade.utilities.Leveling;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Compattatore di score_events (app.ingest.mode=log).
+ *
+ * In modalità log il submit scrive solo l'evento (in batch, vedi
+ * ScoreIngestionService); questo thread riversa gli eventi nuovi in
+ * user_game_progress e users.xp_total/level e sposta il segnalibro
+ * (score_event_compaction.last_event_id) nella stessa transazione: ogni
+ * evento viene contato una volta sola anche se il processo muore a metà.
+ *
+ * Gli id AUTO_INCREMENT sono assegnati all'insert ma visibili al commit: con
+ * più istanze un id basso può comparire dopo uno più alto. Per non
+ * scavalcarlo si compatta solo fino al MAX(id) osservato almeno lag-ms fa.
+ *
+ * All'avvio (prima del warm-up delle classifiche) si recupera tutto l'arretrato;
+ * allo stop, dopo lo svuotamento della coda di ingestione, si compatta il resto.
+ */
+@Slf4j
+@Service
+public class ScoreEventCompactor implements SmartLifecycle {
+
+    static final String INIT_SQL = """
+            INSERT IGNORE INTO score_event_compaction (id, last_event_id)
+            SELECT 1, COALESCE(MAX(id), 0) FROM score_events
+            """;
+
+    private static final String EVENTS_SQL = """
+            SELECT id, user_id, game_code, score
+            FROM score_events
+            WHERE id > ? AND id <= ? AND folded = FALSE
+            ORDER BY id
+            LIMIT ?
+            """;
+
+    // aggregati di un gioco per un utente, dagli eventi di un giro
+    private static final class Fold {
+
+        int maxScore;
+        int lastScore;
+        int runs;
+    }
+
+    private final boolean enabled;
+    private final long intervalMs;
+    private final long lagMs;
+    private final int batchSize;
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+
+    // (istante, MAX(id)) osservati di recente: il più recente più vecchio di lagMs è il limite sicuro
+    private final Deque<long[]> horizons = new ArrayDeque<>();
+
+    private volatile boolean running = false;
+    private Thread worker;
+
+    public ScoreEventCompactor(
+            @Value("${app.ingest.mode:sync}") String mode,
+            @Value("${app.ingest.compact.interval-ms:1000}") long intervalMs,
+            @Value("${app.ingest.compact.lag-ms:2000}") long lagMs,
+            @Value("${app.ingest.compact.batch-size:5000}") int batchSize,
+            JdbcTemplate jdbc,
+            PlatformTransactionManager transactionManager) {
+        this.enabled = "log".equalsIgnoreCase(mode);
+        this.intervalMs = intervalMs;
+        this.lagMs = lagMs;
+        this.batchSize = batchSize;
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(transactionManager);
+    }
+
+    // ---------------------------------------------------------------- compattazione
+    // compatta gli eventi fino a upTo (incluso), un batch per transazione; ritorna quanti
+    int compactUpTo(long upTo) {
+        int total = 0;
+        while (true) {
+            Integer done = tx.execute(s -> compactBatch(upTo));
+            if (done == null || done < 0) {
+                return total;
+            }
+            total += done;
+        }
+    }
+
+    // -1 = niente da fare (segnalibro già a upTo)
+    private int compactBatch(long upTo) {
+        // FOR UPDATE: con più istanze compatta una sola alla volta
+        Long from = jdbc.queryForObject(
+                "SELECT last_event_id FROM score_event_compaction WHERE id = 1 FOR UPDATE", Long.class);
+        if (from == null || from >= upTo) {
+            return -1;
+        }
+
+        long[] last = {from, 0}; // ultimo id letto, eventi letti
+        Map<Long, Map<String, Fold>> byUser = new LinkedHashMap<>();
+        Map<Long, Long> xpByUser = new HashMap<>();
+        jdbc.query(EVENTS_SQL, rs -> {
+            long userId = rs.getLong("user_id");
+            int score = rs.getInt("score");
+            last[0] = rs.getLong("id");
+            last[1]++;
+            Fold f = byUser.computeIfAbsent(userId, k -> new HashMap<>())
+                    .computeIfAbsent(rs.getString("game_code"), k -> new Fold());
+            f.maxScore = Math.max(f.maxScore, score);
+            f.lastScore = score; // eventi in ordine di id
+            f.runs++;
+            xpByUser.merge(userId, (long) score, Long::sum);
+        }, from, upTo, batchSize);
+
+        // batch pieno: ci si ferma all'ultimo evento letto, altrimenti l'intervallo è esaurito
+        long to = last[1] == batchSize ? last[0] : upTo;
+        if (!byUser.isEmpty()) {
+            writeAggregates(byUser, xpByUser);
+        }
+        jdbc.update("UPDATE score_event_compaction SET last_event_id = ? WHERE id = 1", to);
+        return (int) last[1];
+    }
+
+    private void writeAggregates(Map<Long, Map<String, Fold>> byUser, Map<Long, Long> xpByUser) {
+        // xp attuali (e lock delle righe): gli eventi di utenti già cancellati si saltano
+        String in = String.join(",", Collections.nCopies(byUser.size(), "?"));
+        Map<Long, Long> xpNow = new HashMap<>();
+        jdbc.query("SELECT id, xp_total FROM users WHERE id IN (" + in + ") FOR UPDATE",
+                rs -> {
+                    xpNow.put(rs.getLong("id"), rs.getLong("xp_total"));
+                }, byUser.keySet().toArray());
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> progressRows = new ArrayList<>();
+        List<Object[]> userRows = new ArrayList<>(xpNow.size());
+        byUser.forEach((userId, games) -> {
+            Long xp = xpNow.get(userId);
+            if (xp == null) {
+                return;
+            }
+            games.forEach((code, f)
+                    -> progressRows.add(new Object[]{userId, code, f.maxScore, f.lastScore, f.runs, now}));
+            long added = xpByUser.get(userId);
+            userRows.add(new Object[]{added, Leveling.levelOf(xp + added), now, userId});
+        });
+
+        jdbc.batchUpdate(ScoreIngestionService.UPSERT_PROGRESS_SQL, progressRows);
+        jdbc.batchUpdate(ScoreIngestionService.ADD_XP_SQL, userRows);
+    }
+
+    private long maxEventId() {
+        Long max = jdbc.queryForObject("SELECT COALESCE(MAX(id), 0) FROM score_events", Long.class);
+        return max == null ? 0 : max;
+    }
+
+    // limite sicuro: MAX(id) osservato almeno lagMs fa (0 = niente di nuovo da compattare)
+    private long safeHorizon() {
+        long now = System.currentTimeMillis();
+        horizons.addLast(new long[]{now, maxEventId()});
+        long safe = 0;
+        long[] oldest;
+        while ((oldest = horizons.peekFirst()) != null && now - oldest[0] >= lagMs) {
+            safe = oldest[1];
+            horizons.pollFirst();
+        }
+        return safe;
+    }
+
+    private void loop() {
+        while (running) {
+            try {
+                long safe = safeHorizon();
+                if (safe > 0) {
+                    int n = compactUpTo(safe);
+                    if (n > 0) {
+                        log.debug("Compattati {} eventi (fino a id {})", n, safe);
+                    }
+                }
+            } catch (RuntimeException e) {
+                log.error("Compattazione score_events fallita, riprovo", e);
+            }
+            try {
+                Thread.sleep(intervalMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // arretrato: tutto ciò che era già scritto prima di adesso, aspettando il lag per i commit in volo
+    private void catchUp() {
+        long upTo = maxEventId();
+        Long mark = jdbc.queryForObject("SELECT last_event_id FROM score_event_compaction WHERE id = 1", Long.class);
+        if (mark != null && upTo <= mark) {
+            return; // niente di nuovo dall'ultima compattazione: nessuna attesa all'avvio
+        }
+        try {
+            Thread.sleep(lagMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long start = System.nanoTime();
+        int n = compactUpTo(upTo);
+        log.info("Compattazione score_events: {} eventi arretrati in {} ms", n, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // ---------------------------------------------------------------- lifecycle
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        jdbc.update(INIT_SQL);
+        catchUp();
+        running = true;
+        worker = Thread.ofPlatform().name("score-compactor").daemon(true).start(this::loop);
+        log.info("Compattatore score_events attivo (ogni {} ms, lag {} ms, batch {})", intervalMs, lagMs, batchSize);
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            worker.join(intervalMs + TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // la coda di ingestione è già stata svuotata (fase successiva): si chiude tutto
+        catchUp();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // parte prima di ScoreIngestionService e si ferma dopo, quindi anche dopo il web server
+    @Override
+    public int getPhase() {
+        return ScoreIngestionService.PHASE - 1;
+    }
+}
@@ -0,0 +1,592 @@
+package it.project_work.app_arcade.ingest;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.server.context.WebServerGracefulShutdownLifecycle;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import it.project_work.app_arcade.dto.ProgressResponse;
+import it.project_work.app_arcade.exceptions.ServiceUnavailableException;
+import it.project_work.app_arcade.leaderboard.LeaderboardEngine;
+import it.project_work.app_arcade.utilities.LevelInfo;
+import it.project_work.app_arcade.utilities.Leveling;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Ingestione punteggi "write-behind" (app.ingest.mode=batched o log).
+ *
+ * Ogni POST /api/game/score aggiorna uno stato in memoria per utente (xp,
+ * best/last/played per gioco) e accumula un delta per (utente, gioco): più
+ * partite dello stesso utente tra un flush e l'altro diventano una sola riga
+ * (max best, last, +played, +xp); le singole partite finiscono comunque in
+ * score_events, nello stesso batch. Un thread dedicato scrive i delta con batch
+ * JDBC di upsert quando si raggiunge app.ingest.batch-size o ogni
+ * app.ingest.flush-interval-ms.
+ *
+ * Lo stato di un utente resta in memoria finché ha delta non ancora committati,
+ * quindi la risposta è sempre calcolata su dati completi; dopo il commit viene
+ * rimosso e la volta successiva si rilegge dal DB.
+ *
+ * Con app.ingest.mode=log il flush scrive solo le righe di score_events (un
+ * insert in batch, senza toccare gli aggregati): user_game_progress e
+ * users li aggiorna ScoreEventCompactor. Lo stato letto dal DB è quindi
+ * aggregati + eventi non ancora compattati.
+ *
+ * Backpressure: oltre app.ingest.max-pending partite in coda è la richiesta
+ * stessa a eseguire il flush prima di accodare; se la coda resta piena (DB
+ * lento o giù) la partita viene rifiutata con 503 e Retry-After, invece di
+ * accettarla senza poterla scrivere. Un flush fallito non scarta nulla: i delta
+ * restano in coda e l'utente viene riprovato con backoff esponenziale.
+ *
+ * Lo stop avviene dopo quello del web server (fase più bassa), quindi a
+ * richieste già concluse; la coda viene svuotata e le partite arrivate dopo
+ * vengono rifiutate.
+ */
+@Slf4j
+@Service
+public class ScoreIngestionService implements SmartLifecycle {
+
+    static final String UPSERT_PROGRESS_SQL = """
+            INSERT INTO user_game_progress (user_id, game_code, best_score, last_score, played_count, updated_at)
+            VALUES (?, ?, ?, ?, ?, ?) AS new
+            ON DUPLICATE KEY UPDATE
+                best_score = GREATEST(user_game_progress.best_score, new.best_score),
+                last_score = new.last_score,
+                played_count = user_game_progress.played_count + new.played_count,
+                updated_at = new.updated_at
+            """;
+
+    static final String INSERT_EVENT_SQL = """
+            INSERT INTO score_events (user_id, game_code, score, played_at, folded)
+            VALUES (?, ?, ?, ?, ?)
+            """;
+
+    // modalità log: stato = aggregati + eventi non ancora compattati, in un solo statement
+    // (snapshot coerente anche se il compattatore committa nel frattempo)
+    private static final String USER_VIEW_SQL = """
+            SELECT u.xp_total, u.level,
+                (SELECT COALESCE(SUM(e.score), 0) FROM score_events e
+                 WHERE e.user_id = u.id AND e.folded = FALSE
+                   AND e.id > (SELECT c.last_event_id FROM score_event_compaction c WHERE c.id = 1)) AS tail_xp
+            FROM users u
+            WHERE u.id = ?
+            """;
+
+    // riga aggregata (kind 0) + eventi non compattati in ordine (kind 1)
+    private static final String GAME_VIEW_SQL = """
+            SELECT 0 AS kind, 0 AS id, best_score AS score, last_score, played_count
+            FROM user_game_progress
+            WHERE user_id = ? AND game_code = ?
+            UNION ALL
+            SELECT 1, e.id, e.score, e.score, 1
+            FROM score_events e
+            WHERE e.user_id = ? AND e.game_code = ? AND e.folded = FALSE
+              AND e.id > (SELECT c.last_event_id FROM score_event_compaction c WHERE c.id = 1)
+            ORDER BY kind, id
+            """;
+
+    static final String ADD_XP_SQL = """
+            UPDATE users
+            SET xp_total = xp_total + ?, level = GREATEST(level, ?), updated_at = ?
+            WHERE id = ?
+            """;
+
+    // partite accumulate per (utente, gioco) dall'ultimo flush
+    private static final class GameDelta {
+
+        int maxScore;
+        int lastScore;
+        int runs;
+    }
+
+    // singola partita, per lo storico score_events
+    private record Run(String gameCode, int score, Timestamp playedAt) {
+
+    }
+
+    private static final class GameState {
+
+        int best;
+        int last;
+        int played;
+    }
+
+    // stato autorevole di un utente finché ha delta non committati
+    private static final class UserState {
+
+        long xpTotal;
+        int level;
+        final Map<String, GameState> games = new HashMap<>();
+
+        long pendingXp;
+        int pendingRuns;
+        Map<String, GameDelta> pending = new HashMap<>();
+        List<Run> pendingEvents = new ArrayList<>();
+        int inFlight; // delta presi da un flush non ancora committato
+        int failures; // flush falliti consecutivi
+        long retryAt; // nanoTime prima del quale non si riprova (backoff)
+
+        boolean isClean() {
+            return pendingRuns == 0 && inFlight == 0;
+        }
+    }
+
+    // delta "staccato" da uno stato per essere scritto
+    private record UserBatch(long userId, long xp, int level, int runs, Map<String, GameDelta> games,
+            List<Run> events) {
+
+    }
+
+    // sotto WebServerStartStopLifecycle (SMART_LIFECYCLE_PHASE - 1024): si ferma dopo
+    // che il web server ha smesso di accettare e concluso le richieste
+    static final int PHASE = WebServerGracefulShutdownLifecycle.SMART_LIFECYCLE_PHASE - 2048;
+
+    // backoff tra i tentativi di un utente che non si riesce a scrivere
+    private static final long MAX_BACKOFF_MS = 30_000;
+
+    private final boolean enabled;
+    private final boolean logMode;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final int maxPending;
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final LeaderboardEngine leaderboardEngine;
+
+    private final ConcurrentHashMap<Long, UserState> states = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingRuns = new AtomicInteger();
+    // stati tolti dalla mappa, per gruppi di utenti: una lettura dal DB iniziata
+    // prima di una rimozione può non vedere l'ultimo commit
+    private final AtomicLongArray evictions = new AtomicLongArray(64);
+
+    // un solo flush alla volta (thread dedicato o richiesta in backpressure)
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ReentrantLock signalLock = new ReentrantLock();
+    private final Condition wakeUp = signalLock.newCondition();
+
+    private volatile boolean running = false;
+    private Thread flusher;
+
+    public ScoreIngestionService(
+            @Value("${app.ingest.mode:sync}") String mode,
+            @Value("${app.ingest.batch-size:500}") int batchSize,
+            @Value("${app.ingest.flush-interval-ms:200}") long flushIntervalMs,
+            @Value("${app.ingest.max-pending:10000}") int maxPending,
+            JdbcTemplate jdbc,
+            PlatformTransactionManager transactionManager,
+            LeaderboardEngine leaderboardEngine) {
+        this.logMode = "log".equalsIgnoreCase(mode);
+        this.enabled = logMode || "batched".equalsIgnoreCase(mode);
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.maxPending = maxPending;
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.leaderboardEngine = leaderboardEngine;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // aggregati aggiornati in differita dal compattatore
+    public boolean isLogMode() {
+        return logMode;
+    }
+
+    // partite accettate ma non ancora scritte su DB
+    public int pendingRuns() {
+        return pendingRuns.get();
+    }
+
+    // ---------------------------------------------------------------- ingresso
+    // userId dal principal di sessione: nessuna ricerca per username
+    public ProgressResponse submit(long userId, String gameCode, Integer scoreRun) {
+        String code = gameCode.trim().toLowerCase();
+        int score = (scoreRun == null) ? 0 : Math.max(0, scoreRun);
+
+        if (!running) {
+            throw unavailable("Server in arresto, riprova tra poco");
+        }
+        // backpressure: coda piena -> la richiesta prova a svuotarla; se resta piena si rifiuta
+        if (pendingRuns.get() >= maxPending) {
+            flushNow();
+            if (pendingRuns.get() >= maxPending) {
+                throw unavailable("Troppi punteggi in attesa di scrittura, riprova tra poco");
+            }
+        }
+
+        ProgressResponse[] out = new ProgressResponse[1];
+        int[] played = new int[1];
+        LocalDateTime playedAt = LocalDateTime.now();
+
+        // le letture dal DB avvengono fuori da compute (niente query con il lock della
+        // mappa, che bloccherebbe anche gli altri utenti dello stesso bin); dentro si
+        // fanno solo modifiche in memoria
+        boolean done = false;
+        while (!done) {
+            long epoch = evictions.get(stripe(userId));
+            boolean[] cached = new boolean[2]; // stato utente, stato gioco
+            states.computeIfPresent(userId, (id, st) -> {
+                cached[0] = true;
+                cached[1] = st.games.containsKey(code);
+                return st;
+            });
+            UserState loadedUser = cached[0] ? null : loadUser(userId);
+            GameState loadedGame = cached[1] ? null : loadGame(userId, code);
+
+            boolean[] stale = new boolean[1];
+            states.compute(userId, (id, st) -> {
+                GameState game = st == null ? null : st.games.get(code);
+                if (st == null || game == null) {
+                    // stato sparito o gioco aggiunto nel frattempo: quanto letto può essere vecchio
+                    boolean missing = (st == null && loadedUser == null) || loadedGame == null;
+                    if (missing || evictions.get(stripe(id)) != epoch) {
+                        stale[0] = true;
+                        return st;
+                    }
+                    if (st == null) {
+                        st = loadedUser;
+                    }
+                    game = loadedGame;
+                    st.games.put(code, game);
+                }
+
+                int oldLevel = st.level;
+                game.last = score;
+                game.played++;
+                game.best = Math.max(game.best, score);
+                st.xpTotal += score;
+                LevelInfo info = Leveling.fromTotalXp(st.xpTotal);
+                st.level = info.level();
+
+                GameDelta d = st.pending.computeIfAbsent(code, c -> new GameDelta());
+                d.maxScore = Math.max(d.maxScore, score);
+                d.lastScore = score;
+                d.runs++;
+                st.pendingEvents.add(new Run(code, score, Timestamp.valueOf(playedAt)));
+                st.pendingXp += score;
+                st.pendingRuns++;
+
+                played[0] = game.played;
+                out[0] = new ProgressResponse(game.best, game.last, st.xpTotal, st.level,
+                        st.level > oldLevel, info.xpIntoLevel(), info.xpToNext());
+                return st;
+            });
+            done = !stale[0]; // raro: si rilegge
+        }
+
+        leaderboardEngine.recordScore(userId, code, out[0].bestScore(), played[0], out[0].level());
+        leaderboardEngine.recordRun(userId, code, score, playedAt);
+
+        if (pendingRuns.incrementAndGet() >= batchSize) {
+            signalFlusher();
+        }
+        if (!running) {
+            flushNow(); // accodata dopo il drain finale di stop(): la scrive chi l'ha accodata
+        }
+        return out[0];
+    }
+
+    private ServiceUnavailableException unavailable(String message) {
+        long retryAfter = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(flushIntervalMs * 2));
+        return new ServiceUnavailableException("SCORE_QUEUE_FULL", message, retryAfter);
+    }
+
+    // progresso "live" se l'utente ha partite non ancora scritte
+    public Optional<ProgressResponse> peek(long userId, String gameCode) {
+        ProgressResponse[] out = new ProgressResponse[1];
+        states.computeIfPresent(userId, (id, st) -> {
+            GameState game = st.games.get(gameCode);
+            if (game != null) {
+                LevelInfo info = Leveling.fromTotalXp(st.xpTotal);
+                out[0] = new ProgressResponse(game.best, game.last, st.xpTotal, info.level(),
+                        false, info.xpIntoLevel(), info.xpToNext());
+            }
+            return st;
+        });
+        return Optional.ofNullable(out[0]);
+    }
+
+    // utente cancellato: i suoi delta non vanno più scritti
+    public void forget(long userId) {
+        states.computeIfPresent(userId, (id, st) -> {
+            pendingRuns.addAndGet(-st.pendingRuns);
+            evictions.incrementAndGet(stripe(id));
+            return null;
+        });
+    }
+
+    // progresso dal DB senza caricare lo stato in memoria (modalità log: aggregati + coda)
+    public ProgressResponse load(long userId, String gameCode) {
+        UserState st = loadUser(userId);
+        GameState game = loadGame(userId, gameCode);
+        LevelInfo info = Leveling.fromTotalXp(st.xpTotal);
+        return new ProgressResponse(game.best, game.last, st.xpTotal, info.level(), false,
+                info.xpIntoLevel(), info.xpToNext());
+    }
+
+    private UserState loadUser(long userId) {
+        UserState st = new UserState();
+        if (!logMode) {
+            jdbc.query("SELECT xp_total, level FROM users WHERE id = ?", rs -> {
+                st.xpTotal = rs.getLong("xp_total");
+                st.level = rs.getInt("level");
+            }, userId);
+            return st;
+        }
+        jdbc.query(USER_VIEW_SQL, rs -> {
+            st.xpTotal = rs.getLong("xp_total") + rs.getLong("tail_xp");
+            // il livello su users arriva con la compattazione
+            st.level = Math.max(rs.getInt("level"), Leveling.levelOf(st.xpTotal));
+        }, userId);
+        return st;
+    }
+
+    private GameState loadGame(long userId, String gameCode) {
+        GameState g = new GameState();
+        if (!logMode) {
+            jdbc.query("SELECT best_score, last_score, played_count FROM user_game_progress WHERE user_id = ? AND game_code = ?",
+                    rs -> {
+                        g.best = rs.getInt("best_score");
+                        g.last = rs.getInt("last_score");
+                        g.played = rs.getInt("played_count");
+                    }, userId, gameCode);
+            return g;
+        }
+        jdbc.query(GAME_VIEW_SQL, rs -> {
+            g.best = Math.max(g.best, rs.getInt("score"));
+            g.last = rs.getInt("last_score");
+            g.played += rs.getInt("played_count");
+        }, userId, gameCode, userId, gameCode);
+        return g;
+    }
+
+    // ---------------------------------------------------------------- flush
+    public void flushNow() {
+        flush(false);
+    }
+
+    // force: anche gli utenti in backoff (drain finale)
+    private void flush(boolean force) {
+        flushLock.lock();
+        try {
+            List<UserBatch> batch = drain(force);
+            if (batch.isEmpty()) {
+                return;
+            }
+            if (tryWrite(batch)) {
+                batch.forEach(this::settle);
+                return;
+            }
+            // un utente "avvelenato" non deve bloccare gli altri: riprovo uno per uno
+            for (UserBatch b : batch) {
+                if (tryWrite(List.of(b))) {
+                    settle(b);
+                } else {
+                    requeue(b);
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // stacca i delta pendenti dagli stati (lo stato resta in memoria fino al commit)
+    private List<UserBatch> drain(boolean force) {
+        List<UserBatch> batch = new ArrayList<>();
+        long now = System.nanoTime();
+        for (Long userId : states.keySet()) {
+            states.computeIfPresent(userId, (id, st) -> {
+                if (st.pendingRuns > 0 && (force || st.failures == 0 || now - st.retryAt >= 0)) {
+                    batch.add(new UserBatch(id, st.pendingXp, st.level, st.pendingRuns, st.pending,
+                            st.pendingEvents));
+                    st.inFlight += st.pendingRuns;
+                    st.pending = new HashMap<>();
+                    st.pendingEvents = new ArrayList<>();
+                    st.pendingXp = 0;
+                    st.pendingRuns = 0;
+                }
+                return st;
+            });
+        }
+        return batch;
+    }
+
+    private boolean tryWrite(List<UserBatch> batch) {
+        try {
+            tx.executeWithoutResult(s -> writeRows(batch));
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Flush punteggi fallito ({} utenti)", batch.size(), e);
+            return false;
+        }
+    }
+
+    private void writeRows(List<UserBatch> batch) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> progressRows = new ArrayList<>();
+        List<Object[]> userRows = new ArrayList<>(batch.size());
+        List<Object[]> eventRows = new ArrayList<>();
+
+        for (UserBatch b : batch) {
+            b.events().forEach(r
+                    -> eventRows.add(new Object[]{b.userId(), r.gameCode(), r.score(), r.playedAt(), !logMode}));
+            if (logMode) {
+                continue; // aggregati: li aggiorna il compattatore
+            }
+            b.games().forEach((code, d)
+                    -> progressRows.add(new Object[]{b.userId(), code, d.maxScore, d.lastScore, d.runs, now}));
+            userRows.add(new Object[]{b.xp(), b.level(), now, b.userId()});
+        }
+
+        jdbc.batchUpdate(INSERT_EVENT_SQL, eventRows);
+        if (!logMode) {
+            jdbc.batchUpdate(UPSERT_PROGRESS_SQL, progressRows);
+            jdbc.batchUpdate(ADD_XP_SQL, userRows);
+        }
+    }
+
+    // dopo la scrittura: lo stato pulito esce dalla memoria (la prossima lettura va sul DB)
+    private void settle(UserBatch b) {
+        pendingRuns.addAndGet(-b.runs());
+        states.computeIfPresent(b.userId(), (id, st) -> {
+            st.inFlight -= b.runs();
+            st.failures = 0;
+            return evictIfClean(id, st);
+        });
+    }
+
+    // scrittura fallita: i delta tornano in coda (sotto quelli più recenti) e l'utente
+    // viene riprovato dopo un backoff esponenziale; non si scarta nulla (il client ha già
+    // avuto la risposta), il limite lo dà max-pending rifiutando le nuove partite
+    private void requeue(UserBatch b) {
+        states.compute(b.userId(), (id, st) -> {
+            if (st == null) { // utente dimenticato (cancellato) nel frattempo
+                pendingRuns.addAndGet(-b.runs());
+                return null;
+            }
+            st.inFlight -= b.runs();
+            st.failures++;
+            long backoffMs = Math.min(MAX_BACKOFF_MS, flushIntervalMs << Math.min(st.failures - 1, 16));
+            st.retryAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffMs);
+            if (st.failures % 5 == 0) {
+                log.error("Partite dell'utente {} non scritte dopo {} tentativi, riprovo tra {} ms",
+                        id, st.failures, backoffMs);
+            }
+            b.games().forEach((code, older) -> st.pending.merge(code, older, (current, old) -> {
+                current.maxScore = Math.max(current.maxScore, old.maxScore);
+                current.runs += old.runs;
+                return current; // lastScore resta quello più recente
+            }));
+            List<Run> events = new ArrayList<>(b.events());
+            events.addAll(st.pendingEvents); // ordine di gioco: prima le partite più vecchie
+            st.pendingEvents = events;
+            st.pendingXp += b.xp();
+            st.pendingRuns += b.runs();
+            return st;
+        });
+    }
+
+    private UserState evictIfClean(long userId, UserState st) {
+        if (!st.isClean()) {
+            return st;
+        }
+        evictions.incrementAndGet(stripe(userId));
+        return null;
+    }
+
+    private static int stripe(long userId) {
+        return (int) userId & 63;
+    }
+
+    private void signalFlusher() {
+        signalLock.lock();
+        try {
+            wakeUp.signal();
+        } finally {
+            signalLock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        while (running) {
+            signalLock.lock();
+            try {
+                wakeUp.await(flushIntervalMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                signalLock.unlock();
+            }
+            try {
+                flushNow();
+            } catch (RuntimeException e) {
+                log.error("Errore nel flusher punteggi", e);
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- lifecycle
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        flusher = Thread.ofPlatform().name("score-flusher").daemon(true).start(this::flushLoop);
+        log.info("Ingestione punteggi {} attiva (batch {}, ogni {} ms, max {} in coda)",
+                logMode ? "log" : "batched", batchSize, flushIntervalMs, maxPending);
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        signalFlusher();
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // drain finale: niente partite perse allo shutdown
+        flush(true);
+        int left = pendingRuns.get();
+        if (left > 0) {
+            log.error("Ingestione punteggi fermata con {} partite non scritte", left);
+        } else {
+            log.info("Ingestione punteggi fermata, coda svuotata");
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+}
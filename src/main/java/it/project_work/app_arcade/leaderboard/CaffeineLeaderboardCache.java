@@ -0,0 +1,117 @@
+package it.project_work.app_arcade.leaderboard;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Cache locale (Caffeine) con TTL e dimensione massima, una per scope.
+ *
+ * Invalidazione guidata dai submit: a ogni LeaderboardChangedEvent si
+ * eliminano solo le voci della classifica toccata con limit oltre la prima
+ * posizione cambiata. Un punteggio su "flappy" non svuota la cache di altri
+ * giochi, e un cambiamento in 500esima posizione non tocca le top-20.
+ *
+ * Un caricamento iniziato prima di un cambiamento e finito dopo non è ancora
+ * in cache quando arriva l'evento: per questo ogni voce porta la revisione
+ * della classifica letta prima di calcolarla, e ogni classifica ricorda la
+ * revisione dell'ultimo cambiamento che ha toccato ciascuna top-K. Una voce
+ * più vecchia di quel cambiamento è un miss e si ricalcola.
+ */
+@Component
+@ConditionalOnProperty(name = "app.leaderboard.cache.type", havingValue = "caffeine", matchIfMissing = true)
+public class CaffeineLeaderboardCache implements LeaderboardCache {
+
+    // top più lunghe di così condividono l'ultima cella delle invalidazioni (più miss, mai voci vecchie)
+    private static final int TRACKED_LIMITS = 128;
+
+    private record Key(String gameCode, int limit) {
+
+    }
+
+    // righe + revisione della classifica letta prima di calcolarle
+    private record Versioned(long revision, List<?> rows) {
+
+    }
+
+    private final LeaderboardEngine engine;
+    private final Map<String, Cache<Key, Versioned>> caches = new LinkedHashMap<>();
+    // per classifica (scope:gameCode): cella j = revisione dell'ultimo cambiamento che ha toccato la top-j
+    private final Map<String, AtomicLongArray> invalidatedAt = new ConcurrentHashMap<>();
+
+    public CaffeineLeaderboardCache(
+            LeaderboardEngine engine,
+            @Value("${app.leaderboard.cache.ttl-seconds:30}") long ttlSeconds,
+            @Value("${app.leaderboard.cache.max-size:1000}") long maxSize) {
+        this.engine = engine;
+        for (String scope : List.of(GLOBAL, GAME)) {
+            caches.put(scope, Caffeine.newBuilder()
+                    .expireAfterWrite(Duration.ofSeconds(ttlSeconds)) // rete di sicurezza
+                    .maximumSize(maxSize)
+                    .recordStats()
+                    .build());
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> List<T> get(String scope, String gameCode, int limit, Supplier<List<T>> loader) {
+        Cache<Key, Versioned> cache = caches.get(scope);
+        Key key = new Key(gameCode, limit);
+        while (true) {
+            Versioned v = cache.get(key, k -> new Versioned(engine.revisionOf(gameCode), List.copyOf(loader.get())));
+            if (v.revision() >= invalidatedAt(scope, gameCode, limit)) {
+                return (List<T>) v.rows();
+            }
+            // calcolata prima di un cambiamento arrivato durante il caricamento
+            cache.asMap().remove(key, v);
+        }
+    }
+
+    @EventListener
+    public void onLeaderboardChanged(LeaderboardChangedEvent event) {
+        String scope = event.isGlobal() ? GLOBAL : GAME;
+        long revision = engine.revisionOf(event.gameCode()); // già incrementata dal motore
+        AtomicLongArray marks = invalidatedAt.computeIfAbsent(boardKey(scope, event.gameCode()),
+                k -> new AtomicLongArray(TRACKED_LIMITS + 1));
+        for (int j = Math.min(Math.max(event.firstChangedRank(), 0) + 1, TRACKED_LIMITS); j <= TRACKED_LIMITS; j++) {
+            marks.accumulateAndGet(j, revision, Math::max);
+        }
+
+        // le voci già in cache si tolgono subito
+        caches.get(scope).asMap().keySet().removeIf(k
+                -> Objects.equals(k.gameCode(), event.gameCode()) && event.affectsTop(k.limit()));
+    }
+
+    private long invalidatedAt(String scope, String gameCode, int limit) {
+        AtomicLongArray marks = invalidatedAt.get(boardKey(scope, gameCode));
+        return marks == null ? 0 : marks.get(Math.min(limit, TRACKED_LIMITS));
+    }
+
+    private static String boardKey(String scope, String gameCode) {
+        return gameCode == null ? scope : scope + ":" + gameCode;
+    }
+
+    @Override
+    public Map<String, CacheStats> stats() {
+        Map<String, CacheStats> out = new LinkedHashMap<>();
+        caches.forEach((scope, cache) -> {
+            var s = cache.stats();
+            out.put(scope, new CacheStats(s.hitCount(), s.missCount(), s.evictionCount(), cache.estimatedSize()));
+        });
+        return out;
+    }
+}
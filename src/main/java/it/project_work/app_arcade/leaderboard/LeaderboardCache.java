@@ -0,0 +1,28 @@
+package it.project_work.app_arcade.leaderboard;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Cache delle risposte top-K delle classifiche, chiave (scope, gameCode, limit).
+ * Implementazione scelta con app.leaderboard.cache.type (caffeine | none).
+ */
+public interface LeaderboardCache {
+
+    String GLOBAL = "global";
+    String GAME = "game";
+
+    <T> List<T> get(String scope, String gameCode, int limit, Supplier<List<T>> loader);
+
+    // hit/miss per cache (scope)
+    Map<String, CacheStats> stats();
+
+    record CacheStats(long hits, long misses, long evictions, long size) {
+
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+}
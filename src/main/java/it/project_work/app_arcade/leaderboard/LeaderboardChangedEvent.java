@@ -0,0 +1,20 @@
+package it.project_work.app_arcade.leaderboard;
+
+/**
+ * Pubblicato dal LeaderboardEngine quando una classifica cambia.
+ *
+ * firstChangedRank (0-based) è la prima posizione toccata dal cambiamento:
+ * una top-K con K <= firstChangedRank è rimasta identica.
+ * gameCode null = classifica globale.
+ */
+public record LeaderboardChangedEvent(String gameCode, int firstChangedRank) {
+
+    public boolean isGlobal() {
+        return gameCode == null;
+    }
+
+    // la top-"limit" di questa classifica è cambiata?
+    public boolean affectsTop(int limit) {
+        return limit > firstChangedRank;
+    }
+}
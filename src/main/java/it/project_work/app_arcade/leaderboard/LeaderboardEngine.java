@@ -0,0 +1,593 @@
+package it.project_work.app_arcade.leaderboard;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import it.project_work.app_arcade.dto.GameTopDTO;
+import it.project_work.app_arcade.dto.LeaderboardPage;
+import it.project_work.app_arcade.dto.LeaderboardResponse;
+import it.project_work.app_arcade.dto.PlayerRankResponse;
+import it.project_work.app_arcade.dto.RankRowDTO;
+import it.project_work.app_arcade.repositories.ProgressRepository;
+import it.project_work.app_arcade.repositories.ScoreEventRepository;
+import it.project_work.app_arcade.repositories.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Classifiche in memoria: un indice ordinato (score desc, userId asc) per ogni
+ * gameCode + uno per il totale globale. L'indice è order-statistic
+ * ({@link RankIndex}): top-K, posizione di un utente e vicini in O(log n).
+ *
+ * Le letture top-K non toccano MySQL; le scritture arrivano da
+ * ProgressService/UserService/AuthService e vengono applicate solo dopo il
+ * commit della transazione. Finché il warm-up iniziale non è completo
+ * {@link #isWarm()} è false e LeaderboardService continua a usare il DB.
+ *
+ * Accanto alle classifiche di sempre ci sono quelle a finestra (giorno,
+ * settimana, mese) per gioco, vedi {@link WindowBoards}.
+ *
+ * Ogni modifica live pubblica un {@link LeaderboardChangedEvent} con la prima
+ * posizione toccata (usato dalla cache per invalidare solo le top-K cambiate).
+ */
+@Slf4j
+@Component
+public class LeaderboardEngine {
+
+    // riga di classifica (solo come risultato: le classifiche tengono colonne primitive)
+    // per un gioco score = bestScore, per il globale score = somma dei bestScore
+    record Entry(long userId, long score, long played) {
+
+    }
+
+    // dati "anagrafici" mostrati in classifica
+    record Player(String username, String avatarUrl, Integer level) {
+
+    }
+
+    /**
+     * Versione di una classifica per ETag/Last-Modified: tag cambia a ogni
+     * modifica del contenuto (ed è diverso tra un avvio e l'altro),
+     * lastModified = ultimo updatedAt / ultima modifica live (epoch millis).
+     */
+    public record BoardVersion(String tag, long lastModified) {
+
+    }
+
+    /**
+     * Una classifica: score e played in colonne long[] indicizzate dallo slot
+     * dell'utente ({@link UserSlots}) più l'indice di posizione sugli slot.
+     * Nessun oggetto per riga oltre al nodo del treap.
+     *
+     * Le colonne sono lunghe quanto gli slot dell'indice: il globale usa gli
+     * slot del dizionario giocatori (ci sono tutti gli utenti), ogni classifica
+     * per gioco ha un indice suo, denso sui soli utenti che hanno giocato.
+     *
+     * put/remove vanno chiamati sotto writeLock, le letture sono senza lock.
+     * Played si scrive prima dello score (pubblicato con setRelease): get()
+     * non vede mai uno score senza il suo played, ma può vedere un played
+     * più nuovo di uno score letto un attimo prima. Le righe di range()
+     * prendono lo score dallo snapshot dell'indice e played dalla colonna.
+     */
+    static final class Board {
+
+        private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+        // scores: ABSENT = nessuna riga per lo slot
+        private record Columns(long[] scores, long[] played) {
+
+            static Columns ofCapacity(int capacity) {
+                return new Columns(new long[0], new long[0]).grow(capacity);
+            }
+
+            Columns grow(int capacity) {
+                long[] s = Arrays.copyOf(scores, capacity);
+                Arrays.fill(s, scores.length, capacity, RankIndex.ABSENT);
+                return new Columns(s, Arrays.copyOf(played, capacity));
+            }
+        }
+
+        private final UserSlots slots;
+        private final RankIndex ranking;
+        private volatile Columns columns = Columns.ofCapacity(16);
+        private final AtomicLong version = new AtomicLong();
+        private volatile long lastModified;
+
+        // slots condivisi (globale) o propri (per gioco e a finestra)
+        Board(UserSlots slots) {
+            this.slots = slots;
+            this.ranking = new RankIndex(slots::userIdOf);
+        }
+
+        void touch(long millis) {
+            version.incrementAndGet();
+            lastModified = Math.max(lastModified, millis);
+        }
+
+        Entry get(long userId) {
+            int slot = slots.get(userId);
+            Columns c = columns;
+            if (slot < 0 || slot >= c.scores().length) {
+                return null;
+            }
+            long score = (long) LONGS.getAcquire(c.scores(), slot);
+            return score == RankIndex.ABSENT ? null : new Entry(userId, score, c.played()[slot]);
+        }
+
+        // ritorna la prima posizione (0-based) toccata dal cambiamento
+        int put(long userId, long score, long played) {
+            int slot = slots.getOrAdd(userId);
+            Columns c = columns;
+            if (slot >= c.scores().length) {
+                c = c.grow(Math.max(slot + 1, c.scores().length * 2));
+                columns = c;
+            }
+            long old = c.scores()[slot];
+            int oldRank = old == RankIndex.ABSENT ? Integer.MAX_VALUE : ranking.indexOf(old, userId);
+            c.played()[slot] = played;
+            LONGS.setRelease(c.scores(), slot, score);
+            if (old != score) {
+                ranking.replace(slot, old, score); // played non conta per l'ordine
+            }
+            return Math.min(oldRank, ranking.indexOf(score, userId));
+        }
+
+        // ritorna la posizione che l'utente occupava, -1 se assente
+        int remove(long userId) {
+            Entry old = get(userId);
+            if (old == null) {
+                return -1;
+            }
+            int slot = slots.get(userId);
+            int oldRank = ranking.indexOf(old.score(), userId);
+            LONGS.setRelease(columns.scores(), slot, RankIndex.ABSENT);
+            ranking.replace(slot, old.score(), RankIndex.ABSENT);
+            return oldRank;
+        }
+
+        int size() {
+            return ranking.size();
+        }
+
+        int indexOf(Entry e) {
+            return ranking.indexOf(e.score(), e.userId());
+        }
+
+        // count righe dalla posizione from, dallo stesso snapshot
+        List<Entry> range(int from, int count) {
+            List<Entry> out = new ArrayList<>(Math.max(0, Math.min(count, 64)));
+            ranking.range(from, count, (slot, score) -> out.add(row(slot, score)));
+            return out;
+        }
+
+        // count righe strettamente dopo (score, userId), dallo stesso snapshot
+        List<Entry> rangeAfter(long score, long userId, int count) {
+            List<Entry> out = new ArrayList<>(Math.max(0, Math.min(count, 64)));
+            ranking.rangeAfter(score, userId, count, (slot, s) -> out.add(row(slot, s)));
+            return out;
+        }
+
+        private Entry row(int slot, long score) {
+            long[] played = columns.played();
+            return new Entry(slots.userIdOf(slot), score, slot < played.length ? played[slot] : 0);
+        }
+    }
+
+    private final UserRepository userRepository;
+    private final ProgressRepository progressRepository;
+    private final ScoreEventRepository scoreEventRepository;
+    private final ApplicationEventPublisher events;
+
+    // un solo indice userId -> slot per dizionario giocatori e globale (le classifiche
+    // per gioco hanno il loro: con gli slot di tutti le colonne sarebbero lunghe quanto gli utenti)
+    private final UserSlots userSlots = new UserSlots();
+    private final PlayerDictionary players = new PlayerDictionary(userSlots);
+    private final Map<String, Board> games = new ConcurrentHashMap<>();
+    private final Board global = new Board(userSlots);
+    private final WindowBoards windows = new WindowBoards();
+
+    // partite prima di questo istante arrivano dal warm-up (score_events), dopo dagli aggiornamenti live
+    private volatile LocalDateTime windowsFrom = LocalDateTime.MAX;
+
+    // le scritture sono ~100 volte più rare delle letture: un solo lock basta
+    private final Object writeLock = new Object();
+
+    private volatile boolean warm = false;
+
+    // distingue le versioni di questo avvio da quelle di un processo precedente
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final long startedAt = System.currentTimeMillis();
+
+    public LeaderboardEngine(UserRepository userRepository, ProgressRepository progressRepository,
+            ScoreEventRepository scoreEventRepository, ApplicationEventPublisher events) {
+        this.userRepository = userRepository;
+        this.progressRepository = progressRepository;
+        this.scoreEventRepository = scoreEventRepository;
+        this.events = events;
+    }
+
+    public boolean isWarm() {
+        return warm;
+    }
+
+    // ---------------------------------------------------------------- warm-up
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpInBackground() {
+        // la porta è già aperta: il warm-up non deve ritardare le prime richieste
+        Thread.ofVirtual().name("leaderboard-warmup").start(this::warmUp);
+    }
+
+    public void warmUp() {
+        long start = System.nanoTime();
+        // le tre letture partono insieme (ognuna con la sua connessione), poi si applicano in ordine
+        try (ExecutorService readers = Executors.newVirtualThreadPerTaskExecutor()) {
+            LocalDateTime until = LocalDateTime.now();
+            windowsFrom = until;
+            Future<List<PlayerRow>> playerRows = readers.submit(userRepository::findAllPlayerRows);
+            Future<List<ScoreRow>> scoreRows = readers.submit(progressRepository::findAllScoreRows);
+            Future<List<WindowRow>> windowRows = readers.submit(() -> readWindows(until));
+
+            for (PlayerRow row : playerRows.get()) {
+                // putIfAbsent: un aggiornamento live arrivato durante il warm-up è più recente
+                players.putIfAbsent(row.userId(), new Player(row.username(), row.avatarUrl(), row.level()));
+                synchronized (writeLock) {
+                    if (global.get(row.userId()) == null) {
+                        global.put(row.userId(), 0, 0);
+                    }
+                }
+            }
+            for (ScoreRow row : scoreRows.get()) {
+                applyScore(row.userId(), row.gameCode(),
+                        row.bestScore() == null ? 0 : row.bestScore(),
+                        row.playedCount() == null ? 0 : row.playedCount());
+                if (row.updatedAt() != null) {
+                    long millis = row.updatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                    Board board = games.get(row.gameCode());
+                    board.lastModified = Math.max(board.lastModified, millis);
+                    global.lastModified = Math.max(global.lastModified, millis);
+                }
+            }
+            for (WindowRow row : windowRows.get()) {
+                synchronized (writeLock) {
+                    windows.record(row.userId(), row.gameCode(), row.bestScore(), row.runs(), row.day());
+                }
+            }
+            warm = true;
+            log.info("Leaderboard engine warm: {} giocatori, {} giochi in {} ms",
+                    players.size(), games.size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Warm-up leaderboard engine interrotto, uso il DB");
+        } catch (Exception e) {
+            // resta "freddo": LeaderboardService continua a leggere dal DB
+            log.warn("Warm-up leaderboard engine fallito, uso il DB", e);
+        }
+    }
+
+    // classifiche a finestra: solo le partite dall'inizio della finestra più lunga, aggregate per giorno.
+    // until = windowsFrom: le partite da lì in poi arrivano live da recordRun
+    private List<WindowRow> readWindows(LocalDateTime until) {
+        LocalDate today = until.toLocalDate();
+        LocalDate since = today;
+        for (LeaderboardWindow w : LeaderboardWindow.TIMED) {
+            LocalDate start = w.startOf(today);
+            since = start.isBefore(since) ? start : since;
+        }
+        return scoreEventRepository.findWindowRows(since.atStartOfDay(), until);
+    }
+
+    // ---------------------------------------------------------------- scritture
+    public void recordScore(long userId, String gameCode, int bestScore, int playedCount, Integer level) {
+        afterCommit(() -> {
+            publish(applyScore(userId, gameCode, bestScore, playedCount));
+            if (updatePlayer(userId, p -> new Player(p.username(), p.avatarUrl(), level))) {
+                publish(positionsOf(userId));
+            }
+        });
+    }
+
+    // una singola partita, per le classifiche a finestra (il bestScore di sempre arriva da recordScore)
+    public void recordRun(long userId, String gameCode, int score, LocalDateTime playedAt) {
+        afterCommit(() -> {
+            if (playedAt.isBefore(windowsFrom)) {
+                return; // già contata dal warm-up (o la conterà)
+            }
+            synchronized (writeLock) {
+                windows.record(userId, gameCode, score, 1, playedAt.toLocalDate());
+            }
+        });
+    }
+
+    public void upsertPlayer(long userId, String username, String avatarUrl, Integer level) {
+        afterCommit(() -> {
+            players.put(userId, new Player(username, avatarUrl, level));
+            int rank = -1;
+            synchronized (writeLock) {
+                if (global.get(userId) == null) {
+                    rank = global.put(userId, 0, 0);
+                }
+            }
+            if (rank >= 0) {
+                publish(List.of(new LeaderboardChangedEvent(null, rank)));
+            }
+        });
+    }
+
+    public void renamePlayer(long userId, String username) {
+        afterCommit(() -> {
+            if (updatePlayer(userId, p -> new Player(username, p.avatarUrl(), p.level()))) {
+                publish(positionsOf(userId));
+            }
+        });
+    }
+
+    public void changeAvatar(long userId, String avatarUrl) {
+        afterCommit(() -> {
+            if (updatePlayer(userId, p -> new Player(p.username(), avatarUrl, p.level()))) {
+                publish(positionsOf(userId));
+            }
+        });
+    }
+
+    public void removePlayer(long userId) {
+        afterCommit(() -> {
+            List<LeaderboardChangedEvent> changed = new ArrayList<>();
+            synchronized (writeLock) {
+                games.forEach((code, b) -> {
+                    int rank = b.remove(userId);
+                    if (rank >= 0) {
+                        changed.add(new LeaderboardChangedEvent(code, rank));
+                    }
+                });
+                int rank = global.remove(userId);
+                if (rank >= 0) {
+                    changed.add(new LeaderboardChangedEvent(null, rank));
+                }
+                windows.remove(userId);
+            }
+            players.remove(userId);
+            publish(changed);
+        });
+    }
+
+    // bestScore e playedCount non diminuiscono mai: il merge con max rende
+    // indifferente l'ordine tra warm-up e aggiornamenti live
+    private List<LeaderboardChangedEvent> applyScore(long userId, String gameCode, int bestScore, int playedCount) {
+        synchronized (writeLock) {
+            Board board = games.computeIfAbsent(gameCode, k -> new Board(new UserSlots()));
+            Entry old = board.get(userId);
+
+            long oldBest = old == null ? 0 : old.score();
+            long oldPlayed = old == null ? 0 : old.played();
+            long newBest = Math.max(oldBest, bestScore);
+            long newPlayed = Math.max(oldPlayed, playedCount);
+
+            if (old != null && newBest == oldBest && newPlayed == oldPlayed) {
+                return List.of();
+            }
+            int gameRank = board.put(userId, newBest, newPlayed);
+
+            Entry tot = global.get(userId);
+            long totScore = (tot == null ? 0 : tot.score()) + (newBest - oldBest);
+            long totPlayed = (tot == null ? 0 : tot.played()) + (newPlayed - oldPlayed);
+            int globalRank = global.put(userId, totScore, totPlayed);
+
+            return List.of(
+                    new LeaderboardChangedEvent(gameCode, gameRank),
+                    new LeaderboardChangedEvent(null, globalRank));
+        }
+    }
+
+    // true se i dati mostrati in classifica sono cambiati
+    private boolean updatePlayer(long userId, UnaryOperator<Player> change) {
+        return players.update(userId, change);
+    }
+
+    // posizioni attuali dell'utente: un cambio di nome/avatar/livello tocca solo quelle righe
+    private List<LeaderboardChangedEvent> positionsOf(long userId) {
+        List<LeaderboardChangedEvent> out = new ArrayList<>();
+        games.forEach((code, b) -> {
+            Entry e = b.get(userId);
+            if (e != null) {
+                out.add(new LeaderboardChangedEvent(code, b.indexOf(e)));
+            }
+        });
+        Entry e = global.get(userId);
+        if (e != null) {
+            out.add(new LeaderboardChangedEvent(null, global.indexOf(e)));
+        }
+        return out;
+    }
+
+    private void publish(List<LeaderboardChangedEvent> changed) {
+        long now = System.currentTimeMillis();
+        for (LeaderboardChangedEvent e : changed) {
+            Board board = e.isGlobal() ? global : games.get(e.gameCode());
+            if (board != null) {
+                board.touch(now);
+            }
+            events.publishEvent(e);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    // ---------------------------------------------------------------- letture
+    public List<GameTopDTO> topOfGame(String gameCode, int limit) {
+        return topOf(games.get(gameCode), limit);
+    }
+
+    // top del periodo corrente della finestra (ALL = classifica di sempre)
+    public List<GameTopDTO> topOfGame(String gameCode, LeaderboardWindow window, int limit) {
+        if (window == LeaderboardWindow.ALL) {
+            return topOfGame(gameCode, limit);
+        }
+        return topOf(windows.board(window, gameCode, LocalDate.now()), limit);
+    }
+
+    private List<GameTopDTO> topOf(Board board, int limit) {
+        if (board == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        List<GameTopDTO> rows = new ArrayList<>(Math.min(limit, 64));
+        for (Entry e : board.range(0, limit)) {
+            Player p = players.get(e.userId());
+            if (p != null) {
+                rows.add(new GameTopDTO(p.username(), p.avatarUrl(), (int) e.score(), p.level(), (int) e.played()));
+            }
+        }
+        return rows;
+    }
+
+    public List<LeaderboardResponse> topGlobal(int limit) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        List<LeaderboardResponse> rows = new ArrayList<>(Math.min(limit, 64));
+        for (Entry e : global.range(0, limit)) {
+            Player p = players.get(e.userId());
+            if (p != null) {
+                rows.add(new LeaderboardResponse(p.username(), p.avatarUrl(), e.score(), e.played(), p.level()));
+            }
+        }
+        return rows;
+    }
+
+    // pagina a cursore: si riparte subito dopo la riga del cursore, O(log n + size)
+    public LeaderboardPage<GameTopDTO> pageOfGame(String gameCode, PageCursor after, int size) {
+        Board board = games.get(gameCode);
+        if (board == null) {
+            return new LeaderboardPage<>(List.of(), null);
+        }
+
+        List<Entry> entries = pageOf(board, after, size);
+        String next = nextCursor(entries, size);
+        List<GameTopDTO> rows = new ArrayList<>(entries.size());
+        for (Entry e : entries) {
+            Player p = players.get(e.userId());
+            if (p != null) {
+                rows.add(new GameTopDTO(p.username(), p.avatarUrl(), (int) e.score(), p.level(), (int) e.played()));
+            }
+        }
+        return new LeaderboardPage<>(rows, next);
+    }
+
+    public LeaderboardPage<LeaderboardResponse> pageGlobal(PageCursor after, int size) {
+        List<Entry> entries = pageOf(global, after, size);
+        String next = nextCursor(entries, size);
+        List<LeaderboardResponse> rows = new ArrayList<>(entries.size());
+        for (Entry e : entries) {
+            Player p = players.get(e.userId());
+            if (p != null) {
+                rows.add(new LeaderboardResponse(p.username(), p.avatarUrl(), e.score(), e.played(), p.level()));
+            }
+        }
+        return new LeaderboardPage<>(rows, next);
+    }
+
+    // size + 1 righe: l'ultima serve solo a sapere se c'è una pagina dopo
+    private static List<Entry> pageOf(Board board, PageCursor after, int size) {
+        return board.rangeAfter(after.score(), after.userId(), size + 1);
+    }
+
+    // toglie la riga in più e ritorna il cursore della pagina dopo (null = ultima pagina)
+    private static String nextCursor(List<Entry> entries, int size) {
+        if (entries.size() <= size) {
+            return null;
+        }
+        entries.remove(size);
+        Entry last = entries.get(size - 1);
+        return new PageCursor(last.score(), last.userId()).encode();
+    }
+
+    // versione corrente della classifica (gameCode null = globale), vuota finché il motore è freddo
+    public Optional<BoardVersion> versionOf(String gameCode) {
+        if (!warm) {
+            return Optional.empty();
+        }
+        Board board = gameCode == null ? global : games.get(gameCode);
+        if (board == null) {
+            return Optional.of(new BoardVersion(epoch + "-0", startedAt));
+        }
+        long lastModified = board.lastModified > 0 ? board.lastModified : startedAt;
+        return Optional.of(new BoardVersion(epoch + "-" + board.version.get(), lastModified));
+    }
+
+    // numero di cambiamenti pubblicati per la classifica (anche a motore freddo), per la cache
+    long revisionOf(String gameCode) {
+        Board board = gameCode == null ? global : games.get(gameCode);
+        return board == null ? 0 : board.version.get();
+    }
+
+    // posizione dell'utente nel gioco + "around" vicini sopra e sotto
+    public PlayerRankResponse rankInGame(String gameCode, long userId, int around) {
+        return rankOf(games.get(gameCode), gameCode, userId, around);
+    }
+
+    public PlayerRankResponse rankGlobal(long userId, int around) {
+        return rankOf(global, null, userId, around);
+    }
+
+    private PlayerRankResponse rankOf(Board board, String gameCode, long userId, int around) {
+        Entry me = board == null ? null : board.get(userId);
+        int total = board == null ? 0 : board.size();
+
+        // utente che non ha ancora giocato: nessuna posizione
+        if (me == null) {
+            return new PlayerRankResponse(gameCode, null, total, null, null, List.of());
+        }
+
+        int pos = board.indexOf(me); // 0-based
+        int from = Math.max(0, pos - around);
+
+        List<RankRowDTO> neighbours = new ArrayList<>(2 * around + 1);
+        int rank = from + 1;
+        for (Entry e : board.range(from, pos - from + around + 1)) {
+            Player p = players.get(e.userId());
+            if (p != null) {
+                neighbours.add(new RankRowDTO(rank, p.username(), p.avatarUrl(), e.score(), e.played(),
+                        p.level(), e.userId() == userId));
+            }
+            rank++;
+        }
+
+        // percentuale di giocatori che stanno sotto
+        double percentile = total == 0 ? 0 : Math.round(1000.0 * (total - pos - 1) / total) / 10.0;
+
+        return new PlayerRankResponse(gameCode, pos + 1, total, percentile, me.score(), neighbours);
+    }
+}
@@ -0,0 +1,295 @@
+package it.project_work.app_arcade.leaderboard;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import it.project_work.app_arcade.dto.LeaderboardDiff;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Classifiche live via Server-Sent Events.
+ *
+ * Nessun thread per connessione: le SseEmitter restano in modalità async e
+ * ogni iscritto ha una piccola coda limitata. Il fan-out si limita a fare
+ * offer() sulle code (mai bloccante); l'invio vero lo fa un virtual thread
+ * creato solo quando la coda ha qualcosa da spedire. Se un client non
+ * smaltisce e la coda si riempie, viene disconnesso (EventSource si
+ * riconnette da solo e riparte dallo snapshot).
+ *
+ * I LeaderboardChangedEvent vengono accorpati: una classifica "sporca" viene
+ * ricalcolata al massimo una volta ogni coalesce-ms, e il diff rispetto
+ * all'ultima top-K inviata viene serializzato una sola volta per tutti.
+ */
+@Component
+@Slf4j
+public class LeaderboardStream {
+
+    private static final String GLOBAL_KEY = ""; // chiave della globale nella mappa dei feed
+
+    // stato per classifica: ultima top-K inviata + iscritti
+    private static final class Feed {
+
+        final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+        List<?> last = List.of(); // toccato solo dal thread dello scheduler
+        long seq;
+    }
+
+    private final class Subscriber {
+
+        final SseEmitter emitter;
+        final String key;
+        final BlockingQueue<Set<DataWithMediaType>> queue;
+        final AtomicBoolean draining = new AtomicBoolean();
+        final AtomicBoolean closed = new AtomicBoolean();
+        volatile Feed feed; // assegnato dallo scheduler all'iscrizione
+
+        Subscriber(SseEmitter emitter, String key) {
+            this.emitter = emitter;
+            this.key = key;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+
+        void offer(Set<DataWithMediaType> event) {
+            if (closed.get()) {
+                return;
+            }
+            if (!queue.offer(event)) {
+                log.debug("Client SSE lento, disconnesso");
+                close();
+                sender.execute(emitter::complete); // può attendere un send in corso: mai sul thread del fan-out
+                return;
+            }
+            if (draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        void drain() {
+            try {
+                Set<DataWithMediaType> event;
+                while (!closed.get() && (event = queue.poll()) != null) {
+                    emitter.send(event);
+                }
+            } catch (IOException | IllegalStateException ex) {
+                close(); // client andato via
+                return;
+            } finally {
+                draining.set(false);
+            }
+            // offer arrivato dopo l'ultimo poll ma prima del reset del flag
+            if (!queue.isEmpty() && draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        void close() {
+            if (closed.compareAndSet(false, true)) {
+                queue.clear();
+                count.decrementAndGet();
+                Feed f = feed;
+                if (f != null) {
+                    f.subscribers.remove(this);
+                    if (scheduler.isShutdown()) {
+                        return;
+                    }
+                    // feed senza iscritti -> via dalla mappa (sullo scheduler, come le iscrizioni)
+                    scheduler.execute(() -> {
+                        if (f.subscribers.isEmpty()) {
+                            feeds.remove(key, f);
+                        }
+                    });
+                }
+            }
+        }
+    }
+
+    private final LeaderboardEngine engine;
+    private final JsonMapper jsonMapper;
+
+    private final int topK;
+    private final int queueCapacity;
+    private final int maxSubscribers;
+    private final long timeoutMs;
+    private final long coalesceMs;
+
+    private final Map<String, Feed> feeds = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicInteger count = new AtomicInteger();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().daemon().name("leaderboard-stream").factory());
+    private final ExecutorService sender = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("sse-send-", 0).factory());
+
+    public LeaderboardStream(LeaderboardEngine engine, JsonMapper jsonMapper,
+            @Value("${app.leaderboard.stream.top-k:20}") int topK,
+            @Value("${app.leaderboard.stream.queue-capacity:16}") int queueCapacity,
+            @Value("${app.leaderboard.stream.max-subscribers:10000}") int maxSubscribers,
+            @Value("${app.leaderboard.stream.timeout-ms:1800000}") long timeoutMs,
+            @Value("${app.leaderboard.stream.coalesce-ms:100}") long coalesceMs,
+            @Value("${app.leaderboard.stream.heartbeat-seconds:20}") long heartbeatSeconds) {
+        this.engine = engine;
+        this.jsonMapper = jsonMapper;
+        this.topK = Math.max(1, topK);
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.maxSubscribers = maxSubscribers;
+        this.timeoutMs = timeoutMs;
+        this.coalesceMs = coalesceMs;
+
+        // commento SSE periodico: tiene aperti proxy/load balancer e scopre le connessioni morte
+        scheduler.scheduleAtFixedRate(this::heartbeat, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+    }
+
+    public int subscriberCount() {
+        return count.get();
+    }
+
+    // gameCode null = classifica globale
+    public SseEmitter subscribe(String gameCode) {
+        if (!engine.isWarm()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Classifica in caricamento, riprova");
+        }
+        if (count.incrementAndGet() > maxSubscribers) {
+            count.decrementAndGet();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Troppi client collegati");
+        }
+
+        String key = gameCode == null ? GLOBAL_KEY : gameCode;
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber sub = new Subscriber(emitter, key);
+
+        emitter.onCompletion(sub::close);
+        emitter.onTimeout(sub::close);
+        emitter.onError(ex -> sub.close());
+
+        // iscrizione e snapshot sullo stesso thread dei diff: l'ordine snapshot -> diff è garantito
+        scheduler.execute(() -> {
+            if (sub.closed.get()) {
+                return; // chiusa prima ancora di iscriversi
+            }
+            try {
+                Feed feed = feeds.computeIfAbsent(key, k -> new Feed());
+                if (feed.subscribers.isEmpty()) {
+                    feed.last = top(key); // nessuno la seguiva: la top-K salvata può essere vecchia
+                }
+                sub.feed = feed;
+                feed.subscribers.add(sub);
+                if (sub.closed.get()) {
+                    feed.subscribers.remove(sub); // close() concorrente che non ha visto il feed
+                    return;
+                }
+                sub.offer(event("snapshot", diff(key, feed.seq, List.of(), feed.last)));
+            } catch (RuntimeException ex) {
+                log.warn("Snapshot SSE fallito per '{}'", key, ex);
+                sub.close();
+                emitter.completeWithError(ex);
+            }
+        });
+        return emitter;
+    }
+
+    @EventListener
+    public void onLeaderboardChanged(LeaderboardChangedEvent event) {
+        String key = event.isGlobal() ? GLOBAL_KEY : event.gameCode();
+        Feed feed = feeds.get(key);
+        if (feed == null || feed.subscribers.isEmpty() || !event.affectsTop(topK)) {
+            return;
+        }
+        dirty.add(key);
+        if (flushScheduled.compareAndSet(false, true)) {
+            scheduler.schedule(this::flush, coalesceMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush() {
+        flushScheduled.set(false);
+        for (String key : List.copyOf(dirty)) {
+            dirty.remove(key);
+            Feed feed = feeds.get(key);
+            if (feed == null || feed.subscribers.isEmpty()) {
+                continue;
+            }
+            try {
+                List<?> current = top(key);
+                LeaderboardDiff<?> diff = diff(key, feed.seq + 1, feed.last, current);
+                if (diff.changes().isEmpty() && diff.size() == feed.last.size()) {
+                    continue;
+                }
+                feed.seq++;
+                feed.last = current;
+                Set<DataWithMediaType> event = event("diff", diff);
+                feed.subscribers.forEach(s -> s.offer(event));
+            } catch (RuntimeException ex) {
+                log.warn("Aggiornamento SSE fallito per '{}'", key, ex);
+            }
+        }
+    }
+
+    private void heartbeat() {
+        if (count.get() == 0) {
+            return;
+        }
+        try {
+            Set<DataWithMediaType> ping = SseEmitter.event().comment("ping").build();
+            feeds.values().forEach(f -> f.subscribers.forEach(s -> s.offer(ping)));
+        } catch (RuntimeException ex) {
+            log.warn("Heartbeat SSE fallito", ex);
+        }
+    }
+
+    private List<?> top(String key) {
+        return GLOBAL_KEY.equals(key) ? engine.topGlobal(topK) : engine.topOfGame(key, topK);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static LeaderboardDiff<?> diff(String key, long seq, List<?> before, List<?> after) {
+        List<LeaderboardDiff.Change<Object>> changes = new ArrayList<>();
+        for (int i = 0; i < after.size(); i++) {
+            Object row = after.get(i);
+            if (i >= before.size() || !Objects.equals(before.get(i), row)) {
+                changes.add(new LeaderboardDiff.Change<>(i + 1, row));
+            }
+        }
+        return new LeaderboardDiff(GLOBAL_KEY.equals(key) ? null : key, seq, after.size(), changes);
+    }
+
+    // serializzato una volta sola e condiviso (in sola lettura) da tutti gli iscritti
+    private Set<DataWithMediaType> event(String name, LeaderboardDiff<?> diff) {
+        return SseEmitter.event()
+                .name(name)
+                .id(Long.toString(diff.seq()))
+                .data(jsonMapper.writeValueAsString(diff))
+                .build();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+        feeds.values().forEach(f -> f.subscribers.forEach(s -> s.emitter.complete()));
+        sender.shutdown();
+    }
+}
@@ -0,0 +1,52 @@
+package it.project_work.app_arcade.leaderboard;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Locale;
+
+import it.project_work.app_arcade.exceptions.BadRequestException;
+
+/**
+ * Finestre delle classifiche a tempo, allineate al calendario (fuso del server):
+ * giorno corrente, settimana ISO corrente (da lunedì), mese corrente.
+ * ALL = classifica di sempre (bestScore di user_game_progress).
+ */
+public enum LeaderboardWindow {
+    ALL, DAY, WEEK, MONTH;
+
+    // finestre a tempo, in ordine di durata
+    static final LeaderboardWindow[] TIMED = {DAY, WEEK, MONTH};
+
+    // chiave del periodo che contiene day: cambia esattamente al rollover della finestra
+    long periodOf(LocalDate day) {
+        return switch (this) {
+            case ALL -> 0;
+            case DAY -> day.toEpochDay();
+            case WEEK -> day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).toEpochDay();
+            case MONTH -> day.getYear() * 12L + day.getMonthValue() - 1;
+        };
+    }
+
+    // primo giorno del periodo corrente
+    LocalDate startOf(LocalDate day) {
+        return switch (this) {
+            case ALL -> LocalDate.EPOCH;
+            case DAY -> day;
+            case WEEK -> day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH -> day.withDayOfMonth(1);
+        };
+    }
+
+    // ?window=day|week|month (assente = ALL)
+    public static LeaderboardWindow parse(String value) {
+        if (value == null || value.isBlank()) {
+            return ALL;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestException("INVALID_WINDOW", "Finestra non valida (day, week, month)");
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package it.project_work.app_arcade.leaderboard;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// app.leaderboard.cache.type=none: ogni richiesta ricalcola (utile in debug)
+@Component
+@ConditionalOnProperty(name = "app.leaderboard.cache.type", havingValue = "none")
+public class NoopLeaderboardCache implements LeaderboardCache {
+
+    @Override
+    public <T> List<T> get(String scope, String gameCode, int limit, Supplier<List<T>> loader) {
+        return loader.get();
+    }
+
+    @Override
+    public Map<String, CacheStats> stats() {
+        return Map.of();
+    }
+}
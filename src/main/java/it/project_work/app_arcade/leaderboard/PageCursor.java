@@ -0,0 +1,40 @@
+package it.project_work.app_arcade.leaderboard;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import it.project_work.app_arcade.exceptions.BadRequestException;
+
+/**
+ * Posizione nella classifica da cui riprendere: ultima riga vista
+ * (score, userId), nello stesso ordine delle classifiche (score desc,
+ * userId asc). Al client arriva come stringa opaca in base64url.
+ *
+ * Con il cursore la pagina successiva si trova con una ricerca sull'indice
+ * (motore o DB), senza contare/scartare le righe precedenti: la pagina
+ * 5000 costa quanto la prima.
+ */
+public record PageCursor(long score, long userId) {
+
+    // prima di tutte le righe
+    public static final PageCursor FIRST = new PageCursor(Long.MAX_VALUE, 0);
+
+    public String encode() {
+        String raw = score + ":" + userId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // null/vuoto = dall'inizio
+    public static PageCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return FIRST;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            int sep = raw.indexOf(':');
+            return new PageCursor(Long.parseLong(raw.substring(0, sep)), Long.parseLong(raw.substring(sep + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+            throw new BadRequestException("INVALID_CURSOR", "Cursore non valido");
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package it.project_work.app_arcade.leaderboard;
+
+// Proiezione leggera per le pagine a cursore lette dal DB (userId serve per il cursore)
+public record PageRow(
+        Long userId,
+        String username,
+        String avatarUrl,
+        Long score,
+        Long played,
+        Integer level
+        ) {
+
+}
@@ -0,0 +1,145 @@
+package it.project_work.app_arcade.leaderboard;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+import it.project_work.app_arcade.leaderboard.LeaderboardEngine.Player;
+
+/**
+ * Dati "anagrafici" dei giocatori in colonne primitive, uno slot per utente
+ * (vedi {@link UserSlots}), al posto di una Map&lt;Long, Player&gt;.
+ *
+ * Per utente restano solo lo username e una cella long: codice avatar e
+ * livello insieme (avatar nei 32 bit alti). L'avatar è un codice nella
+ * tabella degli URL, che sono poche decine e vengono condivisi da tutti
+ * invece di avere una String per giocatore.
+ *
+ * Scritture synchronized, letture senza lock. Ogni scrittura pubblica con
+ * setRelease prima la cella avatar+livello e poi lo username: avatar e
+ * livello si leggono sempre insieme (una sola scrittura a 64 bit), mentre
+ * username e cella sono due pubblicazioni distinte e chi legge durante un
+ * aggiornamento può vedere il nome vecchio con avatar/livello nuovi.
+ * Username null = slot vuoto (utente mai visto o eliminato).
+ */
+final class PlayerDictionary {
+
+    private static final VarHandle NAMES = MethodHandles.arrayElementVarHandle(String[].class);
+    private static final VarHandle PROFILES = MethodHandles.arrayElementVarHandle(long[].class);
+
+    // profiles: codice avatar << 32 | livello (codice 0 = nessun avatar, livello 0 = sconosciuto)
+    private record Columns(String[] usernames, long[] profiles) {
+
+        Columns grow(int capacity) {
+            return new Columns(Arrays.copyOf(usernames, capacity), Arrays.copyOf(profiles, capacity));
+        }
+    }
+
+    private final UserSlots slots;
+    private volatile Columns columns = new Columns(new String[16], new long[16]);
+
+    private volatile String[] avatarTable = {null};
+    private final Map<String, Integer> avatarCodes = new HashMap<>(); // solo sotto lock
+
+    private volatile int count;
+
+    // slot condivisi con la classifica globale (vedi LeaderboardEngine.Board)
+    PlayerDictionary(UserSlots slots) {
+        this.slots = slots;
+    }
+
+    // ---------------------------------------------------------------- letture
+    Player get(long userId) {
+        int slot = slots.get(userId);
+        if (slot < 0) {
+            return null;
+        }
+        Columns c = columns;
+        if (slot >= c.usernames().length) {
+            return null; // slot appena creato, colonne non ancora pubblicate
+        }
+        String username = (String) NAMES.getAcquire(c.usernames(), slot);
+        if (username == null) {
+            return null;
+        }
+        long profile = (long) PROFILES.getAcquire(c.profiles(), slot);
+        int level = (int) profile;
+        int avatar = (int) (profile >>> 32);
+        String[] table = avatarTable;
+        String avatarUrl = avatar < table.length ? table[avatar] : null; // codice più nuovo della tabella letta
+        return new Player(username, avatarUrl, level == 0 ? null : level);
+    }
+
+    int size() {
+        return count;
+    }
+
+    // ---------------------------------------------------------------- scritture
+    synchronized void put(long userId, Player p) {
+        write(userId, p);
+    }
+
+    synchronized void putIfAbsent(long userId, Player p) {
+        if (get(userId) == null) {
+            write(userId, p);
+        }
+    }
+
+    // true se i dati sono cambiati; utente assente = nessuna modifica
+    synchronized boolean update(long userId, UnaryOperator<Player> change) {
+        Player before = get(userId);
+        if (before == null) {
+            return false;
+        }
+        Player after = change.apply(before);
+        if (after.equals(before)) {
+            return false;
+        }
+        write(userId, after);
+        return true;
+    }
+
+    synchronized void remove(long userId) {
+        int slot = slots.get(userId);
+        Columns c = columns;
+        if (slot >= 0 && slot < c.usernames().length && c.usernames()[slot] != null) {
+            NAMES.setRelease(c.usernames(), slot, (String) null);
+            count--;
+        }
+    }
+
+    private void write(long userId, Player p) {
+        int slot = slots.getOrAdd(userId);
+        Columns c = columns;
+        if (slot >= c.usernames().length) {
+            c = c.grow(Math.max(slot + 1, c.usernames().length * 2));
+            columns = c;
+        }
+        boolean isNew = c.usernames()[slot] == null;
+
+        long profile = (long) avatarCode(p.avatarUrl()) << 32 | ((p.level() == null ? 0 : p.level()) & 0xFFFFFFFFL);
+        PROFILES.setRelease(c.profiles(), slot, profile);
+        NAMES.setRelease(c.usernames(), slot, p.username());
+        if (isNew) {
+            count++;
+        }
+    }
+
+    private int avatarCode(String url) {
+        if (url == null) {
+            return 0;
+        }
+        Integer code = avatarCodes.get(url);
+        if (code == null) {
+            String[] table = Arrays.copyOf(avatarTable, avatarTable.length + 1);
+            code = table.length - 1;
+            table[code] = url;
+            avatarTable = table; // pubblicata prima dello slot che la usa
+            avatarCodes.put(url, code);
+        }
+        return code;
+    }
+}
@@ -0,0 +1,11 @@
+package it.project_work.app_arcade.leaderboard;
+
+// Proiezione leggera (niente entity/proxy) usata per il warm-up del motore classifiche
+public record PlayerRow(
+        Long userId,
+        String username,
+        String avatarUrl,
+        Integer level
+        ) {
+
+}
@@ -0,0 +1,203 @@
+package it.project_work.app_arcade.leaderboard;
+
+import java.util.function.IntToLongFunction;
+
+/**
+ * Indice order-statistic (treap con dimensione dei sottoalberi) per rispondere
+ * in O(log n) a "in che posizione è questo utente?" e "chi c'è in posizione k?".
+ *
+ * Ordine: score desc, userId asc. Ogni nodo contiene solo lo slot
+ * dell'utente (vedi {@link UserSlots}) e lo score con cui è stato inserito:
+ * niente oggetto riga per nodo, l'userId si ricava dallo slot.
+ *
+ * I nodi sono immutabili (path copying): chi scrive costruisce una nuova
+ * radice e la pubblica con una sola scrittura volatile, chi legge lavora su
+ * uno snapshot coerente senza lock. Le scritture vanno serializzate dal
+ * chiamante (LeaderboardEngine le fa sotto writeLock).
+ */
+final class RankIndex {
+
+    // score al posto di "nessuna riga" in replace
+    static final long ABSENT = Long.MIN_VALUE;
+
+    // riceve le righe di range/rangeAfter in ordine: slot e score dello snapshot
+    @FunctionalInterface
+    interface RowSink {
+
+        void accept(int slot, long score);
+    }
+
+    private record Node(long score, int slot, int priority, Node left, Node right, int size) {
+
+    }
+
+    private record Split(Node less, Node rest) {
+
+    }
+
+    // slot -> userId: fisso per tutta la vita dello slot, letto anche dagli snapshot vecchi
+    private final IntToLongFunction userIdOf;
+
+    private volatile Node root;
+
+    RankIndex(IntToLongFunction userIdOf) {
+        this.userIdOf = userIdOf;
+    }
+
+    int size() {
+        return size(root);
+    }
+
+    // sposta lo slot da oldScore a newScore (ABSENT = non c'era / va tolto) in un'unica pubblicazione
+    void replace(int slot, long oldScore, long newScore) {
+        Node r = root;
+        long userId = userIdOf.applyAsLong(slot);
+        if (oldScore != ABSENT) {
+            r = remove(r, oldScore, userId);
+        }
+        if (newScore != ABSENT) {
+            r = insert(r, newScore, userId, slot, priorityOf(userId));
+        }
+        root = r;
+    }
+
+    // numero di righe strettamente prima di (score, userId) (rank 0-based)
+    int indexOf(long score, long userId) {
+        Node n = root;
+        int before = 0;
+        while (n != null) {
+            if (compare(score, userId, n) <= 0) {
+                n = n.left();
+            } else {
+                before += size(n.left()) + 1;
+                n = n.right();
+            }
+        }
+        return before;
+    }
+
+    // count righe a partire dalla posizione from (0-based), in ordine, dallo stesso snapshot
+    void range(int from, int count, RowSink out) {
+        if (from < 0 || count <= 0) {
+            return;
+        }
+        collect(root, from, new int[]{count}, out);
+    }
+
+    // count righe strettamente dopo (score, userId) (paginazione a cursore), dallo stesso snapshot
+    void rangeAfter(long score, long userId, int count, RowSink out) {
+        Node r = root;
+        if (count <= 0) {
+            return;
+        }
+        collect(r, countUpTo(r, score, userId), new int[]{count}, out);
+    }
+
+    // left = righe ancora da emettere
+    private void collect(Node n, int from, int[] left, RowSink out) {
+        if (n == null || left[0] <= 0) {
+            return;
+        }
+        int leftSize = size(n.left());
+        if (from < leftSize) {
+            collect(n.left(), from, left, out);
+        }
+        if (left[0] > 0 && from <= leftSize) {
+            out.accept(n.slot(), n.score());
+            left[0]--;
+        }
+        if (left[0] > 0) {
+            collect(n.right(), Math.max(0, from - leftSize - 1), left, out);
+        }
+    }
+
+    // numero di righe <= (score, userId)
+    private int countUpTo(Node n, long score, long userId) {
+        int upTo = 0;
+        while (n != null) {
+            if (compare(score, userId, n) < 0) {
+                n = n.left();
+            } else {
+                upTo += size(n.left()) + 1;
+                n = n.right();
+            }
+        }
+        return upTo;
+    }
+
+    // < 0 se (score, userId) viene prima del nodo
+    private int compare(long score, long userId, Node n) {
+        int c = Long.compare(n.score(), score);
+        return c != 0 ? c : Long.compare(userId, userIdOf.applyAsLong(n.slot()));
+    }
+
+    // priorità del treap derivata dall'id: stabile tra un aggiornamento e l'altro
+    private static int priorityOf(long userId) {
+        return Long.hashCode(userId * 0x9E3779B97F4A7C15L);
+    }
+
+    // ---------------------------------------------------------------- treap
+    private Node insert(Node n, long score, long userId, int slot, int priority) {
+        if (n == null || priority > n.priority()) {
+            Split s = split(n, score, userId);
+            return node(score, slot, priority, s.less(), s.rest());
+        }
+        if (compare(score, userId, n) < 0) {
+            return node(n, insert(n.left(), score, userId, slot, priority), n.right());
+        }
+        return node(n, n.left(), insert(n.right(), score, userId, slot, priority));
+    }
+
+    private Node remove(Node n, long score, long userId) {
+        if (n == null) {
+            return null;
+        }
+        int c = compare(score, userId, n);
+        if (c < 0) {
+            return node(n, remove(n.left(), score, userId), n.right());
+        }
+        if (c > 0) {
+            return node(n, n.left(), remove(n.right(), score, userId));
+        }
+        return merge(n.left(), n.right());
+    }
+
+    // less = righe prima di (score, userId), rest = le altre
+    private Split split(Node n, long score, long userId) {
+        if (n == null) {
+            return new Split(null, null);
+        }
+        if (compare(score, userId, n) > 0) {
+            Split s = split(n.right(), score, userId);
+            return new Split(node(n, n.left(), s.less()), s.rest());
+        }
+        Split s = split(n.left(), score, userId);
+        return new Split(s.less(), node(n, s.rest(), n.right()));
+    }
+
+    private Node merge(Node a, Node b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (a.priority() > b.priority()) {
+            return node(a, a.left(), merge(a.right(), b));
+        }
+        return node(b, merge(a, b.left()), b.right());
+    }
+
+    // copia di n con figli nuovi
+    private static Node node(Node n, Node left, Node right) {
+        return node(n.score(), n.slot(), n.priority(), left, right);
+    }
+
+    private static Node node(long score, int slot, int priority, Node left, Node right) {
+        return new Node(score, slot, priority, left, right, size(left) + size(right) + 1);
+    }
+
+    private static int size(Node n) {
+        return n == null ? 0 : n.size();
+    }
+}
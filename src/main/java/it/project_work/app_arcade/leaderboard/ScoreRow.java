@@ -0,0 +1,14 @@
+package it.project_work.app_arcade.leaderboard;
+
+import java.time.LocalDateTime;
+
+// Proiezione leggera di user_game_progress usata per il warm-up del motore classifiche
+public record ScoreRow(
+        Long userId,
+        String gameCode,
+        Integer bestScore,
+        Integer playedCount,
+        LocalDateTime updatedAt
+        ) {
+
+}
@@ -0,0 +1,109 @@
+package it.project_work.app_arcade.leaderboard;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Indice userId -> slot (0, 1, 2, ...) a indirizzamento aperto su array
+ * primitivi: niente Long, niente nodi di mappa per utente.
+ *
+ * Un solo indice può servire più strutture (dizionario giocatori e
+ * classifica globale usano gli stessi slot): le aggiunte sono synchronized
+ * sull'indice, le letture sono senza lock. Slot e userId dello slot vengono
+ * scritti prima della chiave e la chiave è pubblicata con setRelease: chi
+ * legge la chiave con getAcquire vede anche il suo slot. Sul resize si
+ * costruisce una tabella nuova e la si pubblica in blocco.
+ *
+ * Le chiavi non si tolgono mai (gli utenti eliminati sono rari): chi usa
+ * l'indice marca lo slot come vuoto nelle proprie colonne.
+ */
+final class UserSlots {
+
+    private static final VarHandle KEYS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    // ids: slot -> userId, lungo quanto il massimo di slot prima del prossimo resize
+    private record Table(long[] keys, int[] slots, long[] ids, int mask) {
+
+        static Table ofCapacity(int capacity, long[] ids) {
+            long[] keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            return new Table(keys, new int[capacity], Arrays.copyOf(ids, capacity * 3 / 4), capacity - 1);
+        }
+    }
+
+    private volatile Table table = Table.ofCapacity(16, new long[0]);
+    private int size; // solo sotto lock
+
+    // slot dell'utente, -1 se assente
+    int get(long userId) {
+        Table t = table;
+        int i = mix(userId) & t.mask();
+        while (true) {
+            long k = (long) KEYS.getAcquire(t.keys(), i);
+            if (k == userId) {
+                return t.slots()[i];
+            }
+            if (k == EMPTY) {
+                return -1;
+            }
+            i = (i + 1) & t.mask();
+        }
+    }
+
+    // slot esistente o nuovo (= numero di utenti già presenti)
+    int getOrAdd(long userId) {
+        int existing = get(userId);
+        return existing >= 0 ? existing : add(userId);
+    }
+
+    // utente di uno slot ottenuto da get/getOrAdd (anche da un altro thread, dopo una pubblicazione)
+    long userIdOf(int slot) {
+        return table.ids()[slot];
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private synchronized int add(long userId) {
+        int existing = get(userId); // aggiunto nel frattempo da chi condivide l'indice
+        if (existing >= 0) {
+            return existing;
+        }
+        if ((size + 1) * 4 > table.keys().length * 3) { // carico max 0.75
+            resize();
+        }
+        int slot = size++;
+        insert(table, userId, slot);
+        return slot;
+    }
+
+    private static void insert(Table t, long userId, int slot) {
+        int i = mix(userId) & t.mask();
+        while (t.keys()[i] != EMPTY) {
+            i = (i + 1) & t.mask();
+        }
+        t.slots()[i] = slot;
+        t.ids()[slot] = userId;
+        KEYS.setRelease(t.keys(), i, userId);
+    }
+
+    private void resize() {
+        Table old = table;
+        Table next = Table.ofCapacity(old.keys().length * 2, old.ids());
+        for (int i = 0; i < old.keys().length; i++) {
+            if (old.keys()[i] != EMPTY) {
+                insert(next, old.keys()[i], old.slots()[i]);
+            }
+        }
+        table = next;
+    }
+
+    // gli id sono sequenziali: senza mescolare i bit finirebbero in cluster
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
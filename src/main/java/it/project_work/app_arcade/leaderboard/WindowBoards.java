@@ -0,0 +1,68 @@
+package it.project_work.app_arcade.leaderboard;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import it.project_work.app_arcade.leaderboard.LeaderboardEngine.Board;
+import it.project_work.app_arcade.leaderboard.LeaderboardEngine.Entry;
+
+/**
+ * Classifiche a finestra (giorno/settimana/mese) per gioco. Per ogni finestra
+ * c'è solo il bucket del periodo corrente: score = miglior partita nel
+ * periodo, played = partite nel periodo.
+ *
+ * Rollover: la prima partita del periodo nuovo sostituisce il bucket intero
+ * (O(1), il vecchio finisce al GC) e in lettura un bucket di un periodo già
+ * chiuso vale come vuoto. A mezzanotte niente scansioni né ricalcoli.
+ *
+ * Scritture sotto il writeLock del motore, letture senza lock.
+ */
+final class WindowBoards {
+
+    private record Bucket(long period, Map<String, Board> games) {
+
+    }
+
+    // un bucket per finestra, indicizzato per ordinal
+    private final AtomicReferenceArray<Bucket> buckets = new AtomicReferenceArray<>(LeaderboardWindow.values().length);
+
+    // partite (già aggregate) di un utente in un gioco nel giorno day
+    void record(long userId, String gameCode, int bestScore, long runs, LocalDate day) {
+        for (LeaderboardWindow w : LeaderboardWindow.TIMED) {
+            long period = w.periodOf(day);
+            Bucket b = buckets.get(w.ordinal());
+            if (b == null || period > b.period()) {
+                b = new Bucket(period, new ConcurrentHashMap<>());
+                buckets.set(w.ordinal(), b);
+            } else if (period < b.period()) {
+                continue; // partita di un periodo già chiuso (es. committata dopo mezzanotte)
+            }
+            // slot propri: chi gioca nel periodo è una piccola parte degli utenti
+            Board board = b.games().computeIfAbsent(gameCode, k -> new Board(new UserSlots()));
+            Entry old = board.get(userId);
+            long best = old == null ? bestScore : Math.max(old.score(), bestScore);
+            long played = (old == null ? 0 : old.played()) + runs;
+            board.put(userId, best, played);
+        }
+    }
+
+    // classifica del periodo che contiene today, null se nessuno ha ancora giocato
+    Board board(LeaderboardWindow window, String gameCode, LocalDate today) {
+        Bucket b = buckets.get(window.ordinal());
+        if (b == null || b.period() != window.periodOf(today)) {
+            return null;
+        }
+        return b.games().get(gameCode);
+    }
+
+    void remove(long userId) {
+        for (LeaderboardWindow w : LeaderboardWindow.TIMED) {
+            Bucket b = buckets.get(w.ordinal());
+            if (b != null) {
+                b.games().values().forEach(board -> board.remove(userId));
+            }
+        }
+    }
+}
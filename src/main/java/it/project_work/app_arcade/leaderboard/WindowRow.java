@@ -0,0 +1,14 @@
+package it.project_work.app_arcade.leaderboard;
+
+import java.time.LocalDate;
+
+// Partite di un utente in un gioco in un giorno (aggregate dal DB) per il warm-up delle classifiche a finestra
+public record WindowRow(
+        Long userId,
+        String gameCode,
+        LocalDate day,
+        Integer bestScore,
+        Long runs
+        ) {
+
+}
@@ -0,0 +1,134 @@
+package it.project_work.app_arcade.metrics;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import it.project_work.app_arcade.datasource.BulkheadDataSource;
+import it.project_work.app_arcade.leaderboard.LeaderboardCache;
+import it.project_work.app_arcade.security.BoundedPasswordEncoder;
+import it.project_work.app_arcade.security.LoginRateLimiter;
+import it.project_work.app_arcade.services.AvailabilityService;
+
+/**
+ * Pubblica come meter i contatori che i componenti tengono già (stats()):
+ * BCrypt, attesa sul bulkhead DB, cache classifiche, rate limiter, Bloom
+ * filter. Tutto letto allo scrape: nessun costo in più sulle richieste.
+ *
+ * Il pool Hikari è già coperto da actuator (hikaricp.connections.*).
+ */
+@Component
+public class AppMeterBinder implements MeterBinder {
+
+    private final ObjectProvider<PasswordEncoder> passwordEncoder;
+    private final ObjectProvider<DataSource> dataSource;
+    private final ObjectProvider<LeaderboardCache> leaderboardCache;
+    private final ObjectProvider<LoginRateLimiter> rateLimiter;
+    private final ObjectProvider<AvailabilityService> availability;
+
+    public AppMeterBinder(ObjectProvider<PasswordEncoder> passwordEncoder, ObjectProvider<DataSource> dataSource,
+            ObjectProvider<LeaderboardCache> leaderboardCache, ObjectProvider<LoginRateLimiter> rateLimiter,
+            ObjectProvider<AvailabilityService> availability) {
+        this.passwordEncoder = passwordEncoder;
+        this.dataSource = dataSource;
+        this.leaderboardCache = leaderboardCache;
+        this.rateLimiter = rateLimiter;
+        this.availability = availability;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (passwordEncoder.getIfAvailable() instanceof BoundedPasswordEncoder bcrypt) {
+            bindBcrypt(registry, bcrypt);
+        }
+        BulkheadDataSource bulkhead = bulkhead(dataSource.getIfAvailable());
+        if (bulkhead != null) {
+            bindBulkhead(registry, bulkhead);
+        }
+        leaderboardCache.ifAvailable(cache -> bindLeaderboardCache(registry, cache));
+        rateLimiter.ifAvailable(limiter -> bindRateLimiter(registry, limiter));
+        availability.ifAvailable(service -> bindAvailability(registry, service));
+    }
+
+    private static void bindBcrypt(MeterRegistry registry, BoundedPasswordEncoder bcrypt) {
+        // le medie di stats() per il numero di hash danno i totali
+        FunctionTimer.builder("app.bcrypt.hash", bcrypt,
+                b -> b.stats().completed(), b -> b.stats().avgHashMs() * b.stats().completed(), TimeUnit.MILLISECONDS)
+                .description("Tempo di hashing BCrypt")
+                .register(registry);
+        FunctionTimer.builder("app.bcrypt.queue.wait", bcrypt,
+                b -> b.stats().completed(), b -> b.stats().avgQueueMs() * b.stats().completed(), TimeUnit.MILLISECONDS)
+                .description("Attesa in coda prima dell'hashing")
+                .register(registry);
+        FunctionCounter.builder("app.bcrypt.rejected", bcrypt, b -> b.stats().rejected())
+                .description("Hash rifiutati (coda piena, 429)")
+                .register(registry);
+        Gauge.builder("app.bcrypt.queued", bcrypt, b -> b.stats().queued())
+                .register(registry);
+    }
+
+    private static BulkheadDataSource bulkhead(DataSource ds) {
+        try {
+            return ds != null && ds.isWrapperFor(BulkheadDataSource.class) ? ds.unwrap(BulkheadDataSource.class) : null;
+        } catch (SQLException ex) {
+            return null;
+        }
+    }
+
+    private static void bindBulkhead(MeterRegistry registry, BulkheadDataSource bulkhead) {
+        FunctionTimer.builder("app.db.bulkhead.wait", bulkhead,
+                BulkheadDataSource::acquiredCount, BulkheadDataSource::waitNanos, TimeUnit.NANOSECONDS)
+                .description("Attesa di una connessione sul bulkhead DB")
+                .register(registry);
+        Gauge.builder("app.db.bulkhead.queued", bulkhead, BulkheadDataSource::queueLength)
+                .register(registry);
+        Gauge.builder("app.db.bulkhead.available", bulkhead, BulkheadDataSource::availablePermits)
+                .register(registry);
+    }
+
+    private static void bindLeaderboardCache(MeterRegistry registry, LeaderboardCache cache) {
+        for (String scope : cache.stats().keySet()) {
+            FunctionCounter.builder("app.leaderboard.cache.hits", cache, c -> c.stats().get(scope).hits())
+                    .tag("scope", scope).register(registry);
+            FunctionCounter.builder("app.leaderboard.cache.misses", cache, c -> c.stats().get(scope).misses())
+                    .tag("scope", scope).register(registry);
+            FunctionCounter.builder("app.leaderboard.cache.evictions", cache, c -> c.stats().get(scope).evictions())
+                    .tag("scope", scope).register(registry);
+            Gauge.builder("app.leaderboard.cache.hit.ratio", cache, c -> c.stats().get(scope).hitRate())
+                    .tag("scope", scope).register(registry);
+            Gauge.builder("app.leaderboard.cache.size", cache, c -> c.stats().get(scope).size())
+                    .tag("scope", scope).register(registry);
+        }
+    }
+
+    private static void bindRateLimiter(MeterRegistry registry, LoginRateLimiter limiter) {
+        FunctionCounter.builder("app.ratelimit.allowed", limiter, l -> l.stats().allowed())
+                .register(registry);
+        FunctionCounter.builder("app.ratelimit.rejected", limiter, l -> l.stats().rejectedIp())
+                .tag("key", "ip").register(registry);
+        FunctionCounter.builder("app.ratelimit.rejected", limiter, l -> l.stats().rejectedUser())
+                .tag("key", "user").register(registry);
+        Gauge.builder("app.ratelimit.tracked.keys", limiter, l -> l.stats().trackedKeys())
+                .register(registry);
+    }
+
+    private static void bindAvailability(MeterRegistry registry, AvailabilityService service) {
+        FunctionCounter.builder("app.availability.bloom.free", service, s -> s.stats().definitelyFree())
+                .description("Risposte 'libero' dal Bloom filter, senza DB")
+                .register(registry);
+        FunctionCounter.builder("app.availability.db.checks", service, s -> s.stats().dbChecks())
+                .register(registry);
+        FunctionCounter.builder("app.availability.false.positives", service, s -> s.stats().falsePositives())
+                .register(registry);
+    }
+}
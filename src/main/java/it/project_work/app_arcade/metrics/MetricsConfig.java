@@ -0,0 +1,49 @@
+package it.project_work.app_arcade.metrics;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Strumentazione per richiesta: filtro delle metriche/slow log e proxy JDBC
+ * che conta gli statement (app.metrics.sql.enabled, default true).
+ * Esposizione su /actuator/prometheus, vedi SecurityConfig.
+ */
+@Configuration
+@Slf4j
+public class MetricsConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "app.metrics.sql.enabled", havingValue = "true", matchIfMissing = true)
+    public static BeanPostProcessor countingDataSourcePostProcessor() {
+        // senza ordine: gira dopo il bulkhead e avvolge tutto (Counting -> Bulkhead -> Hikari)
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource ds && !(bean instanceof CountingDataSource)) {
+                    log.info("Conteggio statement SQL attivo su '{}'", beanName);
+                    return new CountingDataSource(ds);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public FilterRegistrationBean<RequestMetricsFilter> requestMetricsFilter(MeterRegistry registry,
+            @Value("${app.metrics.slow-request-ms:500}") long slowRequestMs) {
+        FilterRegistrationBean<RequestMetricsFilter> registration
+                = new FilterRegistrationBean<>(new RequestMetricsFilter(registry, slowRequestMs));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10); // prima della security (-100)
+        return registration;
+    }
+}
@@ -0,0 +1,113 @@
+package it.project_work.app_arcade.metrics;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Primo filtro (prima della security, quindi include BCrypt e query dei
+ * filtri): apre SqlStats per la richiesta e alla fine registra numero e
+ * tempo degli statement, con tag endpoint = Controller.metodo.
+ *
+ * La latenza per endpoint la misura già http.server.requests (actuator);
+ * qui si aggiunge il log delle richieste oltre app.metrics.slow-request-ms,
+ * con il dettaglio degli statement più costosi.
+ *
+ * I meter sono creati una volta per metodo e poi presi da una mappa: per
+ * richiesta restano una get, due record e due System.nanoTime().
+ */
+@Slf4j
+public class RequestMetricsFilter extends OncePerRequestFilter {
+
+    private static final int SLOW_LOG_ROWS = 10;
+    private static final int SLOW_LOG_SQL_LENGTH = 160;
+
+    private record Meters(DistributionSummary statements, Timer sqlTime) {
+
+    }
+
+    private final MeterRegistry registry;
+    private final long slowNanos;
+
+    // chiave: Method del controller, o il nome per handler non-controller / nessun handler
+    private final Map<Object, Meters> meters = new ConcurrentHashMap<>();
+
+    public RequestMetricsFilter(MeterRegistry registry, long slowRequestMs) {
+        this.registry = registry;
+        this.slowNanos = TimeUnit.MILLISECONDS.toNanos(slowRequestMs);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        SqlStats sql = SqlStats.begin();
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            SqlStats.end();
+
+            Object handler = request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE);
+            Object key = handler instanceof HandlerMethod hm ? hm.getMethod()
+                    : handler != null ? handler.getClass().getSimpleName() : "none";
+            Meters m = meters.get(key);
+            if (m == null) {
+                m = meters.computeIfAbsent(key, k -> register(endpointOf(handler)));
+            }
+            m.statements().record(sql.count());
+            m.sqlTime().record(sql.nanos(), TimeUnit.NANOSECONDS);
+
+            if (elapsed >= slowNanos) {
+                logSlow(request, response, endpointOf(handler), elapsed, sql);
+            }
+        }
+    }
+
+    private Meters register(String endpoint) {
+        return new Meters(
+                DistributionSummary.builder("app.sql.statements")
+                        .description("Statement SQL per richiesta")
+                        .tag("endpoint", endpoint)
+                        .publishPercentileHistogram()
+                        .register(registry),
+                Timer.builder("app.sql.time")
+                        .description("Tempo SQL per richiesta")
+                        .tag("endpoint", endpoint)
+                        .publishPercentileHistogram()
+                        .register(registry));
+    }
+
+    private static String endpointOf(Object handler) {
+        if (handler instanceof HandlerMethod hm) {
+            return hm.getBeanType().getSimpleName() + "." + hm.getMethod().getName();
+        }
+        return handler != null ? handler.getClass().getSimpleName() : "none";
+    }
+
+    private void logSlow(HttpServletRequest request, HttpServletResponse response, String endpoint,
+            long elapsedNanos, SqlStats sql) {
+        StringBuilder sb = new StringBuilder();
+        for (String row : sql.breakdown(SLOW_LOG_ROWS, SLOW_LOG_SQL_LENGTH)) {
+            sb.append("\n  ").append(row);
+        }
+        log.warn("Richiesta lenta: {} {} ({}) -> {} in {} ms, SQL: {} statement in {} ms{}",
+                request.getMethod(), request.getRequestURI(), endpoint, response.getStatus(),
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos), sql.count(),
+                TimeUnit.NANOSECONDS.toMillis(sql.nanos()), sb);
+    }
+}
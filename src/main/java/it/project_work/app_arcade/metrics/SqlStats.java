@@ -0,0 +1,84 @@
+package it.project_work.app_arcade.metrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Statement SQL eseguiti durante una richiesta HTTP, registrati dal proxy
+ * JDBC (CountingDataSource) sul thread della richiesta.
+ *
+ * Contatori semplici, senza sincronizzazione: una richiesta gira su un solo
+ * thread. Sui thread di background (ingestione, compattatore, warm-up) non
+ * c'è nessuna richiesta in corso e record() non fa nulla.
+ */
+public final class SqlStats {
+
+    private static final ThreadLocal<SqlStats> CURRENT = new ThreadLocal<>();
+
+    // testi SQL distinti tenuti per il log; oltre si sommano in OTHER
+    private static final int MAX_DISTINCT = 20;
+    private static final String OTHER = "(altri statement)";
+
+    private int count;
+    private long nanos;
+    private Map<String, long[]> bySql; // sql -> {esecuzioni, nanos}, creata al primo statement
+
+    static SqlStats begin() {
+        SqlStats stats = new SqlStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    static void end() {
+        CURRENT.remove();
+    }
+
+    static void record(String sql, long elapsedNanos) {
+        SqlStats s = CURRENT.get();
+        if (s == null) {
+            return;
+        }
+        s.count++;
+        s.nanos += elapsedNanos;
+
+        if (s.bySql == null) {
+            s.bySql = new HashMap<>();
+        }
+        String key = sql != null ? sql : "?";
+        long[] agg = s.bySql.get(key);
+        if (agg == null) {
+            agg = s.bySql.computeIfAbsent(s.bySql.size() < MAX_DISTINCT ? key : OTHER, k -> new long[2]);
+        }
+        agg[0]++;
+        agg[1] += elapsedNanos;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public long nanos() {
+        return nanos;
+    }
+
+    // righe "esecuzioni x ms  sql", le più costose prima
+    List<String> breakdown(int maxRows, int maxSqlLength) {
+        if (bySql == null) {
+            return List.of();
+        }
+        List<Map.Entry<String, long[]>> rows = new ArrayList<>(bySql.entrySet());
+        rows.sort((a, b) -> Long.compare(b.getValue()[1], a.getValue()[1]));
+
+        List<String> out = new ArrayList<>(Math.min(maxRows, rows.size()));
+        for (var row : rows.subList(0, Math.min(maxRows, rows.size()))) {
+            String sql = row.getKey().replaceAll("\\s+", " ").trim();
+            if (sql.length() > maxSqlLength) {
+                sql = sql.substring(0, maxSqlLength) + "...";
+            }
+            out.add(String.format("%4d x %8.2f ms  %s", row.getValue()[0], row.getValue()[1] / 1e6, sql));
+        }
+        return out;
+    }
+}
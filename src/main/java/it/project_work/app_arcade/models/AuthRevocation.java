@@ -0,0 +1,44 @@
+package it.project_work.app_arcade.models;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Revoca di token (modalità app.auth.mode=token).
+ * jti valorizzato = un singolo token (logout); jti null = tutti i token
+ * dell'utente emessi prima di notBefore (cambio password/username, eliminazione).
+ * Le righe servono solo fino a expiresAt: dopo i token interessati sono comunque scaduti.
+ */
+@Entity
+@Table(name = "auth_revocations", indexes = {
+    @Index(name = "idx_revocations_expires", columnList = "expires_at")
+})
+@Getter
+@Setter
+public class AuthRevocation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "jti", length = 32)
+    private String jti;
+
+    @Column(name = "not_before", nullable = false)
+    private LocalDateTime notBefore;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,26 @@
+package it.project_work.app_arcade.models;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Segnalibro del compattatore di score_events (app.ingest.mode=log): una sola
+ * riga (id = 1) con l'ultimo evento già riversato in user_game_progress e
+ * users. Aggiornata nella stessa transazione degli aggregati.
+ */
+@Entity
+@Table(name = "score_event_compaction")
+@Getter
+@Setter
+public class ScoreCompaction {
+
+    @Id
+    private Integer id;
+
+    @Column(name = "last_event_id", nullable = false)
+    private Long lastEventId;
+}
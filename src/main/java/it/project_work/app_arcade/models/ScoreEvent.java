@@ -0,0 +1,62 @@
+package it.project_work.app_arcade.models;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Una partita (una riga per submit), in sola aggiunta.
+ * user_game_progress tiene solo il miglior punteggio di sempre: le classifiche
+ * a finestra (giorno/settimana/mese) si ricostruiscono da qui all'avvio,
+ * leggendo solo il periodo che serve (indice su played_at).
+ *
+ * Con app.ingest.mode=log è la sola scrittura del submit: gli aggregati li
+ * aggiorna dopo ScoreEventCompactor.
+ */
+@Entity
+@Table(name = "score_events", indexes = {
+    @Index(name = "idx_score_events_played", columnList = "played_at"),
+    @Index(name = "idx_score_events_user", columnList = "user_id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class ScoreEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "game_code", nullable = false, length = 20)
+    private String gameCode;
+
+    @Column(name = "score", nullable = false)
+    private Integer score;
+
+    @Column(name = "played_at", nullable = false)
+    private LocalDateTime playedAt;
+
+    // true = già contata negli aggregati quando è stata scritta (modalità sync/batched);
+    // false = la riversa il compattatore (modalità log). Non cambia più dopo l'insert.
+    @Column(name = "folded", nullable = false)
+    private boolean folded = true;
+
+    public ScoreEvent(Long userId, String gameCode, Integer score, LocalDateTime playedAt) {
+        this.userId = userId;
+        this.gameCode = gameCode;
+        this.score = score;
+        this.playedAt = playedAt;
+    }
+}
@@ -9,17 +9,27 @@ import jakarta.persistence.ForeignKey;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 import lombok.Data;
 
 @Entity
 @Data
 @Table(
-    name = "user_game_progress"
+    name = "user_game_progress",
+    uniqueConstraints = {
+        // una riga per (utente, gioco): chiave degli upsert ON DUPLICATE KEY UPDATE
+        @UniqueConstraint(name = "uk_progress_user_game", columnNames = {"user_id", "game_code"})
+    },
+    indexes = {
+        // classifica per gioco nell'ordine di visualizzazione: top-N e pagine a cursore
+        @Index(name = "idx_progress_game_score_user", columnList = "game_code, best_score DESC, user_id")
+    }
 )
 public class UserGameProgress {
 
@@ -35,6 +45,11 @@ public class UserGameProgress {
     )
     private User user;
 
+    // la stessa FK in sola lettura: nelle query p.user.id con JOIN p.user diventa users.id,
+    // p.userId resta user_id e il DB può usare idx_progress_game_score_user
+    @Column(name = "user_id", nullable = false, insertable = false, updatable = false)
+    private Long userId;
+
     @Column(name = "game_code", nullable = false, length = 20)
     private String gameCode;
 
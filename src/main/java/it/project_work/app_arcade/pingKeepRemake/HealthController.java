@@ -3,36 +3,54 @@ package it.project_work.app_arcade.pingKeepRemake;
 import java.time.Instant;
 import java.util.Map;
 
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+/**
+ * Controlli di salute, tutti senza query: leggono l'ultimo HealthSnapshot.
+ *
+ * /health/live: il processo risponde (per il riavvio del container).
+ * /health/ready: 200 se può servire traffico, 503 altrimenti (per il load balancer).
+ * /health: per il pinger che tiene sveglia l'istanza, sempre 200.
+ */
 @RestController
 public class HealthController {
 
-    private final JdbcTemplate jdbc;
+    private final HealthProber prober;
 
-    public HealthController(JdbcTemplate jdbc) {
-        this.jdbc = jdbc;
+    public HealthController(HealthProber prober) {
+        this.prober = prober;
     }
 
     @GetMapping("/health")
     public ResponseEntity<?> health() {
-        boolean dbUp;
-        try {
-            jdbc.queryForObject("SELECT 1", Integer.class);
-            dbUp = true;
-        } catch (Exception e) {
-            dbUp = false;
-        }
+        HealthSnapshot s = prober.current();
+        boolean dbUp = s.db() != null && "UP".equals(s.db().status());
 
         return ResponseEntity.ok(Map.of(
                 "status", "UP",
                 "db", dbUp ? "UP" : "DOWN",
-                "timestamp", Instant.now().toString()
+                "timestamp", s.checkedAt().toString()
         ));
     }
+
+    @GetMapping("/health/live")
+    public ResponseEntity<?> live() {
+        return ResponseEntity.ok(Map.of("status", "UP", "timestamp", Instant.now().toString()));
+    }
+
+    @GetMapping("/health/ready")
+    public ResponseEntity<HealthSnapshot> ready() {
+        HealthSnapshot s = prober.current();
+        if (!prober.isFresh()) {
+            // prober fermo o appeso: l'ultimo risultato non vale più
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(new HealthSnapshot("STALE", s.checkedAt(), s.db(), s.pool(), s.ingest(), s.warmup()));
+        }
+        return ResponseEntity.status("UP".equals(s.status()) ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE).body(s);
+    }
 }
 
-// https://arcadehub-jb2q.onrender.com/health
\ No newline at end of file
+// https://arcadehub-jb2q.onrender.com/health
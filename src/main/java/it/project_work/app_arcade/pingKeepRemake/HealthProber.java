@@ -0,0 +1,147 @@
+package it.project_work.app_arcade.pingKeepRemake;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import it.project_work.app_arcade.datasource.BulkheadDataSource;
+import it.project_work.app_arcade.ingest.ScoreIngestionService;
+import it.project_work.app_arcade.leaderboard.LeaderboardEngine;
+import it.project_work.app_arcade.services.AvailabilityService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Controlla DB, pool, coda di ingestione e warm-up a intervallo fisso su un
+ * thread suo e pubblica il risultato in un campo volatile.
+ *
+ * /health, /health/ready leggono solo quel campo: per quante volte li chiamino
+ * pinger e load balancer, sul DB arriva un solo SELECT 1 per intervallo.
+ *
+ * Pronto = DB raggiungibile e classifiche in memoria caricate. Se il prober
+ * si blocca (DB appeso oltre il timeout) il risultato invecchia e
+ * isFresh() torna false: anche questo vale come non pronto.
+ */
+@Slf4j
+@Component
+public class HealthProber {
+
+    private final JdbcTemplate jdbc;
+    private final DataSource dataSource;
+    private final LeaderboardEngine leaderboardEngine;
+    private final ScoreIngestionService scoreIngestionService;
+    private final AvailabilityService availabilityService;
+    private final String ingestMode;
+    private final long intervalMs;
+
+    private final ScheduledExecutorService prober = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().daemon().name("health-probe").factory());
+
+    private volatile HealthSnapshot snapshot = new HealthSnapshot("STARTING", Instant.now(), null, null, null, null);
+    private volatile boolean dbWasUp = true;
+
+    public HealthProber(DataSource dataSource, LeaderboardEngine leaderboardEngine,
+            ScoreIngestionService scoreIngestionService, AvailabilityService availabilityService,
+            @Value("${app.ingest.mode:sync}") String ingestMode,
+            @Value("${app.health.probe-interval-ms:5000}") long intervalMs,
+            @Value("${app.health.db-timeout-seconds:2}") int dbTimeoutSeconds) {
+        this.dataSource = dataSource;
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.jdbc.setQueryTimeout(dbTimeoutSeconds);
+        this.leaderboardEngine = leaderboardEngine;
+        this.scoreIngestionService = scoreIngestionService;
+        this.availabilityService = availabilityService;
+        this.ingestMode = ingestMode.toLowerCase();
+        this.intervalMs = intervalMs;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        prober.scheduleWithFixedDelay(this::probe, 0, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public HealthSnapshot current() {
+        return snapshot;
+    }
+
+    // risultato abbastanza recente da fidarsi (tre intervalli di tolleranza)
+    public boolean isFresh() {
+        return snapshot.checkedAt().plusMillis(3 * intervalMs).isAfter(Instant.now());
+    }
+
+    void probe() {
+        try {
+            HealthSnapshot.Db db = probeDb();
+            HealthSnapshot.Warmup warmup = new HealthSnapshot.Warmup(
+                    leaderboardEngine.isWarm(), availabilityService.isReady());
+            boolean up = "UP".equals(db.status()) && warmup.leaderboard();
+
+            snapshot = new HealthSnapshot(up ? "UP" : "DOWN", Instant.now(), db, probePool(),
+                    new HealthSnapshot.Ingest(ingestMode, scoreIngestionService.pendingRuns()), warmup);
+        } catch (RuntimeException ex) {
+            // il prober non deve morire: al giro dopo si riprova
+            log.error("Health probe fallito", ex);
+        }
+    }
+
+    private HealthSnapshot.Db probeDb() {
+        long start = System.nanoTime();
+        try {
+            jdbc.queryForObject("SELECT 1", Integer.class);
+            long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (!dbWasUp) {
+                log.info("DB di nuovo raggiungibile ({} ms)", ms);
+                dbWasUp = true;
+            }
+            return new HealthSnapshot.Db("UP", ms, null);
+        } catch (RuntimeException ex) {
+            long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (dbWasUp) {
+                log.warn("DB non raggiungibile: {}", ex.getMessage());
+                dbWasUp = false;
+            }
+            return new HealthSnapshot.Db("DOWN", ms, ex.getClass().getSimpleName());
+        }
+    }
+
+    private HealthSnapshot.Pool probePool() {
+        try {
+            if (!dataSource.isWrapperFor(HikariDataSource.class)) {
+                return null;
+            }
+            HikariDataSource hikari = dataSource.unwrap(HikariDataSource.class);
+            HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+            if (pool == null) {
+                return null; // pool non ancora avviato
+            }
+            int max = hikari.getMaximumPoolSize();
+            int waiting = pool.getThreadsAwaitingConnection();
+            if (dataSource.isWrapperFor(BulkheadDataSource.class)) {
+                waiting += dataSource.unwrap(BulkheadDataSource.class).queueLength();
+            }
+            int active = pool.getActiveConnections();
+            return new HealthSnapshot.Pool(active, pool.getIdleConnections(), max, waiting,
+                    max == 0 ? 0 : (double) active / max);
+        } catch (SQLException ex) {
+            return null;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        prober.shutdownNow();
+    }
+}
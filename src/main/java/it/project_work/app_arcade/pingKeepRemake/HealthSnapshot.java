@@ -0,0 +1,34 @@
+package it.project_work.app_arcade.pingKeepRemake;
+
+import java.time.Instant;
+
+/**
+ * Ultimo risultato di HealthProber, immutabile: i controlli di salute lo
+ * restituiscono così com'è.
+ */
+public record HealthSnapshot(
+        String status,
+        Instant checkedAt,
+        Db db,
+        Pool pool,
+        Ingest ingest,
+        Warmup warmup
+        ) {
+
+    public record Db(String status, long latencyMs, String error) {
+
+    }
+
+    // pool == null se il DataSource non è Hikari; waiting = richieste in fila sul bulkhead/pool
+    public record Pool(int active, int idle, int max, int waiting, double saturation) {
+
+    }
+
+    public record Ingest(String mode, int pending) {
+
+    }
+
+    public record Warmup(boolean leaderboard, boolean availability) {
+
+    }
+}
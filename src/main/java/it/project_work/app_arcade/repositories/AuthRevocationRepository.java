@@ -0,0 +1,24 @@
+package it.project_work.app_arcade.repositories;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import it.project_work.app_arcade.models.AuthRevocation;
+
+@Repository
+public interface AuthRevocationRepository extends JpaRepository<AuthRevocation, Long> {
+
+    // sincronizzazione incrementale tra istanze: solo le righe nuove, ancora valide
+    List<AuthRevocation> findByIdGreaterThanAndExpiresAtAfterOrderByIdAsc(Long lastId, LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM AuthRevocation r WHERE r.expiresAt < :now")
+    int deleteExpired(LocalDateTime now);
+}
@@ -5,9 +5,15 @@ import java.util.Optional;
 
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import it.project_work.app_arcade.dto.GameTopDTO;
+import it.project_work.app_arcade.dto.LeaderboardResponse;
+import it.project_work.app_arcade.dto.ProgressSnapshot;
+import it.project_work.app_arcade.leaderboard.PageRow;
+import it.project_work.app_arcade.leaderboard.ScoreRow;
 import it.project_work.app_arcade.models.UserGameProgress;
 
 @Repository
@@ -17,8 +23,113 @@ public interface ProgressRepository extends JpaRepository<UserGameProgress, Long
 
     List<UserGameProgress> findByUserId(Long userId);
 
-    List<UserGameProgress> findByGameCodeOrderByBestScoreDesc(String gameCode, Pageable pageable);
+    // Top di un gioco a motore freddo: DTO direttamente dalla query, niente entity né User per riga.
+    // Ordinamento su p.userId come nella pagina a cursore
+    @Query("""
+            SELECT new it.project_work.app_arcade.dto.GameTopDTO(
+                u.username, a.imageUrl, p.bestScore, u.level, p.playedCount
+            )
+            FROM UserGameProgress p
+            JOIN p.user u
+            LEFT JOIN u.selectedAvatar a
+            WHERE p.gameCode = :gameCode
+            ORDER BY p.bestScore DESC, p.userId ASC
+            """)
+    List<GameTopDTO> findGameTop(String gameCode, Pageable pageable);
+
+    // Pagina a cursore (motore freddo): riparte dopo (score, userId) scendendo
+    // sull'indice idx_progress_game_score_user, senza OFFSET. Filtro e ordinamento
+    // su p.userId (colonna dell'indice), non su u.id: con u.id il DB parte da users
+    // e ordina in memoria (EXPLAIN in docs/database.md)
+    @Query("""
+            SELECT new it.project_work.app_arcade.leaderboard.PageRow(
+                u.id, u.username, a.imageUrl, CAST(p.bestScore AS Long), CAST(p.playedCount AS Long), u.level
+            )
+            FROM UserGameProgress p
+            JOIN p.user u
+            LEFT JOIN u.selectedAvatar a
+            WHERE p.gameCode = :gameCode
+              AND (p.bestScore < :score OR (p.bestScore = :score AND p.userId > :userId))
+            ORDER BY p.bestScore DESC, p.userId ASC
+            """)
+    List<PageRow> findGamePageAfter(String gameCode, int score, long userId, Pageable pageable);
+
     @Query("SELECT DISTINCT p.gameCode FROM UserGameProgress p")
     List<String> findDistinctGameCodes();
     void deleteAllByUserId(Long userId);
+
+    // Classifica globale: una sola query aggregata (SUM per utente) con ORDER BY + LIMIT lato DB.
+    // LEFT JOIN per includere anche gli utenti senza partite (totali a 0), come prima.
+    @Query("""
+            SELECT new it.project_work.app_arcade.dto.LeaderboardResponse(
+                u.username,
+                a.imageUrl,
+                COALESCE(SUM(p.bestScore), 0L),
+                COALESCE(SUM(p.playedCount), 0L),
+                u.level
+            )
+            FROM User u
+            LEFT JOIN UserGameProgress p ON p.user = u
+            LEFT JOIN u.selectedAvatar a
+            GROUP BY u.id, u.username, a.imageUrl, u.level
+            ORDER BY COALESCE(SUM(p.bestScore), 0L) DESC, u.id ASC
+            """)
+    List<LeaderboardResponse> findGlobalLeaderboard(Pageable pageable);
+
+    // Pagina a cursore della globale (motore freddo). Il totale è un'aggregato,
+    // quindi niente indice: il cursore evita solo OFFSET e risposte instabili
+    @Query("""
+            SELECT new it.project_work.app_arcade.leaderboard.PageRow(
+                u.id,
+                u.username,
+                a.imageUrl,
+                COALESCE(SUM(p.bestScore), 0L),
+                COALESCE(SUM(p.playedCount), 0L),
+                u.level
+            )
+            FROM User u
+            LEFT JOIN UserGameProgress p ON p.user = u
+            LEFT JOIN u.selectedAvatar a
+            GROUP BY u.id, u.username, a.imageUrl, u.level
+            HAVING COALESCE(SUM(p.bestScore), 0L) < :score
+                OR (COALESCE(SUM(p.bestScore), 0L) = :score AND u.id > :userId)
+            ORDER BY COALESCE(SUM(p.bestScore), 0L) DESC, u.id ASC
+            """)
+    List<PageRow> findGlobalPageAfter(long score, long userId, Pageable pageable);
+
+    // Warm-up motore classifiche: solo le colonne necessarie, niente entity
+    @Query("""
+            SELECT new it.project_work.app_arcade.leaderboard.ScoreRow(
+                p.user.id, p.gameCode, p.bestScore, p.playedCount, p.updatedAt
+            )
+            FROM UserGameProgress p
+            """)
+    List<ScoreRow> findAllScoreRows();
+
+    // Una partita in un solo statement atomico (niente read-modify-write in Java):
+    // crea la riga o aggiorna best (GREATEST), last e played_count + 1.
+    // Richiede il vincolo uk_progress_user_game (user_id, game_code).
+    @Modifying
+    @Query(value = """
+            INSERT INTO user_game_progress (user_id, game_code, best_score, last_score, played_count, updated_at)
+            VALUES (:userId, :gameCode, :score, :score, 1, NOW()) AS new
+            ON DUPLICATE KEY UPDATE
+                best_score = GREATEST(user_game_progress.best_score, new.best_score),
+                last_score = new.last_score,
+                played_count = user_game_progress.played_count + 1,
+                updated_at = new.updated_at
+            """, nativeQuery = true)
+    int upsertRun(Long userId, String gameCode, int score);
+
+    // Lettura di /api/progress: utente + riga del gioco; c'è una riga anche per
+    // chi non ha mai giocato (campi del gioco a null)
+    @Query("""
+            SELECT new it.project_work.app_arcade.dto.ProgressSnapshot(
+                u.xpTotal, u.level, p.bestScore, p.lastScore, p.playedCount
+            )
+            FROM User u
+            LEFT JOIN UserGameProgress p ON p.user = u AND p.gameCode = :gameCode
+            WHERE u.id = :userId
+            """)
+    Optional<ProgressSnapshot> findForUser(Long userId, String gameCode);
 }
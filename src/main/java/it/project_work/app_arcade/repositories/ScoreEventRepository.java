@@ -0,0 +1,33 @@
+package it.project_work.app_arcade.repositories;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import it.project_work.app_arcade.leaderboard.WindowRow;
+import it.project_work.app_arcade.models.ScoreEvent;
+
+@Repository
+public interface ScoreEventRepository extends JpaRepository<ScoreEvent, Long> {
+
+    // Warm-up classifiche a finestra: solo le partite in [since, until) (range su idx_score_events_played),
+    // già ridotte a una riga per (utente, gioco, giorno)
+    @Query("""
+            SELECT new it.project_work.app_arcade.leaderboard.WindowRow(
+                e.userId, e.gameCode, extract(date from e.playedAt), MAX(e.score), COUNT(e)
+            )
+            FROM ScoreEvent e
+            WHERE e.playedAt >= :since AND e.playedAt < :until
+            GROUP BY e.userId, e.gameCode, extract(date from e.playedAt)
+            """)
+    List<WindowRow> findWindowRows(LocalDateTime since, LocalDateTime until);
+
+    // bulk delete: niente caricamento delle entity una per una
+    @Modifying
+    @Query("DELETE FROM ScoreEvent e WHERE e.userId = :userId")
+    int deleteAllByUserId(Long userId);
+}
@@ -1,10 +1,17 @@
 package it.project_work.app_arcade.repositories;
 
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import it.project_work.app_arcade.dto.MeResponse;
+import it.project_work.app_arcade.dto.UserSnapshot;
+import it.project_work.app_arcade.leaderboard.PlayerRow;
 import it.project_work.app_arcade.models.User;
 
 @Repository
@@ -13,4 +20,74 @@ public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsByEmail(String email);
     boolean existsByUsername(String username);
     Optional<User> findByUsername(String username);
+
+    // Warm-up motore classifiche: username + avatar + livello senza caricare entity
+    @Query("""
+            SELECT new it.project_work.app_arcade.leaderboard.PlayerRow(
+                u.id, u.username, a.imageUrl, u.level
+            )
+            FROM User u
+            LEFT JOIN u.selectedAvatar a
+            """)
+    List<PlayerRow> findAllPlayerRows();
+
+    // /auth/me: u.selectedAvatar.id è la FK stessa, niente join né proxy da inizializzare
+    @Query("""
+            SELECT new it.project_work.app_arcade.dto.UserSnapshot(
+                u.id, u.username, u.email, u.role, u.enabled, u.selectedAvatar.id, u.xpTotal
+            )
+            FROM User u
+            WHERE u.id = :userId
+            """)
+    Optional<UserSnapshot> findSnapshotById(Long userId);
+
+    // /api/users/me: utente + riga del gioco (se c'è) in una sola query
+    @Query("""
+            SELECT new it.project_work.app_arcade.dto.MeResponse(
+                u.id, u.username, u.email, u.role, COALESCE(u.level, 1), u.enabled,
+                COALESCE(u.selectedAvatar.id, 1L), COALESCE(p.bestScore, 0), COALESCE(p.lastScore, 0)
+            )
+            FROM User u
+            LEFT JOIN UserGameProgress p ON p.user = u AND p.gameCode = :gameCode
+            WHERE u.id = :userId
+            """)
+    Optional<MeResponse> findMe(Long userId, String gameCode);
+
+    @Query("SELECT u.level FROM User u WHERE u.id = :userId")
+    Optional<Integer> findLevel(Long userId);
+
+    // Bloom filter delle disponibilità: solo le due colonne, niente entity
+    @Query("SELECT u.username FROM User u")
+    List<String> findAllUsernames();
+
+    @Query("SELECT u.email FROM User u")
+    List<String> findAllEmails();
+
+    // xp_total = xp_total + delta e livello nello stesso statement, senza leggere prima:
+    // livello = bit di (xp DIV 1000 + 1), la stessa regola di Leveling (1000 XP, poi raddoppio).
+    // level è assegnato prima di xp_total (MySQL valuta il SET da sinistra), quindi lì
+    // xp_total è ancora il valore vecchio; GREATEST: il livello può solo salire
+    @Modifying
+    @Query(value = """
+            UPDATE users
+            SET level = GREATEST(level, LENGTH(BIN((xp_total + :delta) DIV 1000 + 1))),
+                xp_total = xp_total + :delta,
+                updated_at = NOW()
+            WHERE id = :userId
+            """, nativeQuery = true)
+    int addXp(Long userId, long delta);
+
+    // cambio avatar per id, senza caricare l'utente
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE users SET selected_avatar_id = :avatarId, updated_at = NOW() WHERE id = :userId",
+            nativeQuery = true)
+    int updateSelectedAvatar(Long userId, Long avatarId);
+
+    // riscrittura dell'hash al login (costo/algoritmo nuovi): solo se nel frattempo la password non è cambiata
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE users SET password_hash = :newHash WHERE id = :userId AND password_hash = :oldHash",
+            nativeQuery = true)
+    int upgradePasswordHash(Long userId, String oldHash, String newHash);
 }
@@ -0,0 +1,150 @@
+package it.project_work.app_arcade.security;
+
+import java.io.Serial;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import it.project_work.app_arcade.models.User;
+
+/**
+ * Utente loggato così come vive nel SecurityContext (e quindi in sessione).
+ *
+ * Oltre a username/password porta id, livello e avatar: controller e service
+ * lavorano per id senza ricercare l'utente per username a ogni richiesta.
+ * xpTotal è la fotografia al login (serve solo alla risposta di /auth/login).
+ * Immutabile: quando livello o avatar cambiano si sostituisce con le with*()
+ * tramite PrincipalRefresher.
+ */
+public final class ArcadePrincipal implements UserDetails, CredentialsContainer {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final long id;
+    private final String username;
+    private final String email;
+    private final User.Role role;
+    private final boolean enabled;
+    private final int level;
+    private final Long avatarId;
+    private final long xpTotal;
+    private String passwordHash; // azzerata dopo l'autenticazione
+
+    public ArcadePrincipal(long id, String username, String email, User.Role role, boolean enabled,
+            int level, Long avatarId, long xpTotal, String passwordHash) {
+        this.id = id;
+        this.username = username;
+        this.email = email;
+        this.role = role;
+        this.enabled = enabled;
+        this.level = level;
+        this.avatarId = avatarId;
+        this.xpTotal = xpTotal;
+        this.passwordHash = passwordHash;
+    }
+
+    public static ArcadePrincipal from(User user) {
+        return new ArcadePrincipal(
+                user.getId(),
+                user.getUsername(),
+                user.getEmail(),
+                user.getRole(),
+                user.isEnabled(),
+                user.getLevel() == null ? 1 : user.getLevel(),
+                user.getSelectedAvatar() != null ? user.getSelectedAvatar().getId() : null,
+                user.getXpTotal(),
+                user.getPasswordHash());
+    }
+
+    // il livello può solo salire
+    public ArcadePrincipal withLevel(int newLevel) {
+        if (newLevel <= level) {
+            return this;
+        }
+        return new ArcadePrincipal(id, username, email, role, enabled, newLevel, avatarId,
+                xpTotal, null);
+    }
+
+    // hash appena riscritto (upgrade al login): serve solo fino a eraseCredentials
+    public ArcadePrincipal withPasswordHash(String newHash) {
+        return new ArcadePrincipal(id, username, email, role, enabled, level, avatarId, xpTotal, newHash);
+    }
+
+    public ArcadePrincipal withAvatarId(Long newAvatarId) {
+        if (Objects.equals(avatarId, newAvatarId)) {
+            return this;
+        }
+        return new ArcadePrincipal(id, username, email, role, enabled, level, newAvatarId, xpTotal, null);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public User.Role getRole() {
+        return role;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public Long getAvatarId() {
+        return avatarId;
+    }
+
+    public long getXpTotal() {
+        return xpTotal;
+    }
+
+    @Override
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public String getPassword() {
+        return passwordHash;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return List.of(new SimpleGrantedAuthority("ROLE_" + role.name()));
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void eraseCredentials() {
+        passwordHash = null;
+    }
+
+    // stessa identità = stesso utente (come User di Spring, che confronta lo username)
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ArcadePrincipal other && id == other.id;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(id);
+    }
+
+    @Override
+    public String toString() {
+        return "ArcadePrincipal[id=" + id + ", username=" + username + "]";
+    }
+}
@@ -0,0 +1,45 @@
+package it.project_work.app_arcade.security;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sceglie il costo BCrypt in base alla macchina: il più alto che resta entro
+ * il budget in ms per singolo hash. Ogni +1 di costo raddoppia il tempo,
+ * quindi basta misurare un costo di riferimento e fare il log2 del rapporto.
+ *
+ * Il risultato non scende mai sotto minStrength: gli hash già salvati con un
+ * costo più alto restano validi (BCrypt legge il costo dall'hash stesso).
+ */
+@Slf4j
+final class BcryptCost {
+
+    private static final int REFERENCE = 10;
+    private static final int MAX = 16; // ~1 minuto su un core medio: oltre non ha senso
+    private static final String SAMPLE = "calibrazione-bcrypt";
+
+    private BcryptCost() {
+    }
+
+    static int calibrate(long targetMs, int minStrength) {
+        BCryptPasswordEncoder reference = new BCryptPasswordEncoder(REFERENCE);
+        reference.encode(SAMPLE); // warm-up JIT
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long t0 = System.nanoTime();
+            reference.encode(SAMPLE);
+            best = Math.min(best, System.nanoTime() - t0);
+        }
+
+        double refMs = best / 1e6;
+        int extra = (int) Math.floor(Math.log(targetMs / refMs) / Math.log(2));
+        int strength = Math.clamp(REFERENCE + extra, minStrength, MAX);
+
+        log.info("BCrypt: costo {} (costo {} = {} ms, budget {} ms, stimato {} ms)", strength, REFERENCE,
+                String.format("%.1f", refMs), targetMs,
+                String.format("%.0f", refMs * Math.pow(2, strength - REFERENCE)));
+        return strength;
+    }
+}
@@ -0,0 +1,113 @@
+package it.project_work.app_arcade.security;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import it.project_work.app_arcade.exceptions.TooManyRequestsException;
+
+/**
+ * PasswordEncoder che esegue l'hashing (BCrypt) su un pool dedicato e
+ * limitato di thread di piattaforma.
+ *
+ * BCrypt è lavoro di CPU puro: se girasse direttamente sui virtual thread
+ * occuperebbe i carrier e rallenterebbe tutte le altre richieste. Così login
+ * e registrazione aspettano (parcheggiati, a costo quasi zero) che un thread
+ * del pool sia libero, e la coda è limitata: oltre si risponde subito 429
+ * invece di far crescere la latenza di tutti.
+ *
+ * stats() espone attesa in coda e tempo di hashing, per capire se il costo
+ * BCrypt o il numero di thread vanno rivisti.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder, AutoCloseable {
+
+    // fotografia dei contatori (tempi in ms)
+    public record Stats(long completed, long rejected, int queued, double avgQueueMs, double maxQueueMs,
+            double avgHashMs) {
+
+    }
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final long retryAfterSeconds;
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder queueNanos = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+    private final AtomicLong maxQueueNanos = new AtomicLong();
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, long retryAfterSeconds) {
+        this.delegate = delegate;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().daemon().name("bcrypt-", 0).factory());
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    // solo parsing del prefisso/costo: niente pool
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    public Stats stats() {
+        long n = completed.sum();
+        return new Stats(n, rejected.sum(), executor.getQueue().size(),
+                n == 0 ? 0 : queueNanos.sum() / 1e6 / n,
+                maxQueueNanos.get() / 1e6,
+                n == 0 ? 0 : hashNanos.sum() / 1e6 / n);
+    }
+
+    private <T> T run(Callable<T> task) {
+        long submitted = System.nanoTime();
+        try {
+            return executor.submit(() -> {
+                long started = System.nanoTime();
+                long waited = started - submitted;
+                queueNanos.add(waited);
+                maxQueueNanos.accumulateAndGet(waited, Math::max);
+                try {
+                    return task.call();
+                } finally {
+                    hashNanos.add(System.nanoTime() - started);
+                    completed.increment();
+                }
+            }).get();
+        } catch (RejectedExecutionException ex) {
+            rejected.increment();
+            throw new TooManyRequestsException("TOO_MANY_REQUESTS", "Server occupato, riprova tra poco",
+                    retryAfterSeconds);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrotto durante l'hashing della password", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
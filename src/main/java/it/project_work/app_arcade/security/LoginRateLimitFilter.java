@@ -0,0 +1,176 @@
+package it.project_work.app_arcade.security;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import it.project_work.app_arcade.dto.ApiError;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Primo filtro della catena per POST /auth/login e /auth/register (e
+ * GET /auth/availability, che può arrivare al DB): se il
+ * secchio dell'IP (o, per il login, dello username) è vuoto risponde 429
+ * con Retry-After, prima di sessione/token, BCrypt e query.
+ *
+ * Per leggere lo username il body (piccolo, max MAX_BODY byte, oltre 413)
+ * viene letto qui e ripassato al controller tramite un wrapper.
+ */
+public class LoginRateLimitFilter extends OncePerRequestFilter {
+
+    private static final int MAX_BODY = 4096;
+
+    private final LoginRateLimiter limiter;
+    private final JsonMapper jsonMapper;
+
+    public LoginRateLimitFilter(LoginRateLimiter limiter, JsonMapper jsonMapper) {
+        this.limiter = limiter;
+        this.jsonMapper = jsonMapper;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if ("GET".equals(request.getMethod())) {
+            return !path.equals("/auth/availability");
+        }
+        return !"POST".equals(request.getMethod())
+                || (!path.equals("/auth/login") && !path.equals("/auth/register"));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String uri = request.getRequestURI();
+        boolean login = uri.endsWith("/login");
+        LoginRateLimiter.Scope scope = login ? LoginRateLimiter.Scope.LOGIN_IP
+                : uri.endsWith("/register") ? LoginRateLimiter.Scope.REGISTER_IP
+                : LoginRateLimiter.Scope.AVAILABILITY_IP;
+
+        long wait = limiter.tryAcquire(scope, request.getRemoteAddr());
+        if (wait > 0) {
+            reject(response, wait);
+            return;
+        }
+        if (!login) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        // login: serve lo username dal body, letto fino al limite qualunque cosa dica il
+        // Content-Length (anche chunked): un body più grande non salta il controllo, è 413
+        if (request.getContentLengthLong() > MAX_BODY) {
+            tooLarge(response);
+            return;
+        }
+        byte[] body = request.getInputStream().readNBytes(MAX_BODY + 1);
+        if (body.length > MAX_BODY) {
+            tooLarge(response);
+            return;
+        }
+
+        wait = limiter.tryAcquire(LoginRateLimiter.Scope.LOGIN_USER, username(body));
+        if (wait > 0) {
+            reject(response, wait);
+            return;
+        }
+        chain.doFilter(new CachedBodyRequest(request, body), response);
+    }
+
+    private String username(byte[] body) {
+        try {
+            return jsonMapper.readTree(body).path("username").asString(null);
+        } catch (JacksonException ex) {
+            return null; // JSON non valido: risponderà 400 il controller
+        }
+    }
+
+    private void reject(HttpServletResponse response, long retryAfterSeconds) throws IOException {
+        response.setStatus(429);
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        jsonMapper.writeValue(response.getOutputStream(),
+                new ApiError("TOO_MANY_REQUESTS", "Troppi tentativi, riprova tra poco", Map.of()));
+    }
+
+    private void tooLarge(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        jsonMapper.writeValue(response.getOutputStream(),
+                new ApiError("PAYLOAD_TOO_LARGE", "Richiesta troppo grande", Map.of()));
+    }
+
+    // body già letto, riletto dal controller
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            Charset cs = getCharacterEncoding() != null ? Charset.forName(getCharacterEncoding()) : StandardCharsets.UTF_8;
+            return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(body), cs));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+}
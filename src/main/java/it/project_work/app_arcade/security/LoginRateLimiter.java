@@ -0,0 +1,113 @@
+package it.project_work.app_arcade.security;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Limiti di frequenza per login e registrazione, in memoria.
+ *
+ * Famiglie di secchi: login per IP, login per username (normalizzato),
+ * registrazione per IP, controllo disponibilità per IP. Le chiavi stanno in una cache Caffeine limitata e con
+ * scadenza, così un attacco da molti IP non fa crescere la memoria.
+ * Le verifiche costano una get e una CAS: nessun hashing, nessuna query.
+ */
+@Component
+@ConditionalOnProperty(name = "app.ratelimit.enabled", havingValue = "true", matchIfMissing = true)
+public class LoginRateLimiter {
+
+    public enum Scope {
+        LOGIN_IP, LOGIN_USER, REGISTER_IP, AVAILABILITY_IP
+    }
+
+    // fotografia contatori, per log/metriche
+    public record Stats(long allowed, long rejectedIp, long rejectedUser, long trackedKeys) {
+
+    }
+
+    private record Limit(long intervalNanos, long burstNanos) {
+
+        static Limit of(int burst, int perMinute) {
+            long interval = TimeUnit.MINUTES.toNanos(1) / Math.max(1, perMinute);
+            return new Limit(interval, interval * Math.max(1, burst));
+        }
+    }
+
+    private record Key(Scope scope, String value) {
+
+    }
+
+    private final Cache<Key, TokenBucket> buckets;
+    private final Limit loginIp;
+    private final Limit loginUser;
+    private final Limit registerIp;
+    private final Limit availabilityIp;
+
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejectedIp = new LongAdder();
+    private final LongAdder rejectedUser = new LongAdder();
+
+    public LoginRateLimiter(
+            @Value("${app.ratelimit.login.ip.burst:20}") int loginIpBurst,
+            @Value("${app.ratelimit.login.ip.per-minute:30}") int loginIpPerMinute,
+            @Value("${app.ratelimit.login.user.burst:5}") int loginUserBurst,
+            @Value("${app.ratelimit.login.user.per-minute:6}") int loginUserPerMinute,
+            @Value("${app.ratelimit.register.ip.burst:5}") int registerIpBurst,
+            @Value("${app.ratelimit.register.ip.per-minute:10}") int registerIpPerMinute,
+            @Value("${app.ratelimit.availability.ip.burst:30}") int availabilityIpBurst,
+            @Value("${app.ratelimit.availability.ip.per-minute:60}") int availabilityIpPerMinute,
+            @Value("${app.ratelimit.max-keys:100000}") long maxKeys) {
+        this.loginIp = Limit.of(loginIpBurst, loginIpPerMinute);
+        this.loginUser = Limit.of(loginUserBurst, loginUserPerMinute);
+        this.registerIp = Limit.of(registerIpBurst, registerIpPerMinute);
+        this.availabilityIp = Limit.of(availabilityIpBurst, availabilityIpPerMinute);
+
+        // un secchio inutilizzato da più di un "riempimento completo" è di nuovo pieno: si può buttare
+        long idle = Math.max(Math.max(loginIp.burstNanos(), loginUser.burstNanos()),
+                Math.max(registerIp.burstNanos(), availabilityIp.burstNanos()));
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(Duration.ofNanos(idle))
+                .build();
+    }
+
+    // 0 = consentita, altrimenti secondi da attendere (Retry-After)
+    public long tryAcquire(Scope scope, String value) {
+        if (value == null || value.isBlank()) {
+            return 0;
+        }
+        String normalized = scope == Scope.LOGIN_USER ? normalizeUsername(value) : value;
+        Limit limit = switch (scope) {
+            case LOGIN_IP -> loginIp;
+            case LOGIN_USER -> loginUser;
+            case REGISTER_IP -> registerIp;
+            case AVAILABILITY_IP -> availabilityIp;
+        };
+
+        TokenBucket bucket = buckets.get(new Key(scope, normalized), k -> new TokenBucket());
+        long waitNanos = bucket.tryAcquire(System.nanoTime(), limit.intervalNanos(), limit.burstNanos());
+        if (waitNanos == 0) {
+            allowed.increment();
+            return 0;
+        }
+        (scope == Scope.LOGIN_USER ? rejectedUser : rejectedIp).increment();
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+    }
+
+    public Stats stats() {
+        return new Stats(allowed.sum(), rejectedIp.sum(), rejectedUser.sum(), buckets.estimatedSize());
+    }
+
+    // stessa chiave per "Mario", " mario " e "MARIO" (il DB confronta senza maiuscole)
+    static String normalizeUsername(String username) {
+        return username.strip().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,60 @@
+package it.project_work.app_arcade.security;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.context.SecurityContextRepository;
+import org.springframework.stereotype.Component;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Logout valido per entrambe le modalità (app.auth.mode = session | token).
+ *
+ * - session: invalida la HttpSession e scade il cookie JSESSIONID
+ * - token: revoca il token della richiesta e cancella il cookie app.cookie.nome
+ *
+ * logoutEverywhere serve quando cambiano le credenziali: in modalità token
+ * revoca anche i token già emessi su altri dispositivi.
+ */
+@Component
+public class LoginSessions {
+
+    private final SecurityContextRepository securityContextRepository;
+    private final ObjectProvider<TokenService> tokenService;
+
+    public LoginSessions(SecurityContextRepository securityContextRepository,
+            ObjectProvider<TokenService> tokenService) {
+        this.securityContextRepository = securityContextRepository;
+        this.tokenService = tokenService;
+    }
+
+    public void logout(HttpServletRequest request, HttpServletResponse response) {
+        // 1) invalida sessione (server-side), se c'è
+        var session = request.getSession(false);
+        if (session != null) {
+            session.invalidate();
+        }
+
+        // 2) token della richiesta revocato + cookie cancellato
+        if (securityContextRepository instanceof TokenSecurityContextRepository tokens) {
+            tokens.revoke(request, response);
+        }
+
+        // 3) pulisci SecurityContext (thread-local)
+        SecurityContextHolder.clearContext();
+
+        // 4) scade il cookie JSESSIONID (client-side) -> evita "cookie zombie"
+        Cookie cookie = new Cookie("JSESSIONID", "");
+        cookie.setMaxAge(0);
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        response.addCookie(cookie);
+    }
+
+    public void logoutEverywhere(long userId, HttpServletRequest request, HttpServletResponse response) {
+        tokenService.ifAvailable(t -> t.revokeAll(userId));
+        logout(request, response);
+    }
+}
@@ -0,0 +1,55 @@
+package it.project_work.app_arcade.security;
+
+import java.util.function.UnaryOperator;
+
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.context.SecurityContextRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * Aggiorna l'ArcadePrincipal della richiesta corrente (livello, avatar) e lo
+ * risalva nel SecurityContextRepository, così le richieste successive della
+ * stessa sessione vedono i dati nuovi senza tornare sul DB.
+ *
+ * Altre sessioni dello stesso utente restano con i valori vecchi finché non
+ * rifanno login: dove conta (sblocco avatar) il controllo ricade sul DB.
+ */
+@Component
+public class PrincipalRefresher {
+
+    private final SecurityContextRepository securityContextRepository;
+
+    public PrincipalRefresher(SecurityContextRepository securityContextRepository) {
+        this.securityContextRepository = securityContextRepository;
+    }
+
+    public void refresh(UnaryOperator<ArcadePrincipal> change) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !(auth.getPrincipal() instanceof ArcadePrincipal current)) {
+            return;
+        }
+
+        ArcadePrincipal updated = change.apply(current);
+        if (updated == current) {
+            return;
+        }
+
+        UsernamePasswordAuthenticationToken token = UsernamePasswordAuthenticationToken.authenticated(
+                updated, null, updated.getAuthorities());
+        token.setDetails(auth.getDetails());
+
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        context.setAuthentication(token);
+        SecurityContextHolder.setContext(context);
+
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attrs
+                && attrs.getResponse() != null) {
+            securityContextRepository.saveContext(context, attrs.getRequest(), attrs.getResponse());
+        }
+    }
+}
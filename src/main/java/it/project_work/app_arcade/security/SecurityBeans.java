@@ -1,5 +1,7 @@
 package it.project_work.app_arcade.security;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -15,10 +17,21 @@ public class SecurityBeans {
         return config.getAuthenticationManager();
     }
 
+    // default: SecurityContext in HttpSession (cookie JSESSIONID)
     @Bean
+    @ConditionalOnProperty(name = "app.auth.mode", havingValue = "session", matchIfMissing = true)
     public SecurityContextRepository securityContextRepository() {
         return new HttpSessionSecurityContextRepository();
     }
+
+    // app.auth.mode=token: niente sessione, token firmato nel cookie app.cookie.nome
+    @Bean
+    @ConditionalOnProperty(name = "app.auth.mode", havingValue = "token")
+    public TokenSecurityContextRepository tokenSecurityContextRepository(TokenService tokenService,
+            @Value("${app.cookie.nome:arcadehub-login}") String cookieName,
+            @Value("${app.cookie.secure:false}") boolean secure) {
+        return new TokenSecurityContextRepository(tokenService, cookieName, secure);
+    }
 }
 /* 
 AuthenticationManager: è il componente che Spring usa per verificare username/password usando:
@@ -30,4 +43,8 @@ dopo authenticate() tu metti l’auth nel SecurityContext
 con saveContext(context, request, response) lo salvi in HttpSession
 
 il browser mantiene la sessione tramite cookie JSESSIONID
+
+TokenSecurityContextRepository (app.auth.mode=token): stesso contratto, ma il
+contesto viaggia in un cookie firmato -> nessuno stato sul server, nessuna
+sessione "sticky" dietro il load balancer
  */
@@ -1,5 +1,9 @@
 package it.project_work.app_arcade.security;
 
+import java.util.Map;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.security.autoconfigure.web.servlet.PathRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -8,9 +12,15 @@ import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityCustomizer;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.context.SecurityContextHolderFilter;
+import org.springframework.security.web.context.SecurityContextRepository;
+
+import tools.jackson.databind.json.JsonMapper;
 
 @Configuration
 @EnableWebSecurity
@@ -25,11 +35,29 @@ public class SecurityConfig {
     }
 
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, SecurityContextRepository securityContextRepository,
+            ObjectProvider<LoginRateLimiter> rateLimiter, JsonMapper jsonMapper,
+            @Value("${management.server.port:-1}") int managementPort) throws Exception {
+        http.securityContext(ctx -> ctx.securityContextRepository(securityContextRepository));
+        // login/registrazione: limiti per IP/username prima di tutto il resto (app.ratelimit.enabled)
+        rateLimiter.ifAvailable(limiter -> http.addFilterBefore(
+                new LoginRateLimitFilter(limiter, jsonMapper), SecurityContextHolderFilter.class));
+        if (securityContextRepository instanceof TokenSecurityContextRepository tokens) {
+            // modalità token: nessuna HttpSession, il cookie firmato viene rinnovato a ogni richiesta utile
+            http.sessionManagement(s -> s.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                    .addFilterAfter(new TokenRenewalFilter(tokens), SecurityContextHolderFilter.class);
+        }
+
         http.csrf(csrf -> csrf.disable())
                 .cors(Customizer.withDefaults())
                 .authorizeHttpRequests(auth -> auth
-                .requestMatchers("/health").permitAll()
+                .requestMatchers("/health", "/health/live", "/health/ready").permitAll()
+                // errori fuori dai controller (filtri, 503 del pool...): senza, l'anonimo vede 403 al posto dell'errore
+                .requestMatchers("/error").permitAll()
+                // actuator (prometheus): libero sulla porta di management, che non va esposta;
+                // se non è configurata gli endpoint stanno sulla porta pubblica e servono l'admin
+                .requestMatchers(request -> managementPort > 0 && request.getLocalPort() == managementPort).permitAll()
+                .requestMatchers("/actuator/**").hasRole("ADMIN")
                 // pagine + asset pubblici
                 .requestMatchers(
                         "/",
@@ -49,15 +77,25 @@ public class SecurityConfig {
                 ).permitAll()
                 // auth pubbliche
                 .requestMatchers("/auth/login", "/auth/register", "/auth/me", "/auth/logout").permitAll()
+                .requestMatchers(HttpMethod.GET, "/auth/availability").permitAll()
+                // posizione personale in classifica: serve il login (prima delle regole pubbliche)
+                .requestMatchers(HttpMethod.GET,
+                        "/api/leaderboard/game/*/me",
+                        "/api/leaderboard/global/me"
+                ).authenticated()
                 // leaderboard pubbliche GET
                 .requestMatchers(HttpMethod.GET,
                         "/api/leaderboard/global",
+                        "/api/leaderboard/global/page",
                         "/api/leaderboard/game/**",
                         "/api/leaderboard/games/codes",
                         "/api/leaderboard/flappy",
+                        "/api/leaderboard/stream",
                         "/api/avatars"
                 ).permitAll()
                 .requestMatchers("/api/leaderboard/**").authenticated()
+                // amministrazione
+                .requestMatchers("/api/admin/**").hasRole("ADMIN")
                 // API protette
                 .requestMatchers("/api/game/score").authenticated()
                 .requestMatchers("/api/profile/**").authenticated()
@@ -70,8 +108,30 @@ public class SecurityConfig {
         return http.build();
     }
 
+    /*
+     * Hash con prefisso {id} (DelegatingPasswordEncoder): oggi solo bcrypt, ma
+     * l'algoritmo si può cambiare senza invalidare gli hash esistenti. Gli hash
+     * vecchi senza prefisso (o con costo più basso) vengono riscritti al primo
+     * login riuscito, vedi CustomUserDetailsService.updatePassword.
+     *
+     * Costo: app.security.bcrypt.strength, oppure 0 = calibrato all'avvio su
+     * target-ms. Tutto gira sul pool limitato di BoundedPasswordEncoder.
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(
+            @Value("${app.security.bcrypt.strength:0}") int strength,
+            @Value("${app.security.bcrypt.target-ms:250}") long targetMs,
+            @Value("${app.security.bcrypt.min-strength:10}") int minStrength,
+            @Value("${app.security.bcrypt.threads:0}") int threads,
+            @Value("${app.security.bcrypt.queue-capacity:256}") int queueCapacity,
+            @Value("${app.security.bcrypt.retry-after-seconds:2}") long retryAfterSeconds) {
+        int cost = strength > 0 ? strength : BcryptCost.calibrate(targetMs, minStrength);
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(cost);
+
+        DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder("bcrypt", Map.of("bcrypt", bcrypt));
+        delegating.setDefaultPasswordEncoderForMatches(bcrypt); // hash salvati prima del prefisso
+
+        int n = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return new BoundedPasswordEncoder(delegating, n, queueCapacity, retryAfterSeconds);
     }
 }
@@ -0,0 +1,29 @@
+package it.project_work.app_arcade.security;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket senza lock, in forma GCRA: invece di (gettoni, ultimo refill)
+ * si tiene un solo istante "teorico di arrivo" (tat), aggiornato con una CAS.
+ * Ogni richiesta sposta tat avanti di un intervallo; se tat supera adesso di
+ * più di burst intervalli, il secchio è vuoto.
+ */
+final class TokenBucket {
+
+    private final AtomicLong tat = new AtomicLong(Long.MIN_VALUE);
+
+    // 0 = consentita, altrimenti nanosecondi da attendere
+    long tryAcquire(long now, long intervalNanos, long burstNanos) {
+        while (true) {
+            long current = tat.get();
+            long next = Math.max(current, now) + intervalNanos;
+            long ahead = next - now;
+            if (ahead > burstNanos) {
+                return ahead - burstNanos;
+            }
+            if (tat.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+}
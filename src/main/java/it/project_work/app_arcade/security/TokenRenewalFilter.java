@@ -0,0 +1,30 @@
+package it.project_work.app_arcade.security;
+
+import java.io.IOException;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Modalità token: rinnova il cookie prima di passare la richiesta avanti
+ * (dopo la risposta potrebbe essere già committata e il Set-Cookie perso).
+ */
+public class TokenRenewalFilter extends OncePerRequestFilter {
+
+    private final TokenSecurityContextRepository repository;
+
+    public TokenRenewalFilter(TokenSecurityContextRepository repository) {
+        this.repository = repository;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        repository.renewIfNeeded(request, response);
+        chain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,135 @@
+package it.project_work.app_arcade.security;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.context.HttpRequestResponseHolder;
+import org.springframework.security.web.context.SecurityContextRepository;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * SecurityContextRepository per app.auth.mode=token: il contesto vive in un
+ * cookie HttpOnly firmato invece che in HttpSession.
+ *
+ * Il caricamento ricostruisce l'ArcadePrincipal dal token (solo HMAC, niente
+ * DB), il salvataggio emette un token nuovo. Un token oltre metà della sua
+ * durata viene rinnovato da renewIfNeeded (vedi TokenRenewalFilter), ma mai
+ * oltre app.cookie.age minuti dal login: dopo serve un nuovo login.
+ */
+public class TokenSecurityContextRepository implements SecurityContextRepository {
+
+    private static final String CLAIMS_ATTR = TokenSecurityContextRepository.class.getName() + ".CLAIMS";
+
+    private final TokenService tokenService;
+    private final String cookieName;
+    private final boolean secureCookie;
+
+    public TokenSecurityContextRepository(TokenService tokenService, String cookieName, boolean secureCookie) {
+        this.tokenService = tokenService;
+        this.cookieName = cookieName;
+        this.secureCookie = secureCookie;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation") // resta il metodo astratto dell'interfaccia
+    public SecurityContext loadContext(HttpRequestResponseHolder holder) {
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        claims(holder.getRequest()).ifPresent(c -> context.setAuthentication(authentication(c.toPrincipal())));
+        return context;
+    }
+
+    @Override
+    public void saveContext(SecurityContext context, HttpServletRequest request, HttpServletResponse response) {
+        Authentication auth = context.getAuthentication();
+        if (auth == null || !(auth.getPrincipal() instanceof ArcadePrincipal principal)) {
+            if (readCookie(request) != null) {
+                clearCookie(response);
+            }
+            return;
+        }
+
+        // login: authTime = adesso; aggiornamento del principal: si conserva quello del token corrente
+        long authTime = claims(request)
+                .filter(c -> c.uid() == principal.getId())
+                .map(TokenService.Claims::auth)
+                .orElseGet(System::currentTimeMillis);
+        writeCookie(response, tokenService.issue(principal, authTime), tokenService.ttl());
+    }
+
+    @Override
+    public boolean containsContext(HttpServletRequest request) {
+        return claims(request).isPresent();
+    }
+
+    // rinnovo "scorrevole": nuovo token quando quello corrente ha superato metà della sua vita
+    public void renewIfNeeded(HttpServletRequest request, HttpServletResponse response) {
+        claims(request).ifPresent(c -> {
+            long now = System.currentTimeMillis();
+            boolean halfLife = now - c.iat() > (c.exp() - c.iat()) / 2;
+            boolean withinMaxAge = now - c.auth() < tokenService.maxAge().toMillis();
+            if (halfLife && withinMaxAge) {
+                writeCookie(response, tokenService.issue(c.toPrincipal(), c.auth()), tokenService.ttl());
+            }
+        });
+    }
+
+    // logout: revoca il token della richiesta e cancella il cookie
+    public void revoke(HttpServletRequest request, HttpServletResponse response) {
+        claims(request).ifPresent(tokenService::revoke);
+        request.setAttribute(CLAIMS_ATTR, Optional.empty());
+        clearCookie(response);
+    }
+
+    // verifica una sola volta per richiesta
+    @SuppressWarnings("unchecked")
+    private Optional<TokenService.Claims> claims(HttpServletRequest request) {
+        Object cached = request.getAttribute(CLAIMS_ATTR);
+        if (cached instanceof Optional<?> o) {
+            return (Optional<TokenService.Claims>) o;
+        }
+        Optional<TokenService.Claims> claims = tokenService.verify(readCookie(request));
+        request.setAttribute(CLAIMS_ATTR, claims);
+        return claims;
+    }
+
+    private String readCookie(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return null;
+        }
+        for (Cookie c : cookies) {
+            if (cookieName.equals(c.getName())) {
+                return c.getValue();
+            }
+        }
+        return null;
+    }
+
+    private void writeCookie(HttpServletResponse response, String value, Duration maxAge) {
+        ResponseCookie cookie = ResponseCookie.from(cookieName, value)
+                .path("/")
+                .httpOnly(true)
+                .secure(secureCookie)
+                .sameSite("Lax")
+                .maxAge(maxAge)
+                .build();
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+    }
+
+    private void clearCookie(HttpServletResponse response) {
+        writeCookie(response, "", Duration.ZERO);
+    }
+
+    private static Authentication authentication(ArcadePrincipal principal) {
+        return UsernamePasswordAuthenticationToken.authenticated(principal, null, principal.getAuthorities());
+    }
+}
@@ -0,0 +1,287 @@
+package it.project_work.app_arcade.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import it.project_work.app_arcade.models.AuthRevocation;
+import it.project_work.app_arcade.models.User;
+import it.project_work.app_arcade.repositories.AuthRevocationRepository;
+import lombok.extern.slf4j.Slf4j;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Token di accesso firmati (HMAC-SHA256) per app.auth.mode=token.
+ *
+ * Formato: kid.payload.firma (base64url). Il payload porta i dati
+ * dell'ArcadePrincipal, quindi la verifica è tutta locale: niente sessione e
+ * niente DB. Rotazione: app.auth.token.secrets = "kid:segreto,..." dove il
+ * primo firma e gli altri restano validi solo in verifica.
+ *
+ * Revoche: in memoria (jti revocati + "not before" per utente), scritte anche
+ * su auth_revocations e rilette dalle altre istanze ogni sync-seconds.
+ */
+@Component
+@ConditionalOnProperty(name = "app.auth.mode", havingValue = "token")
+@Slf4j
+public class TokenService implements SmartLifecycle {
+
+    // contenuto del token (nomi corti: finisce in un cookie a ogni richiesta)
+    public record Claims(
+            String jti,
+            long uid,
+            String sub,
+            String email,
+            String role,
+            int lvl,
+            Long av,
+            long iat, // emissione (ms)
+            long exp, // scadenza (ms)
+            long auth // login originale (ms), limite per i rinnovi
+            ) {
+
+        public ArcadePrincipal toPrincipal() {
+            return new ArcadePrincipal(uid, sub, email, User.Role.valueOf(role), true, lvl, av, 0L, null);
+        }
+    }
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder B64 = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder B64D = Base64.getUrlDecoder();
+
+    private final JsonMapper jsonMapper;
+    private final AuthRevocationRepository revocationRepository;
+    private final Duration ttl;
+    private final Duration maxAge;
+    private final long syncSeconds;
+
+    private final String signingKid;
+    private final Map<String, SecretKeySpec> keys = new LinkedHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+
+    private final Map<String, Long> revokedJti = new ConcurrentHashMap<>(); // jti -> scadenza token (ms)
+    private final Map<Long, Long> notBefore = new ConcurrentHashMap<>(); // userId -> token validi da (ms)
+    private volatile long lastSyncedId = 0;
+
+    private ScheduledExecutorService sync;
+    private volatile boolean running = false;
+
+    public TokenService(JsonMapper jsonMapper, AuthRevocationRepository revocationRepository,
+            @Value("${app.auth.token.secrets:}") String secrets,
+            @Value("${app.auth.token.ttl-minutes:15}") long ttlMinutes,
+            @Value("${app.cookie.age:240}") long maxAgeMinutes,
+            @Value("${app.auth.token.revocation-sync-seconds:5}") long syncSeconds) {
+        this.jsonMapper = jsonMapper;
+        this.revocationRepository = revocationRepository;
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+        this.maxAge = Duration.ofMinutes(Math.max(ttlMinutes, maxAgeMinutes));
+        this.syncSeconds = syncSeconds;
+
+        for (String entry : secrets.split(",")) {
+            String e = entry.trim();
+            if (e.isEmpty()) {
+                continue;
+            }
+            int sep = e.indexOf(':');
+            if (sep <= 0) {
+                throw new IllegalStateException("app.auth.token.secrets: formato atteso kid:segreto");
+            }
+            byte[] secret = e.substring(sep + 1).getBytes(StandardCharsets.UTF_8);
+            if (secret.length < 32) {
+                throw new IllegalStateException("app.auth.token.secrets: segreto troppo corto (min 32 byte)");
+            }
+            keys.put(e.substring(0, sep), new SecretKeySpec(secret, ALGORITHM));
+        }
+        if (keys.isEmpty()) {
+            // ok in sviluppo; in produzione (più istanze, riavvii) va configurato
+            log.warn("app.auth.token.secrets non impostato: chiave casuale, i token non sopravvivono al riavvio");
+            byte[] secret = new byte[32];
+            random.nextBytes(secret);
+            keys.put("dev", new SecretKeySpec(secret, ALGORITHM));
+        }
+        this.signingKid = keys.keySet().iterator().next();
+    }
+
+    public Duration ttl() {
+        return ttl;
+    }
+
+    public Duration maxAge() {
+        return maxAge;
+    }
+
+    // ---------------------------------------------------------------- emissione / verifica
+    public String issue(ArcadePrincipal p, long authTime) {
+        long now = System.currentTimeMillis();
+        byte[] jti = new byte[12];
+        random.nextBytes(jti);
+
+        Claims claims = new Claims(HexFormat.of().formatHex(jti), p.getId(), p.getUsername(), p.getEmail(),
+                p.getRole().name(), p.getLevel(), p.getAvatarId(), now, now + ttl.toMillis(), authTime);
+
+        String payload = B64.encodeToString(jsonMapper.writeValueAsBytes(claims));
+        String signed = signingKid + "." + payload;
+        return signed + "." + B64.encodeToString(sign(keys.get(signingKid), signed));
+    }
+
+    // firma, scadenza e revoche: empty se il token non va accettato
+    public Optional<Claims> verify(String token) {
+        if (token == null) {
+            return Optional.empty();
+        }
+        int first = token.indexOf('.');
+        int last = token.lastIndexOf('.');
+        if (first <= 0 || last <= first) {
+            return Optional.empty();
+        }
+
+        SecretKeySpec key = keys.get(token.substring(0, first));
+        if (key == null) {
+            return Optional.empty(); // kid sconosciuto o ritirato
+        }
+
+        try {
+            byte[] expected = sign(key, token.substring(0, last));
+            if (!MessageDigest.isEqual(expected, B64D.decode(token.substring(last + 1)))) {
+                return Optional.empty();
+            }
+            Claims c = jsonMapper.readValue(B64D.decode(token.substring(first + 1, last)), Claims.class);
+            if (c.exp() <= System.currentTimeMillis() || isRevoked(c)) {
+                return Optional.empty();
+            }
+            return Optional.of(c);
+        } catch (IllegalArgumentException | JacksonException ex) {
+            return Optional.empty(); // base64/JSON non validi
+        }
+    }
+
+    private boolean isRevoked(Claims c) {
+        if (revokedJti.containsKey(c.jti())) {
+            return true;
+        }
+        Long nb = notBefore.get(c.uid());
+        return nb != null && c.iat() < nb;
+    }
+
+    private static byte[] sign(SecretKeySpec key, String data) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(data.getBytes(StandardCharsets.US_ASCII));
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    // ---------------------------------------------------------------- revoche
+    // logout: solo questo token
+    public void revoke(Claims c) {
+        revokedJti.put(c.jti(), c.exp());
+        persist(c.uid(), c.jti(), System.currentTimeMillis(), c.exp());
+    }
+
+    // cambio password/username, eliminazione: tutti i token dell'utente emessi fino ad ora
+    public void revokeAll(long userId) {
+        long now = System.currentTimeMillis();
+        notBefore.merge(userId, now, Math::max);
+        persist(userId, null, now, now + maxAge.toMillis());
+    }
+
+    private void persist(long userId, String jti, long notBeforeMs, long expiresMs) {
+        AuthRevocation r = new AuthRevocation();
+        r.setUserId(userId);
+        r.setJti(jti);
+        r.setNotBefore(toDateTime(notBeforeMs));
+        r.setExpiresAt(toDateTime(expiresMs));
+        revocationRepository.save(r);
+    }
+
+    // rilegge le revoche scritte dalle altre istanze (e all'avvio tutte quelle ancora valide)
+    void syncRevocations() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            for (AuthRevocation r : revocationRepository.findByIdGreaterThanAndExpiresAtAfterOrderByIdAsc(lastSyncedId, now)) {
+                long exp = toMillis(r.getExpiresAt());
+                if (r.getJti() != null) {
+                    revokedJti.put(r.getJti(), exp);
+                } else {
+                    notBefore.merge(r.getUserId(), toMillis(r.getNotBefore()), Math::max);
+                }
+                lastSyncedId = r.getId();
+            }
+
+            // le revoche servono solo finché i token interessati possono essere ancora validi
+            long nowMs = System.currentTimeMillis();
+            revokedJti.values().removeIf(exp -> exp < nowMs);
+            notBefore.values().removeIf(nb -> nb + maxAge.toMillis() < nowMs);
+        } catch (RuntimeException ex) {
+            log.warn("Sincronizzazione revoche token fallita: {}", ex.getMessage());
+        }
+    }
+
+    void purgeExpired() {
+        try {
+            int n = revocationRepository.deleteExpired(LocalDateTime.now());
+            if (n > 0) {
+                log.debug("Revoche scadute eliminate: {}", n);
+            }
+        } catch (RuntimeException ex) {
+            log.warn("Pulizia revoche token fallita: {}", ex.getMessage());
+        }
+    }
+
+    private static LocalDateTime toDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    private static long toMillis(LocalDateTime t) {
+        return t.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    // ---------------------------------------------------------------- lifecycle
+    @Override
+    public void start() {
+        syncRevocations(); // prima di servire richieste: le revoche già presenti valgono subito
+        sync = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().daemon().name("token-revocations").factory());
+        sync.scheduleWithFixedDelay(this::syncRevocations, syncSeconds, syncSeconds, TimeUnit.SECONDS);
+        sync.scheduleWithFixedDelay(this::purgeExpired, 10, 60, TimeUnit.MINUTES);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (sync != null) {
+            sync.shutdownNow();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -1,27 +1,39 @@
 package it.project_work.app_arcade.services;
 
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import it.project_work.app_arcade.dto.RegisterRequest;
 import it.project_work.app_arcade.dto.UserResponse;
 import it.project_work.app_arcade.exceptions.BadRequestException;
 import it.project_work.app_arcade.exceptions.ConflictException;
-import it.project_work.app_arcade.models.Avatar;
+import it.project_work.app_arcade.leaderboard.LeaderboardEngine;
 import it.project_work.app_arcade.models.User;
 import it.project_work.app_arcade.repositories.AvatarRepository;
 import it.project_work.app_arcade.repositories.UserRepository;
-import jakarta.transaction.Transactional;
 
 @Service
 public class AuthService extends GenericService<Long, User, UserRepository> {
 
     private final PasswordEncoder passwordEncoder;
     private final AvatarRepository avatarRepository;
+    private final AvatarRegistry avatarRegistry;
+    private final LeaderboardEngine leaderboardEngine;
+    private final AvailabilityService availabilityService;
+    private final TransactionTemplate tx;
 
-    public AuthService(PasswordEncoder passwordEncoder, AvatarRepository avatarRepository) {
+    public AuthService(PasswordEncoder passwordEncoder, AvatarRepository avatarRepository,
+            AvatarRegistry avatarRegistry, LeaderboardEngine leaderboardEngine,
+            AvailabilityService availabilityService, PlatformTransactionManager transactionManager) {
         this.passwordEncoder = passwordEncoder;
         this.avatarRepository = avatarRepository;
+        this.avatarRegistry = avatarRegistry;
+        this.leaderboardEngine = leaderboardEngine;
+        this.availabilityService = availabilityService;
+        this.tx = new TransactionTemplate(transactionManager);
     }
 
     /* 
@@ -29,46 +41,72 @@ public class AuthService extends GenericService<Long, User, UserRepository> {
     controller e service parlano lo stesso linguaggio (DTO)
     il front manda JSON unico e stabile
      */
-    @Transactional
+    // niente @Transactional: controlli e BCrypt (centinaia di ms) avvengono senza tenere
+    // una connessione del pool, la transazione copre solo l'insert
     public UserResponse register(RegisterRequest dto) {
 
         // Normalizzazione (coerenza + evita duplicati strani)
         String uname = dto.username().trim().toLowerCase();
         String email = dto.email().trim().toLowerCase();
 
-        if (getRepository().existsByEmail(email)) {
+        // Bloom filter: query solo se il nome è "forse" già usato
+        if (!availabilityService.isEmailAvailable(email)) {
             throw new ConflictException("EMAIL_TAKEN", "Email già in uso");
         }
-        if (getRepository().existsByUsername(uname)) {
+        if (!availabilityService.isUsernameAvailable(uname)) {
             throw new ConflictException("USERNAME_TAKEN", "Username già in uso");
         }
 
-        Avatar avatar = avatarRepository.findById(dto.avatarId())
+        AvatarRegistry.Entry avatar = avatarRegistry.find(dto.avatarId())
                 .orElseThrow(() -> new BadRequestException("AVATAR_INVALID", "Avatar non valido"));
 
         // Hardening: avatar disattivo
-        if (Boolean.FALSE.equals(avatar.getActive())) {
+        if (!avatar.active()) {
             throw new BadRequestException("AVATAR_INACTIVE", "Avatar non disponibile");
         }
 
         // Hardening: in registrazione livello iniziale = 1
         int startingLevel = 1;
-        if (avatar.getRequiredLevel() != null && avatar.getRequiredLevel() > startingLevel) {
+        if (avatar.requiredLevel() > startingLevel) {
             throw new ConflictException(
                     "AVATAR_LOCKED",
-                    "Avatar bloccato. Richiede livello " + avatar.getRequiredLevel()
+                    "Avatar bloccato. Richiede livello " + avatar.requiredLevel()
             );
         }
 
-        User user = new User();
-        user.setUsername(uname);
-        user.setEmail(email);
-        user.setPasswordHash(passwordEncoder.encode(dto.password()));
-        user.setRole(User.Role.USER);
-        user.setEnabled(true);
-        user.setLevel(startingLevel);
-        user.setSelectedAvatar(avatar);
+        String passwordHash = passwordEncoder.encode(dto.password());
 
-        return UserResponse.fromEntity(getRepository().save(user));
+        User saved = tx.execute(status -> {
+            User user = new User();
+            user.setUsername(uname);
+            user.setEmail(email);
+            user.setPasswordHash(passwordHash);
+            user.setRole(User.Role.USER);
+            user.setEnabled(true);
+            user.setLevel(startingLevel);
+            user.setSelectedAvatar(avatarRepository.getReferenceById(avatar.id())); // riferimento, nessuna query
+
+            availabilityService.reserve(uname, email);
+
+            // registrazioni concorrenti con lo stesso nome: decidono i vincoli UNIQUE
+            try {
+                return getRepository().saveAndFlush(user);
+            } catch (DataIntegrityViolationException ex) {
+                throw conflictFor(ex);
+            }
+        });
+
+        // classifiche in memoria: qui la transazione è già committata (rollback = nessun giocatore fantasma)
+        leaderboardEngine.upsertPlayer(saved.getId(), saved.getUsername(), avatar.imageUrl(), saved.getLevel());
+
+        return UserResponse.fromEntity(saved);
+    }
+
+    static ConflictException conflictFor(DataIntegrityViolationException ex) {
+        String msg = String.valueOf(ex.getMostSpecificCause().getMessage()).toLowerCase();
+        if (msg.contains("uk_users_email")) {
+            return new ConflictException("EMAIL_TAKEN", "Email già in uso");
+        }
+        return new ConflictException("USERNAME_TAKEN", "Username già in uso");
     }
 }
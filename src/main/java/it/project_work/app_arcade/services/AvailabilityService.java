@@ -0,0 +1,207 @@
+package it.project_work.app_arcade.services;
+
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import it.project_work.app_arcade.models.User;
+import it.project_work.app_arcade.repositories.UserRepository;
+import it.project_work.app_arcade.utilities.BloomFilter;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Disponibilità di username ed email con un Bloom filter in memoria davanti
+ * a existsByUsername/existsByEmail.
+ *
+ * "Sicuramente libero" non tocca il DB; solo i "forse presente" (nomi usati
+ * davvero o falsi positivi) fanno la query. Registrazione e rename aggiungono
+ * subito il nome al filtro; nomi liberati (rename, eliminazione) restano come
+ * falsi positivi fino alla ricostruzione: periodica, o anticipata quando i
+ * nomi liberati superano rebuild-after-releases.
+ *
+ * Finché il primo filtro non è pronto si va sempre sul DB. I vincoli UNIQUE
+ * della tabella users restano comunque l'ultima parola (vedi AuthService).
+ *
+ * Ricostruzione e aggiunte live: la ricostruzione legge i nomi dal DB, quindi
+ * un nome aggiunto prima del suo commit può mancare nel filtro nuovo. Per
+ * questo reserve() lo aggiunge di nuovo dopo il commit; put() legge building
+ * prima di filter (la ricostruzione pubblica filter prima di azzerare
+ * building), così un'aggiunta a cavallo dello scambio finisce sempre nel
+ * filtro che resta.
+ */
+@Service
+@Slf4j
+public class AvailabilityService extends GenericService<Long, User, UserRepository> {
+
+    // fotografia contatori: quante risposte senza DB, quante query, quanti falsi positivi
+    public record Stats(long definitelyFree, long dbChecks, long falsePositives, long bits, int hashes) {
+
+    }
+
+    private final double fpp;
+    private final long minCapacity;
+
+    private volatile BloomFilter filter; // null = non ancora costruito
+    private volatile BloomFilter building; // durante la ricostruzione riceve anche le aggiunte live
+
+    private final LongAdder definitelyFree = new LongAdder();
+    private final LongAdder dbChecks = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    private final ScheduledExecutorService rebuilder = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().daemon().name("availability-rebuild").factory());
+    private final long rebuildMinutes;
+    private final long rebuildAfterReleases;
+    private final AtomicLong released = new AtomicLong(); // nomi liberati dall'ultima ricostruzione
+
+    public AvailabilityService(
+            @Value("${app.availability.fpp:0.01}") double fpp,
+            @Value("${app.availability.min-capacity:10000}") long minCapacity,
+            @Value("${app.availability.rebuild-minutes:60}") long rebuildMinutes,
+            @Value("${app.availability.rebuild-after-releases:1000}") long rebuildAfterReleases) {
+        this.fpp = fpp;
+        this.minCapacity = minCapacity;
+        this.rebuildMinutes = rebuildMinutes;
+        this.rebuildAfterReleases = rebuildAfterReleases;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        // prima costruzione subito (in background), poi periodica
+        rebuilder.scheduleWithFixedDelay(this::rebuild, 0, rebuildMinutes, TimeUnit.MINUTES);
+    }
+
+    // ---------------------------------------------------------------- letture
+    public boolean isUsernameAvailable(String username) {
+        String key = usernameKey(username);
+        return isFree(key, () -> getRepository().existsByUsername(normalize(username)));
+    }
+
+    public boolean isEmailAvailable(String email) {
+        String key = emailKey(email);
+        return isFree(key, () -> getRepository().existsByEmail(normalize(email)));
+    }
+
+    private boolean isFree(String key, BooleanSupplier existsInDb) {
+        BloomFilter f = filter;
+        if (f != null && !f.mightContain(key)) {
+            definitelyFree.increment();
+            return true;
+        }
+        dbChecks.increment();
+        boolean exists = existsInDb.getAsBoolean();
+        if (!exists && f != null) {
+            falsePositives.increment();
+        }
+        return !exists;
+    }
+
+    // ---------------------------------------------------------------- scritture
+    // da chiamare prima del salvataggio (un nome nel filtro ma non nel DB è solo un falso
+    // positivo) e ripetuta dopo il commit: una ricostruzione che ha letto il DB prima del
+    // commit non ha il nome, e l'aggiunta di adesso può essere finita nel filtro scartato
+    public void reserve(String username, String email) {
+        add(username, email);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    add(username, email);
+                }
+            });
+        }
+    }
+
+    private void add(String username, String email) {
+        if (username != null) {
+            put(usernameKey(username));
+        }
+        if (email != null) {
+            put(emailKey(email));
+        }
+    }
+
+    // building prima di filter: se building è già null la ricostruzione ha già pubblicato filter
+    private void put(String key) {
+        BloomFilter b = building;
+        BloomFilter f = filter;
+        if (b != null) {
+            b.put(key);
+        }
+        if (f != null && f != b) {
+            f.put(key);
+        }
+    }
+
+    // rename/eliminazione: dal Bloom filter non si toglie, il nome resta "forse presente" fino alla ricostruzione
+    public void release(String username, String email) {
+        long n = released.addAndGet((username != null ? 1 : 0) + (email != null ? 1 : 0));
+        if (n >= rebuildAfterReleases && released.compareAndSet(n, 0)) {
+            rebuilder.execute(this::rebuild);
+        }
+    }
+
+    void rebuild() {
+        try {
+            long users = getRepository().count();
+            // spazio per crescere fino alla prossima ricostruzione senza alzare troppo i falsi positivi
+            BloomFilter next = new BloomFilter(Math.max(minCapacity, users * 2 * 2), fpp);
+            released.set(0);
+            building = next;
+            for (String u : getRepository().findAllUsernames()) {
+                next.put(usernameKey(u));
+            }
+            for (String e : getRepository().findAllEmails()) {
+                next.put(emailKey(e));
+            }
+            filter = next; // prima di azzerare building: vedi put()
+            building = null;
+            log.info("Filtro disponibilità ricostruito: {} utenti, {} bit, {} hash",
+                    users, next.bitCount(), next.hashCount());
+        } catch (RuntimeException ex) {
+            building = null;
+            log.warn("Ricostruzione filtro disponibilità fallita, resta il precedente", ex);
+        }
+    }
+
+    // false finché il primo filtro non è costruito (nel frattempo si risponde dal DB)
+    public boolean isReady() {
+        return filter != null;
+    }
+
+    public Stats stats() {
+        BloomFilter f = filter;
+        return new Stats(definitelyFree.sum(), dbChecks.sum(), falsePositives.sum(),
+                f == null ? 0 : f.bitCount(), f == null ? 0 : f.hashCount());
+    }
+
+    // stessa normalizzazione della registrazione (e il DB confronta senza maiuscole)
+    static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String usernameKey(String username) {
+        return "u:" + normalize(username);
+    }
+
+    private static String emailKey(String email) {
+        return "e:" + normalize(email);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        rebuilder.shutdownNow();
+    }
+}
@@ -0,0 +1,135 @@
+package it.project_work.app_arcade.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import it.project_work.app_arcade.dto.AvatarDto;
+import it.project_work.app_arcade.models.Avatar;
+import it.project_work.app_arcade.repositories.AvatarRepository;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Catalogo avatar in memoria: poche righe che cambiano solo quando un admin
+ * le modifica, quindi nessuna richiesta interroga più la tabella avatars.
+ *
+ * Lo snapshot è immutabile (copie dei dati, non entity JPA) e contiene già
+ * le liste pronte per /api/avatars, una per livello utente, con il flag
+ * "unlocked" calcolato. reload() ne costruisce uno nuovo e lo pubblica con
+ * una sola scrittura volatile: chi legge vede il vecchio o il nuovo, mai
+ * un misto.
+ */
+@Slf4j
+@Service
+public class AvatarRegistry {
+
+    // avatar del catalogo (anche disattivi: servono i controlli in registrazione/selezione)
+    public record Entry(Long id, String name, String imageUrl, int requiredLevel, boolean active) {
+
+    }
+
+    /**
+     * views.get(L - 1) = catalogo attivo visto da un utente di livello L; oltre
+     * il livello richiesto più alto la vista non cambia più (si usa l'ultima).
+     * tag cambia con il contenuto del catalogo (per l'ETag).
+     */
+    private record Snapshot(Map<Long, Entry> byId, List<List<AvatarDto>> views, String tag) {
+
+    }
+
+    private final AvatarRepository avatarRepository;
+
+    private volatile Snapshot snapshot;
+
+    public AvatarRegistry(AvatarRepository avatarRepository) {
+        this.avatarRepository = avatarRepository;
+    }
+
+    // in background, in parallelo al warm-up delle classifiche: la porta è già aperta
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadAtStartup() {
+        Thread.ofVirtual().name("avatar-registry-load").start(() -> {
+            try {
+                reload();
+            } catch (RuntimeException e) {
+                // si riprova alla prima richiesta
+                log.warn("Caricamento catalogo avatar fallito", e);
+            }
+        });
+    }
+
+    // ricarica dal DB e sostituisce lo snapshot in blocco; ritorna il numero di avatar
+    public synchronized int reload() {
+        List<Avatar> rows = avatarRepository.findAll(Sort.by("requiredLevel", "id"));
+
+        Map<Long, Entry> byId = new LinkedHashMap<>();
+        List<Entry> active = new ArrayList<>();
+        int maxLevel = 1;
+        int hash = 1;
+        for (Avatar a : rows) {
+            int required = a.getRequiredLevel() == null ? 1 : a.getRequiredLevel();
+            Entry e = new Entry(a.getId(), a.getName(), a.getImageUrl(), required, !Boolean.FALSE.equals(a.getActive()));
+            byId.put(e.id(), e);
+            if (e.active()) {
+                active.add(e);
+                maxLevel = Math.max(maxLevel, required);
+                hash = 31 * hash + Objects.hash(e.id(), e.name(), e.imageUrl(), e.requiredLevel());
+            }
+        }
+
+        List<List<AvatarDto>> views = new ArrayList<>(maxLevel);
+        for (int level = 1; level <= maxLevel; level++) {
+            final int lvl = level;
+            views.add(active.stream()
+                    .map(e -> new AvatarDto(e.id(), e.name(), e.imageUrl(), e.requiredLevel(), e.requiredLevel() <= lvl))
+                    .toList());
+        }
+
+        snapshot = new Snapshot(Collections.unmodifiableMap(byId), List.copyOf(views), Integer.toHexString(hash));
+        log.info("Catalogo avatar caricato: {} avatar ({} attivi)", byId.size(), active.size());
+        return byId.size();
+    }
+
+    public Optional<Entry> find(Long id) {
+        return id == null ? Optional.empty() : Optional.ofNullable(current().byId().get(id));
+    }
+
+    // avatar attivi in ordine di livello richiesto, con "unlocked" per il livello dato
+    public List<AvatarDto> viewFor(int level) {
+        List<List<AvatarDto>> views = current().views();
+        return views.get(viewIndex(views, level));
+    }
+
+    // ETag della vista: uguale per tutti i livelli che vedono lo stesso catalogo sbloccato
+    public String etagFor(int level) {
+        Snapshot s = current();
+        return "\"" + s.tag() + "-L" + (viewIndex(s.views(), level) + 1) + "\"";
+    }
+
+    private static int viewIndex(List<List<AvatarDto>> views, int level) {
+        return Math.clamp(level, 1, views.size()) - 1;
+    }
+
+    private Snapshot current() {
+        Snapshot s = snapshot;
+        return s != null ? s : loadIfAbsent();
+    }
+
+    // avvio con DB non raggiungibile: carica solo la prima richiesta fredda, quelle
+    // in coda sul lock trovano lo snapshot già pubblicato e non rifanno la query
+    private synchronized Snapshot loadIfAbsent() {
+        if (snapshot == null) {
+            reload();
+        }
+        return snapshot;
+    }
+}
@@ -2,15 +2,19 @@ package it.project_work.app_arcade.services;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
 import it.project_work.app_arcade.models.User;
 import it.project_work.app_arcade.repositories.UserRepository;
+import it.project_work.app_arcade.security.ArcadePrincipal;
+import lombok.extern.slf4j.Slf4j;
 
 @Service
-public class CustomUserDetailsService implements UserDetailsService {
+@Slf4j
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     @Autowired
     private UserRepository userRepository;
@@ -22,11 +26,18 @@ public class CustomUserDetailsService implements UserDetailsService {
         User user = userRepository.findByUsername(username)
             .orElseThrow(() -> new UsernameNotFoundException("User not found"));
 
-        return org.springframework.security.core.userdetails.User
-            .withUsername(user.getUsername())
-            .password(user.getPasswordHash())
-            .roles(user.getRole().name()) // ruoli Spring Security
-            .disabled(!user.isEnabled())  // abilita/disabilita login
-            .build();
+        // principal con id/livello/avatar: dopo il login nessuno deve più cercare l'utente per username
+        return ArcadePrincipal.from(user);
     }
-}
\ No newline at end of file
+
+    // chiamato da Spring dopo un login riuscito se PasswordEncoder.upgradeEncoding() dice che l'hash è vecchio
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        ArcadePrincipal principal = (ArcadePrincipal) user;
+        if (userRepository.upgradePasswordHash(principal.getId(), principal.getPassword(), newPassword) == 0) {
+            return user; // password cambiata nel frattempo: si lascia quella
+        }
+        log.debug("Hash password aggiornato per l'utente {}", principal.getId());
+        return principal.withPasswordHash(newPassword);
+    }
+}
@@ -5,7 +5,6 @@ import it.project_work.app_arcade.models.Feedback;
 import it.project_work.app_arcade.models.User;
 import it.project_work.app_arcade.repositories.FeedbackRepository;
 import it.project_work.app_arcade.repositories.UserRepository;
-import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -21,13 +20,9 @@ public class FeedbackService {
     }
 
     @Transactional
-    public void create(FeedbackCreateRequest req, Authentication auth) {
-        // 1) risolvo utente loggato (robusto: username o email)
-        String principal = auth.getName();
-
-        User user = userRepository.findByUsername(principal)
-                .or(() -> userRepository.findByEmail(principal))
-                .orElseThrow(() -> new IllegalStateException("Utente autenticato non trovato"));
+    public void create(FeedbackCreateRequest req, long userId) {
+        // 1) utente loggato: serve solo come FK -> riferimento per id, nessuna SELECT
+        User user = userRepository.getReferenceById(userId);
 
         // 2) default type
         Feedback.Type type = (req.type() != null) ? req.type() : Feedback.Type.BUG;
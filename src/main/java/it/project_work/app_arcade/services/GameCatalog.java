@@ -0,0 +1,47 @@
+package it.project_work.app_arcade.services;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import it.project_work.app_arcade.exceptions.BadRequestException;
+
+/**
+ * Giochi esistenti (app.games). Solo questi codici arrivano al motore
+ * classifiche e al DB: un codice inventato dal client creerebbe una
+ * classifica, le classifiche a finestra e un feed SSE nuovi a ogni richiesta
+ * (e in modalità batched/log il motore si aggiorna prima che il DB veda la riga).
+ */
+@Service
+public class GameCatalog {
+
+    private final Set<String> codes;
+
+    public GameCatalog(@Value("${app.games:flappy,invaders}") List<String> codes) {
+        this.codes = codes.stream()
+                .map(GameCatalog::normalize)
+                .filter(c -> !c.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    public Set<String> codes() {
+        return codes;
+    }
+
+    // codice normalizzato (minuscolo), 400 se il gioco non esiste
+    public String require(String gameCode) {
+        String code = gameCode == null ? "" : normalize(gameCode);
+        if (!codes.contains(code)) {
+            throw new BadRequestException("INVALID_GAME", "Gioco sconosciuto");
+        }
+        return code;
+    }
+
+    private static String normalize(String code) {
+        return code.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -1,28 +1,45 @@
 package it.project_work.app_arcade.services;
 
-import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
 
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
 import it.project_work.app_arcade.dto.GameTopDTO;
+import it.project_work.app_arcade.dto.LeaderboardPage;
 import it.project_work.app_arcade.dto.LeaderboardResponse;
-import it.project_work.app_arcade.models.Avatar;
-import it.project_work.app_arcade.models.User;
+import it.project_work.app_arcade.dto.PlayerRankResponse;
+import it.project_work.app_arcade.leaderboard.LeaderboardCache;
+import it.project_work.app_arcade.leaderboard.LeaderboardEngine;
+import it.project_work.app_arcade.leaderboard.LeaderboardEngine.BoardVersion;
+import it.project_work.app_arcade.leaderboard.LeaderboardWindow;
+import it.project_work.app_arcade.leaderboard.PageCursor;
+import it.project_work.app_arcade.leaderboard.PageRow;
 import it.project_work.app_arcade.models.UserGameProgress;
 import it.project_work.app_arcade.repositories.ProgressRepository;
-import it.project_work.app_arcade.repositories.UserRepository;
 
 @Service
 public class LeaderboardService extends GenericService<Long, UserGameProgress, ProgressRepository> {
 
-    private final UserRepository userRepository;
+    private static final int MAX_AROUND = 10;
+    private static final int MAX_PAGE_SIZE = 100;
 
-    public LeaderboardService(UserRepository userRepository) {
-        this.userRepository = userRepository;
+    private final LeaderboardEngine leaderboardEngine;
+    private final LeaderboardCache leaderboardCache;
+
+    public LeaderboardService(LeaderboardEngine leaderboardEngine, LeaderboardCache leaderboardCache) {
+        this.leaderboardEngine = leaderboardEngine;
+        this.leaderboardCache = leaderboardCache;
+    }
+
+    // versione della classifica per le GET condizionali (vuota se il motore non è pronto)
+    public Optional<BoardVersion> boardVersion(String gameCode) {
+        return leaderboardEngine.versionOf(gameCode);
     }
 
     // Legacy/utility: top flappy 
@@ -31,33 +48,22 @@ public class LeaderboardService extends GenericService<Long, UserGameProgress, P
     }
 
     // Globale: somma bestScore + somma playedCount su tutti i giochi
+    // (aggregazione, ordinamento e limit fatti in una sola query sul DB)
     public List<LeaderboardResponse> topTot(int limit) {
         if (limit <= 0) {
             return Collections.emptyList();
         }
 
-        List<User> users = userRepository.findAll();
-        List<LeaderboardResponse> responses = new ArrayList<>();
-
-        for (User user : users) {
-            long totalScore = getTotScoreUser(user.getId());
-            long totalPlayed = getTotPlayedUser(user.getId());
+        return leaderboardCache.get(LeaderboardCache.GLOBAL, null, limit, () -> loadTopTot(limit));
+    }
 
-            responses.add(new LeaderboardResponse(
-                    user.getUsername(),
-                    extractAvatarUrl(user),
-                    totalScore,
-                    totalPlayed,
-                    user.getLevel()
-            ));
+    private List<LeaderboardResponse> loadTopTot(int limit) {
+        // motore in memoria pronto -> nessuna query
+        if (leaderboardEngine.isWarm()) {
+            return leaderboardEngine.topGlobal(limit);
         }
 
-        responses.sort(Comparator.comparingLong(LeaderboardResponse::totalScore).reversed());
-
-        if (limit < responses.size()) {
-            responses = responses.subList(0, limit);
-        }
-        return responses;
+        return getRepository().findGlobalLeaderboard(PageRequest.of(0, limit));
     }
 
     // Per gioco: migliori utenti ordinati per bestScore (con playedCount del gioco)
@@ -66,29 +72,89 @@ public class LeaderboardService extends GenericService<Long, UserGameProgress, P
             return Collections.emptyList();
         }
 
-        List<UserGameProgress> progresses
-                = getRepository().findByGameCodeOrderByBestScoreDesc(gameCode, PageRequest.of(0, limit));
+        return leaderboardCache.get(LeaderboardCache.GAME, gameCode, limit,
+                () -> loadTopScoresPerGame(gameCode, limit));
+    }
+
+    // Classifica a finestra (giorno/settimana/mese): solo dal motore, niente aggregazioni sul DB
+    public List<GameTopDTO> getTopScoresPerGame(String gameCode, LeaderboardWindow window, int limit) {
+        if (window == LeaderboardWindow.ALL) {
+            return getTopScoresPerGame(gameCode, limit);
+        }
+        requireWarm();
+        return leaderboardEngine.topOfGame(gameCode, window, limit);
+    }
+
+    private List<GameTopDTO> loadTopScoresPerGame(String gameCode, int limit) {
+        if (leaderboardEngine.isWarm()) {
+            return leaderboardEngine.topOfGame(gameCode, limit);
+        }
+
+        return getRepository().findGameTop(gameCode, PageRequest.of(0, limit));
+    }
+
+    // Pagine a cursore (?after=&size=): costo indipendente dalla profondità
+    public LeaderboardPage<GameTopDTO> pageOfGame(String gameCode, String after, int size) {
+        PageCursor cursor = PageCursor.decode(after);
+        int n = clampPageSize(size);
+        if (leaderboardEngine.isWarm()) {
+            return leaderboardEngine.pageOfGame(gameCode, cursor, n);
+        }
+
+        // il cursore iniziale (Long.MAX_VALUE) va oltre ogni bestScore int
+        int score = (int) Math.min(cursor.score(), Integer.MAX_VALUE);
+        List<PageRow> rows = getRepository().findGamePageAfter(gameCode, score, cursor.userId(), PageRequest.of(0, n + 1));
+        return toPage(rows, n, r -> new GameTopDTO(r.username(), r.avatarUrl(), r.score().intValue(), r.level(),
+                r.played().intValue()));
+    }
+
+    public LeaderboardPage<LeaderboardResponse> pageGlobal(String after, int size) {
+        PageCursor cursor = PageCursor.decode(after);
+        int n = clampPageSize(size);
+        if (leaderboardEngine.isWarm()) {
+            return leaderboardEngine.pageGlobal(cursor, n);
+        }
+
+        List<PageRow> rows = getRepository().findGlobalPageAfter(cursor.score(), cursor.userId(), PageRequest.of(0, n + 1));
+        return toPage(rows, n, r -> new LeaderboardResponse(r.username(), r.avatarUrl(), r.score(), r.played(),
+                r.level()));
+    }
+
+    // rows contiene fino a size + 1 righe: se c'è quella in più esiste una pagina dopo
+    private static <T> LeaderboardPage<T> toPage(List<PageRow> rows, int size, Function<PageRow, T> mapper) {
+        String next = null;
+        if (rows.size() > size) {
+            rows = rows.subList(0, size);
+            PageRow last = rows.get(size - 1);
+            next = new PageCursor(last.score(), last.userId()).encode();
+        }
+        return new LeaderboardPage<>(rows.stream().map(mapper).toList(), next);
+    }
+
+    private static int clampPageSize(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
 
-        return progresses.stream()
-                .map(p -> {
-                    User u = userRepository.findById(p.getUser().getId()).orElse(null);
-                    if (u == null) {
-                        return null;
-                    }
+    // Posizione dell'utente loggato (+ vicini): solo dal motore in memoria, O(log n)
+    public PlayerRankResponse myRankInGame(long userId, String gameCode, int around) {
+        requireWarm();
+        return leaderboardEngine.rankInGame(gameCode, userId, clampAround(around));
+    }
 
-                    Integer bestScore = p.getBestScore() != null ? p.getBestScore() : 0;
-                    Integer playedCount = p.getPlayedCount() != null ? p.getPlayedCount() : 0;
+    public PlayerRankResponse myRankGlobal(long userId, int around) {
+        requireWarm();
+        return leaderboardEngine.rankGlobal(userId, clampAround(around));
+    }
 
-                    return new GameTopDTO(
-                            u.getUsername(),
-                            extractAvatarUrl(u),
-                            p.getBestScore(),
-                            u.getLevel(),
-                            p.getPlayedCount()
-                    );
-                })
-                .filter(x -> x != null)
-                .toList();
+    private void requireWarm() {
+        // niente fallback con COUNT(*) sul DB: per pochi secondi dopo l'avvio rispondiamo 503
+        if (!leaderboardEngine.isWarm()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Classifica in caricamento");
+        }
+    }
+
+    private static int clampAround(int around) {
+        return Math.max(0, Math.min(around, MAX_AROUND));
     }
 
     public List<String> listGameCodes() {
@@ -106,13 +172,4 @@ public class LeaderboardService extends GenericService<Long, UserGameProgress, P
                 .mapToLong(p -> p.getPlayedCount() == null ? 0 : p.getPlayedCount())
                 .sum();
     }
-
-    // Avatar url: users.selected_avatar_id -> avatars.image_url
-    private String extractAvatarUrl(User u) {
-        if (u == null) {
-            return null;
-        }
-        Avatar a = u.getSelectedAvatar();
-        return (a != null) ? a.getImageUrl() : null;
-    }
 }
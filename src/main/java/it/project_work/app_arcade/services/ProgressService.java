@@ -1,11 +1,17 @@
 package it.project_work.app_arcade.services;
 
+import java.time.LocalDateTime;
+
 import org.springframework.stereotype.Service;
 
 import it.project_work.app_arcade.dto.ProgressResponse;
-import it.project_work.app_arcade.models.User;
+import it.project_work.app_arcade.dto.ProgressSnapshot;
+import it.project_work.app_arcade.ingest.ScoreIngestionService;
+import it.project_work.app_arcade.leaderboard.LeaderboardEngine;
+import it.project_work.app_arcade.models.ScoreEvent;
 import it.project_work.app_arcade.models.UserGameProgress;
 import it.project_work.app_arcade.repositories.ProgressRepository;
+import it.project_work.app_arcade.repositories.ScoreEventRepository;
 import it.project_work.app_arcade.repositories.UserRepository;
 import it.project_work.app_arcade.utilities.LevelInfo;
 import it.project_work.app_arcade.utilities.Leveling;
@@ -15,76 +21,87 @@ import jakarta.transaction.Transactional;
 public class ProgressService extends GenericService<Long, UserGameProgress, ProgressRepository> {
 
     private final UserRepository userRepository;
+    private final LeaderboardEngine leaderboardEngine;
+    private final ScoreIngestionService scoreIngestionService;
+    private final ScoreEventRepository scoreEventRepository;
 
-    public ProgressService(UserRepository userRepository) {
+    public ProgressService(UserRepository userRepository, LeaderboardEngine leaderboardEngine,
+            ScoreIngestionService scoreIngestionService, ScoreEventRepository scoreEventRepository) {
         this.userRepository = userRepository;
+        this.leaderboardEngine = leaderboardEngine;
+        this.scoreIngestionService = scoreIngestionService;
+        this.scoreEventRepository = scoreEventRepository;
     }
 
     @Transactional
-    public ProgressResponse submitScore(String username, String gameCode, Integer scoreRun) {
-
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new IllegalArgumentException("Utente non trovato"));
+    public ProgressResponse submitScore(long userId, String gameCode, Integer scoreRun) {
 
         String code = gameCode.trim().toLowerCase();
-
-        UserGameProgress progress = getRepository()
-                .findByUserIdAndGameCode(user.getId(), code)
-                .orElseGet(() -> {
-                    UserGameProgress p = new UserGameProgress();
-                    p.setUser(user);
-                    p.setGameCode(code);
-                    return p;
-                });
-
         int score = (scoreRun == null) ? 0 : Math.max(0, scoreRun);
 
-        progress.setLastScore(score);
-        progress.setPlayedCount(progress.getPlayedCount() + 1);
-
-        if (score > progress.getBestScore()) {
-            progress.setBestScore(score);
+        // scritture atomiche lato DB, senza lettura prima: il livello lo calcola l'UPDATE.
+        // Prima users (0 righe = utente inesistente, niente da annullare), poi la riga del gioco
+        if (userRepository.addXp(userId, score) == 0) {
+            throw new IllegalArgumentException("Utente non trovato");
         }
+        getRepository().upsertRun(userId, code, score);
+        LocalDateTime playedAt = LocalDateTime.now();
+        scoreEventRepository.save(new ScoreEvent(userId, code, score, playedAt));
 
-        int oldLevel = (user.getLevel() == null) ? 1 : user.getLevel();
-        user.setXpTotal(user.getXpTotal() + score);
+        // stato dopo la partita: le due righe sono bloccate dalle scritture di questa
+        // transazione, quindi nessun altro submit può cambiarle fino al commit
+        ProgressSnapshot after = getRepository().findForUser(userId, code)
+                .orElseThrow(() -> new IllegalArgumentException("Utente non trovato"));
 
-        LevelInfo info = Leveling.fromTotalXp(user.getXpTotal());
-        user.setLevel(info.level());
+        int best = after.bestScore();
+        int played = after.playedCount();
+        long xpTotal = after.xpTotal();
+        LevelInfo info = Leveling.fromTotalXp(xpTotal);
+        int oldLevel = Leveling.levelOf(xpTotal - score);
 
-        UserGameProgress saved = getRepository().save(progress);
-        userRepository.save(user);
+        // aggiorna le classifiche in memoria (applicato dopo il commit)
+        leaderboardEngine.recordScore(userId, code, best, played, info.level());
+        leaderboardEngine.recordRun(userId, code, score, playedAt);
 
         return new ProgressResponse(
-                saved.getBestScore(),
-                saved.getLastScore(),
-                user.getXpTotal(),
-                user.getLevel(),
-                user.getLevel() > oldLevel,
+                best,
+                score,
+                xpTotal,
+                info.level(),
+                info.level() > oldLevel,
                 info.xpIntoLevel(),
                 info.xpToNext()
         );
     }
 
     @Transactional
-    public ProgressResponse getProgress(String username, String gameCode) {
-
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new IllegalArgumentException("Utente non trovato"));
+    public ProgressResponse getProgress(long userId, String gameCode) {
 
         String code = (gameCode == null) ? "" : gameCode.trim().toLowerCase();
         if (code.isEmpty()) {
             throw new IllegalArgumentException("gameCode richiesto");
         }
 
-        UserGameProgress progress = getRepository()
-                .findByUserIdAndGameCode(user.getId(), code)
-                .orElse(null);
+        // in modalità batched/log le ultime partite possono non essere ancora sul DB
+        if (scoreIngestionService.isEnabled()) {
+            var live = scoreIngestionService.peek(userId, code);
+            if (live.isPresent()) {
+                return live.get();
+            }
+            // modalità log: gli aggregati possono essere indietro rispetto a score_events
+            if (scoreIngestionService.isLogMode()) {
+                return scoreIngestionService.load(userId, code);
+            }
+        }
+
+        // utente + riga del gioco in una query, senza entity
+        ProgressSnapshot snap = getRepository().findForUser(userId, code)
+                .orElseThrow(() -> new IllegalArgumentException("Utente non trovato"));
 
-        int best = (progress != null && progress.getBestScore() != null) ? progress.getBestScore() : 0;
-        int last = (progress != null && progress.getLastScore() != null) ? progress.getLastScore() : 0;
+        int best = snap.bestScore() != null ? snap.bestScore() : 0;
+        int last = snap.lastScore() != null ? snap.lastScore() : 0;
 
-        long xpTotal = user.getXpTotal(); // ✅ primitive, mai null
+        long xpTotal = snap.xpTotal(); // ✅ primitive, mai null
 
         LevelInfo info = Leveling.fromTotalXp(xpTotal);
 
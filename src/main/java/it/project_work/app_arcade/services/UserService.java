@@ -1,7 +1,6 @@
 package it.project_work.app_arcade.services;
 
-import java.util.List;
-
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
@@ -9,55 +8,66 @@ import it.project_work.app_arcade.dto.ChangePasswordRequest;
 import it.project_work.app_arcade.dto.MeResponse;
 import it.project_work.app_arcade.exceptions.BadRequestException;
 import it.project_work.app_arcade.exceptions.ConflictException;
+import it.project_work.app_arcade.ingest.ScoreIngestionService;
+import it.project_work.app_arcade.leaderboard.LeaderboardEngine;
 import it.project_work.app_arcade.models.User;
-import it.project_work.app_arcade.models.UserGameProgress;
-import it.project_work.app_arcade.repositories.AvatarRepository;
 import it.project_work.app_arcade.repositories.ProgressRepository;
+import it.project_work.app_arcade.repositories.ScoreEventRepository;
 import it.project_work.app_arcade.repositories.UserRepository;
 import jakarta.transaction.Transactional;
 
 @Service
 public class UserService extends GenericService<Long, User, UserRepository> {
 
-    private final AvatarRepository avatarRepository;
-
     private final ProgressRepository progressRepository;
 
     private final PasswordEncoder passwordEncoder;
 
-    public UserService(AvatarRepository avatarRepository,
-            ProgressRepository progressRepository, PasswordEncoder passwordEncoder) {
-        this.avatarRepository = avatarRepository;
+    private final LeaderboardEngine leaderboardEngine;
+
+    private final ScoreIngestionService scoreIngestionService;
+
+    private final AvailabilityService availabilityService;
+
+    private final ScoreEventRepository scoreEventRepository;
+
+    private final AvatarRegistry avatarRegistry;
+
+    public UserService(ProgressRepository progressRepository, PasswordEncoder passwordEncoder,
+            LeaderboardEngine leaderboardEngine, ScoreIngestionService scoreIngestionService,
+            AvailabilityService availabilityService, ScoreEventRepository scoreEventRepository,
+            AvatarRegistry avatarRegistry) {
+        this.avatarRegistry = avatarRegistry;
         this.progressRepository = progressRepository;
+        this.scoreEventRepository = scoreEventRepository;
         this.passwordEncoder = passwordEncoder;
+        this.leaderboardEngine = leaderboardEngine;
+        this.scoreIngestionService = scoreIngestionService;
+        this.availabilityService = availabilityService;
     }
 
-    public MeResponse me(Long userId) {
-        User user = getRepository().findById(userId)
+    // profilo + punteggi flappy con una sola query (DTO, niente entity né lazy load)
+    public MeResponse me(long userId) {
+        return getRepository().findMe(userId, "flappy")
                 .orElseThrow(() -> new IllegalArgumentException("Utente non trovato"));
-        List<UserGameProgress> progress = progressRepository.findByUserId(userId);
-        return MeResponse.fromEntity(user, progress.stream()
-                .filter(p -> "FLAPPY".equalsIgnoreCase(p.getGameCode()))
-                .findFirst()
-                .orElse(null));
     }
 
     @Transactional
-    public MeResponse updateAvatar(Long userId, Long avatarId) {
-        User user = getRepository().findById(userId)
-                .orElseThrow(() -> new IllegalArgumentException("Utente non trovato"));
-        user.setSelectedAvatar(avatarRepository.findById(avatarId)
-                .orElseThrow(() -> new IllegalArgumentException("Avatar non trovato")));
-        List<UserGameProgress> progress = progressRepository.findByUserId(userId);
-        return MeResponse.fromEntity(getRepository().save(user), progress.stream()
-                .filter(p -> p.getGameCode().equals("flappy"))
-                .findFirst()
-                .orElse(null));
+    public MeResponse updateAvatar(long userId, Long avatarId) {
+        var avatar = avatarRegistry.find(avatarId)
+                .orElseThrow(() -> new IllegalArgumentException("Avatar non trovato"));
+
+        if (getRepository().updateSelectedAvatar(userId, avatar.id()) == 0) {
+            throw new IllegalArgumentException("Utente non trovato");
+        }
+        leaderboardEngine.changeAvatar(userId, avatar.imageUrl());
+
+        return me(userId);
     }
 
     @Transactional
-    public void updateUsername(String currentUsername, String newUsername) {
-        User user = getRepository().findByUsername(currentUsername)
+    public void updateUsername(long userId, String newUsername) {
+        User user = getRepository().findById(userId)
                 .orElseThrow(() -> new BadRequestException("USER_NOT_FOUND", "Utente non trovato"));
 
         String clean = newUsername != null ? newUsername.trim() : "";
@@ -66,17 +76,25 @@ public class UserService extends GenericService<Long, User, UserRepository> {
             throw new BadRequestException("USERNAME_SAME", "Stai già usando questo username");
         }
 
-        if (getRepository().existsByUsername(clean)) {
+        if (!availabilityService.isUsernameAvailable(clean)) {
             throw new ConflictException("USERNAME_TAKEN", "Username già in uso");
         }
 
+        String old = user.getUsername();
+        availabilityService.reserve(clean, null);
         user.setUsername(clean);
-        getRepository().save(user);
+        try {
+            getRepository().saveAndFlush(user);
+        } catch (DataIntegrityViolationException ex) {
+            throw new ConflictException("USERNAME_TAKEN", "Username già in uso");
+        }
+        availabilityService.release(old, null);
+        leaderboardEngine.renamePlayer(user.getId(), clean);
     }
 
     @Transactional
-    public void updatePassword(String username, ChangePasswordRequest dto) {
-        User user = getRepository().findByUsername(username)
+    public void updatePassword(long userId, ChangePasswordRequest dto) {
+        User user = getRepository().findById(userId)
                 .orElseThrow(() -> new BadRequestException("USER_NOT_FOUND", "Utente non trovato"));
 
         if (!dto.newPassword().equals(dto.newPasswordConfirm())) {
@@ -91,48 +109,21 @@ public class UserService extends GenericService<Long, User, UserRepository> {
         getRepository().save(user);
     }
 
-    public MeResponse meByUsername(String username) {
-        User user = getRepository().findByUsername(username)
-                .orElseThrow(() -> new IllegalArgumentException("Utente non trovato"));
-
-        UserGameProgress flappy = progressRepository.findByUserId(user.getId()).stream()
-                .filter(p -> "flappy".equalsIgnoreCase(p.getGameCode()))
-                .findFirst()
-                .orElse(null);
-
-        return MeResponse.fromEntity(user, flappy);
-    }
-
     @Transactional
-    public MeResponse updateAvatarByUsername(String username, Long avatarId) {
-        User user = getRepository().findByUsername(username)
-                .orElseThrow(() -> new IllegalArgumentException("Utente non trovato"));
-
-        var avatar = avatarRepository.findById(avatarId)
-                .orElseThrow(() -> new IllegalArgumentException("Avatar non trovato"));
-
-        user.setSelectedAvatar(avatar);
-        User saved = getRepository().save(user);
-
-        UserGameProgress flappy = progressRepository.findByUserId(saved.getId()).stream()
-                .filter(p -> "flappy".equalsIgnoreCase(p.getGameCode()))
-                .findFirst()
-                .orElse(null);
-
-        return MeResponse.fromEntity(saved, flappy);
-    }
-
-    @Transactional
-    public void deleteUser(String username) {
-        User user = getRepository().findByUsername(username)
+    public void deleteUser(long userId) {
+        User user = getRepository().findById(userId)
                 .orElseThrow(() -> new IllegalArgumentException("Utente non trovato"));
 
-        Long userId = user.getId();
+        // partite ancora in coda (modalità batched): non vanno più scritte
+        scoreIngestionService.forget(userId);
 
-        // cancella dipendenze (progress)
+        // cancella dipendenze (progress, storico partite)
         progressRepository.deleteAllByUserId(userId);
+        scoreEventRepository.deleteAllByUserId(userId);
 
         // cancella l’utente
         getRepository().delete(user);
+        availabilityService.release(user.getUsername(), user.getEmail());
+        leaderboardEngine.removePlayer(userId);
     }
 }
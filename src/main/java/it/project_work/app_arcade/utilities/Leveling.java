@@ -1,29 +1,81 @@
 package it.project_work.app_arcade.utilities;
 
+import java.util.Arrays;
+
 public final class Leveling {
 
+    private static final long BASE_TO_NEXT = 1000; // XP per passare 1->2, poi raddoppia
+
+    // START[i] = XP totali con cui si entra nel livello i+1, TO_NEXT[i] = XP per passare al successivo
+    private static final long[] START;
+    private static final long[] TO_NEXT;
+
+    static {
+        // tabella costruita con la stessa regola del vecchio ciclo (raddoppio, tetto a Long.MAX_VALUE)
+        long[] start = new long[64];
+        long[] toNext = new long[64];
+        int n = 0;
+        long cum = 0;
+        long step = BASE_TO_NEXT;
+        start[n] = cum;
+        toNext[n++] = step;
+        while (cum <= Long.MAX_VALUE - step) { // il livello successivo è raggiungibile
+            cum += step;
+            if (step > Long.MAX_VALUE / 2) {
+                step = Long.MAX_VALUE;
+            } else {
+                step *= 2;
+            }
+            start[n] = cum;
+            toNext[n++] = step;
+            if (step == Long.MAX_VALUE) {
+                break;
+            }
+        }
+        START = Arrays.copyOf(start, n);
+        TO_NEXT = Arrays.copyOf(toNext, n);
+    }
+
     private Leveling() {
     }
 
     public static LevelInfo fromTotalXp(long xpTotal) {
         long xp = Math.max(0, xpTotal);
+        int i = indexOf(xp);
 
-        int lvl = 1;
-        long toNext = 1000; // 1->2
+        // xp - START[i] = XP dentro il livello corrente
+        // TO_NEXT[i] = XP necessari per passare al prossimo livello
+        return new LevelInfo(i + 1, xp - START[i], TO_NEXT[i]);
+    }
 
-        while (xp >= toNext) {
-            xp -= toNext;
-            lvl++;
-            
-            if (toNext > Long.MAX_VALUE / 2) {
-                toNext = Long.MAX_VALUE;
-                break;
-            }
-            toNext *= 2; // raddoppia
+    // solo il livello, senza allocare
+    public static int levelOf(long xpTotal) {
+        return indexOf(Math.max(0, xpTotal)) + 1;
+    }
+
+    // versione bulk: levels[k] = livello di xpTotals[k] (nessun LevelInfo per elemento)
+    public static void levelsOf(long[] xpTotals, int[] levels) {
+        if (levels.length < xpTotals.length) {
+            throw new IllegalArgumentException("levels più corto di xpTotals");
         }
+        for (int k = 0; k < xpTotals.length; k++) {
+            levels[k] = indexOf(Math.max(0, xpTotals[k])) + 1;
+        }
+    }
 
-        // xp = XP dentro il livello corrente
-        // toNext = XP necessari per passare al prossimo livello
-        return new LevelInfo(lvl, xp, toNext);
+    /*
+     * Con step che raddoppia si entra nel livello m+1 a BASE * (2^m - 1) XP,
+     * quindi m = floor(log2(xp / BASE + 1)): un numberOfLeadingZeros.
+     * La tabella resta la fonte di verità, il piccolo aggiustamento copre i bordi.
+     */
+    private static int indexOf(long xp) {
+        int i = Math.min(63 - Long.numberOfLeadingZeros(xp / BASE_TO_NEXT + 1), START.length - 1);
+        while (i > 0 && xp < START[i]) {
+            i--;
+        }
+        while (i + 1 < START.length && xp >= START[i + 1]) {
+            i++;
+        }
+        return i;
     }
 }
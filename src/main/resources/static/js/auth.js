@@ -117,6 +117,33 @@
     }
 
 
+    // ---------------- Disponibilità username/email (al blur) ----------------
+    function setupAvailabilityCheck(inputId, param, re, takenMessage) {
+        const input = document.getElementById(inputId);
+        if (!input) return;
+
+        input.addEventListener("blur", async () => {
+            const value = input.value.trim().toLowerCase();
+            if (!re.test(value)) return; // formato sbagliato: ci pensa la validazione al submit
+            try {
+                const res = await api.get(`/auth/availability?${param}=${encodeURIComponent(value)}`);
+                const available = param === "username" ? res?.data?.usernameAvailable : res?.data?.emailAvailable;
+                if (input.value.trim().toLowerCase() !== value) return; // nel frattempo è cambiato
+                if (available === false) {
+                    setFieldErrorById(inputId, takenMessage);
+                } else {
+                    const p = fieldErrorElById(inputId);
+                    if (p) { p.textContent = ""; p.hidden = true; }
+                    input.classList.remove("is-invalid");
+                    input.removeAttribute("aria-invalid");
+                }
+            } catch {
+                // solo un aiuto: in caso di errore (es. 429) decide il submit
+            }
+        });
+    }
+
+
     // ---------------- Toggle password ----------------
     function setupPasswordToggle(btnSelector, inputSelector) {
         const btn = $(btnSelector);
@@ -408,6 +435,8 @@
         setupPasswordToggle("#toggle-reg-password", "#reg-password");
 
         loadAvatarsIntoRegister();
+        setupAvailabilityCheck("reg-username", "username", USERNAME_RE, "Username già in uso");
+        setupAvailabilityCheck("reg-email", "email", EMAIL_RE, "Email già in uso");
         // switch
         setupAuthSwitch();
 
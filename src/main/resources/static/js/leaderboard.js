@@ -27,6 +27,15 @@ document.addEventListener("DOMContentLoaded", async () => {
             `/api/leaderboard/game/${encodeURIComponent(gameCode)}?limit=${limit}`,
     };
 
+    // classifica live (SSE): stesso formato righe delle GET
+    const STREAM = (scope, gameCode) =>
+        scope === "GLOBAL"
+            ? "/api/leaderboard/stream"
+            : `/api/leaderboard/stream?game=${encodeURIComponent(gameCode)}`;
+
+    let liveSource = null;
+    let liveRows = [];
+
     // helpers
     const show = (el) => (el.hidden = false);
     const hide = (el) => (el.hidden = true);
@@ -170,17 +179,8 @@ document.addEventListener("DOMContentLoaded", async () => {
             // GLOBAL => array
             // GAME   => { rows: [...] }
             const rows = Array.isArray(payload) ? payload : (payload?.rows ?? []);
-            renderPodium(scope, rows);
-
-            if (rows.length === 0) {
-                setStatus({ loading: false, empty: true, error: "" });
-                podium && (podium.hidden = true);
-                return;
-            }
-
-            rows.forEach((r, idx) => renderRow(idx + 1, scope, r));
-            setStatus({ loading: false, empty: false, error: "" });
-            stampUpdated();
+            renderRows(scope, rows);
+            openLive(scope, gameCode);
         } catch (err) {
             console.error("Leaderboard load failed", err);
             setStatus({
@@ -191,6 +191,42 @@ document.addEventListener("DOMContentLoaded", async () => {
         }
     }
 
+    function renderRows(scope, rows) {
+        clearTable();
+        renderPodium(scope, rows);
+
+        if (rows.length === 0) {
+            setStatus({ loading: false, empty: true, error: "" });
+            podium && (podium.hidden = true);
+            return;
+        }
+
+        rows.forEach((r, idx) => renderRow(idx + 1, scope, r));
+        setStatus({ loading: false, empty: false, error: "" });
+        stampUpdated();
+    }
+
+    // "snapshot" e "diff" hanno lo stesso formato: { size, changes: [{ rank, row }] }
+    function openLive(scope, gameCode) {
+        liveSource?.close();
+        liveSource = null;
+        if (!("EventSource" in window)) return;
+
+        liveSource = new EventSource(STREAM(scope, gameCode));
+
+        const apply = (reset) => (ev) => {
+            const diff = JSON.parse(ev.data);
+            if (reset) liveRows = [];
+            (diff.changes ?? []).forEach((c) => (liveRows[c.rank - 1] = c.row));
+            liveRows.length = diff.size ?? liveRows.length;
+            renderRows(scope, liveRows);
+        };
+
+        liveSource.addEventListener("snapshot", apply(true));
+        liveSource.addEventListener("diff", apply(false));
+        // in caso di errore EventSource si riconnette da solo (e riceve un nuovo snapshot)
+    }
+
     function syncScopeUI() {
         const isGame = scopeSelect.value === "GAME";
         gameWrap.hidden = !isGame;
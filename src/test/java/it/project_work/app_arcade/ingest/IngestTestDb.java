@@ -0,0 +1,122 @@
+package it.project_work.app_arcade.ingest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sql.DataSource;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * H2 in memoria con le sole tabelle toccate da ingestione e compattatore.
+ *
+ * H2 non conosce l'upsert MySQL con alias (VALUES ... AS new): jdbc lo
+ * esegue come UPDATE + INSERT con la stessa semantica. Con failing (o un
+ * utente in failingUsers) le scritture falliscono come con il DB giù.
+ */
+final class IngestTestDb {
+
+    final DataSource dataSource;
+    final DataSourceTransactionManager transactionManager;
+    final Jdbc jdbc;
+
+    IngestTestDb() {
+        dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:ingest-" + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbc = new Jdbc(dataSource);
+        jdbc.execute("""
+                CREATE TABLE users (
+                    id BIGINT PRIMARY KEY,
+                    xp_total BIGINT NOT NULL DEFAULT 0,
+                    level INT NOT NULL DEFAULT 1,
+                    updated_at TIMESTAMP
+                )""");
+        jdbc.execute("""
+                CREATE TABLE user_game_progress (
+                    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                    user_id BIGINT NOT NULL,
+                    game_code VARCHAR(20) NOT NULL,
+                    best_score INT NOT NULL,
+                    last_score INT NOT NULL,
+                    played_count INT NOT NULL,
+                    updated_at TIMESTAMP,
+                    UNIQUE (user_id, game_code)
+                )""");
+        jdbc.execute("""
+                CREATE TABLE score_events (
+                    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                    user_id BIGINT NOT NULL,
+                    game_code VARCHAR(20) NOT NULL,
+                    score INT NOT NULL,
+                    played_at TIMESTAMP NOT NULL,
+                    folded BOOLEAN NOT NULL
+                )""");
+        jdbc.execute("CREATE TABLE score_event_compaction (id INT PRIMARY KEY, last_event_id BIGINT NOT NULL)");
+    }
+
+    void addUser(long id) {
+        jdbc.update("INSERT INTO users (id) VALUES (?)", id);
+    }
+
+    static final class Jdbc extends JdbcTemplate {
+
+        volatile boolean failing;
+        final Set<Long> failingUsers = ConcurrentHashMap.newKeySet();
+
+        Jdbc(DataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        public int[] batchUpdate(String sql, List<Object[]> args) {
+            // user_id è il primo parametro di insert/upsert e l'ultimo di ADD_XP_SQL
+            for (Object[] row : args) {
+                Object userId = sql.equals(ScoreIngestionService.ADD_XP_SQL) ? row[row.length - 1] : row[0];
+                if (failing || failingUsers.contains((Long) userId)) {
+                    throw new DataAccessResourceFailureException("DB non raggiungibile (test)");
+                }
+            }
+            if (!sql.equals(ScoreIngestionService.UPSERT_PROGRESS_SQL)) {
+                return super.batchUpdate(sql, args);
+            }
+            for (Object[] r : args) {
+                int n = update("""
+                        UPDATE user_game_progress
+                        SET best_score = GREATEST(best_score, ?), last_score = ?,
+                            played_count = played_count + ?, updated_at = ?
+                        WHERE user_id = ? AND game_code = ?
+                        """, r[2], r[3], r[4], r[5], r[0], r[1]);
+                if (n == 0) {
+                    update("""
+                            INSERT INTO user_game_progress (user_id, game_code, best_score, last_score, played_count, updated_at)
+                            VALUES (?, ?, ?, ?, ?, ?)
+                            """, r);
+                }
+            }
+            return new int[args.size()];
+        }
+
+        // {best, last, played} dalla tabella aggregata, null se non c'è la riga
+        int[] progress(long userId, String gameCode) {
+            List<int[]> rows = query(
+                    "SELECT best_score, last_score, played_count FROM user_game_progress WHERE user_id = ? AND game_code = ?",
+                    (rs, i) -> new int[]{rs.getInt(1), rs.getInt(2), rs.getInt(3)}, userId, gameCode);
+            return rows.isEmpty() ? null : rows.get(0);
+        }
+
+        Map<String, Object> user(long userId) {
+            return queryForMap("SELECT xp_total, level FROM users WHERE id = ?", userId);
+        }
+
+        List<Integer> eventScores(long userId) {
+            return queryForList("SELECT score FROM score_events WHERE user_id = ? ORDER BY id", Integer.class, userId);
+        }
+    }
+}
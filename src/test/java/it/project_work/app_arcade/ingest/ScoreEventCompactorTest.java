@@ -0,0 +1,167 @@
+package it.project_work.app_arcade.ingest;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+import it.project_work.app_arcade.dto.ProgressResponse;
+import it.project_work.app_arcade.leaderboard.LeaderboardEngine;
+import it.project_work.app_arcade.utilities.Leveling;
+
+/**
+ * Modalità log su H2: prima della compattazione il progresso letto è
+ * aggregati + eventi non compattati, dopo è lo stesso ma tutto negli
+ * aggregati; ogni evento viene contato una volta sola, anche rieseguendo
+ * la compattazione, e lo stop (ingestione poi compattatore) non lascia
+ * eventi indietro.
+ */
+class ScoreEventCompactorTest {
+
+    private final IngestTestDb db = new IngestTestDb();
+
+    private final ScoreIngestionService ingest = new ScoreIngestionService("log", 500, 60_000, 1000, db.jdbc,
+            db.transactionManager, new LeaderboardEngine(null, null, null, e -> {
+            }));
+
+    // batch da 2 eventi: la compattazione fa più giri, uno per transazione
+    private ScoreEventCompactor compactor(long intervalMs) {
+        return new ScoreEventCompactor("log", intervalMs, 0, 2, db.jdbc, db.transactionManager);
+    }
+
+    private long maxEventId() {
+        return db.jdbc.queryForObject("SELECT COALESCE(MAX(id), 0) FROM score_events", Long.class);
+    }
+
+    private long mark() {
+        return db.jdbc.queryForObject("SELECT last_event_id FROM score_event_compaction WHERE id = 1", Long.class);
+    }
+
+    private long xp(long userId) {
+        return ((Number) db.jdbc.user(userId).get("xp_total")).longValue();
+    }
+
+    @Test
+    void viewIsAggregatesPlusTailBeforeAndAfterCompaction() {
+        db.addUser(1);
+        db.jdbc.update(ScoreEventCompactor.INIT_SQL);
+        ScoreEventCompactor compactor = compactor(60_000);
+        ingest.start();
+        try {
+            ingest.submit(1, "flappy", 700);
+            ingest.submit(1, "flappy", 500);
+            ingest.submit(1, "snake", 30);
+            ingest.flushNow();
+
+            // solo eventi: aggregati ancora vuoti, la vista li somma
+            assertNull(db.jdbc.progress(1, "flappy"));
+            assertEquals(0, xp(1));
+            ProgressResponse before = ingest.load(1, "flappy");
+            assertEquals(new ProgressResponse(700, 500, 1230L, 2, false, 230L, 2000L), before);
+
+            assertEquals(3, compactor.compactUpTo(maxEventId()));
+            assertEquals(maxEventId(), mark());
+            assertArrayEquals(new int[]{700, 500, 2}, db.jdbc.progress(1, "flappy"));
+            assertArrayEquals(new int[]{30, 30, 1}, db.jdbc.progress(1, "snake"));
+            assertEquals(1230, xp(1));
+            assertEquals(Leveling.levelOf(1230), ((Number) db.jdbc.user(1).get("level")).intValue());
+            // stesso progresso, ora tutto dagli aggregati
+            assertEquals(before, ingest.load(1, "flappy"));
+
+            // rieseguire non ricalcola niente
+            assertEquals(0, compactor.compactUpTo(maxEventId()));
+            assertEquals(1230, xp(1));
+
+            // un evento nuovo: aggregati invariati, la vista aggiunge solo la coda
+            ingest.submit(1, "flappy", 100);
+            ingest.flushNow();
+            assertArrayEquals(new int[]{700, 500, 2}, db.jdbc.progress(1, "flappy"));
+            ProgressResponse tail = ingest.load(1, "flappy");
+            assertEquals(700, tail.bestScore());
+            assertEquals(100, tail.lastScore());
+            assertEquals(1330L, tail.xpTotal());
+
+            assertEquals(1, compactor.compactUpTo(maxEventId()));
+            assertArrayEquals(new int[]{700, 100, 3}, db.jdbc.progress(1, "flappy"));
+            assertEquals(tail, ingest.load(1, "flappy"));
+        } finally {
+            ingest.stop();
+        }
+    }
+
+    @Test
+    void compactionStopsAtTheGivenEventId() {
+        db.addUser(1);
+        db.jdbc.update(ScoreEventCompactor.INIT_SQL);
+        ingest.start();
+        try {
+            for (int score : new int[]{10, 20, 30, 40, 50}) {
+                ingest.submit(1, "flappy", score);
+            }
+            ingest.flushNow();
+        } finally {
+            ingest.stop();
+        }
+        long first = maxEventId() - 4;
+
+        // solo i primi tre: gli altri restano nella coda della vista
+        assertEquals(3, compactor(60_000).compactUpTo(first + 2));
+        assertEquals(first + 2, mark());
+        assertArrayEquals(new int[]{30, 30, 3}, db.jdbc.progress(1, "flappy"));
+        assertEquals(60, xp(1));
+        ProgressResponse view = ingest.load(1, "flappy");
+        assertEquals(50, view.bestScore());
+        assertEquals(150L, view.xpTotal());
+    }
+
+    @Test
+    void eventsOfDeletedUsersAreSkipped() {
+        db.addUser(1);
+        db.addUser(2);
+        db.jdbc.update(ScoreEventCompactor.INIT_SQL);
+        ingest.start();
+        try {
+            ingest.submit(1, "flappy", 10);
+            ingest.submit(2, "flappy", 20);
+            ingest.flushNow();
+        } finally {
+            ingest.stop();
+        }
+        db.jdbc.update("DELETE FROM users WHERE id = 2");
+
+        assertEquals(2, compactor(60_000).compactUpTo(maxEventId()));
+        assertEquals(maxEventId(), mark());
+        assertArrayEquals(new int[]{10, 10, 1}, db.jdbc.progress(1, "flappy"));
+        assertNull(db.jdbc.progress(2, "flappy"));
+    }
+
+    @Test
+    void stopSequenceLeavesNothingBehind() {
+        for (long u = 1; u <= 3; u++) {
+            db.addUser(u);
+        }
+        ScoreEventCompactor compactor = compactor(20);
+        // stesso ordine del contesto: il compattatore parte prima e si ferma dopo
+        compactor.start();
+        ingest.start();
+
+        long[] expectedXp = new long[4];
+        for (int k = 0; k < 30; k++) {
+            long u = 1 + k % 3;
+            ingest.submit(u, "flappy", k);
+            expectedXp[(int) u] += k;
+        }
+        ingest.stop();
+        compactor.stop();
+
+        assertEquals(0, ingest.pendingRuns());
+        assertEquals(maxEventId(), mark());
+        for (long u = 1; u <= 3; u++) {
+            assertEquals(expectedXp[(int) u], xp(u));
+            int[] progress = db.jdbc.progress(u, "flappy");
+            assertEquals(10, progress[2]);
+            assertEquals(26 + u, progress[1]); // ultima partita dell'utente
+        }
+    }
+}
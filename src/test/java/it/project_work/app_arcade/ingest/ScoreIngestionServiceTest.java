@@ -0,0 +1,181 @@
+package it.project_work.app_arcade.ingest;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import it.project_work.app_arcade.dto.ProgressResponse;
+import it.project_work.app_arcade.exceptions.ServiceUnavailableException;
+import it.project_work.app_arcade.leaderboard.LeaderboardEngine;
+
+/**
+ * Ingestione batched su H2: i delta arrivano su DB una volta sola e in
+ * ordine anche quando il flush fallisce, un utente che non si riesce a
+ * scrivere non blocca gli altri, la coda piena rifiuta con 503 e lo stop
+ * svuota tutto (anche gli utenti in backoff).
+ */
+class ScoreIngestionServiceTest {
+
+    private final IngestTestDb db = new IngestTestDb();
+    private ScoreIngestionService ingest;
+
+    private ScoreIngestionService start(long flushIntervalMs, int maxPending) {
+        ingest = new ScoreIngestionService("batched", 500, flushIntervalMs, maxPending, db.jdbc,
+                db.transactionManager, new LeaderboardEngine(null, null, null, e -> {
+                }));
+        ingest.start();
+        return ingest;
+    }
+
+    @AfterEach
+    void stop() {
+        if (ingest != null) {
+            ingest.stop();
+        }
+    }
+
+    // flush ripetuti finché la coda non è vuota (i retry aspettano il backoff)
+    private void awaitDrained() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (ingest.pendingRuns() > 0 && System.currentTimeMillis() < deadline) {
+            ingest.flushNow();
+            Thread.sleep(10);
+        }
+        assertEquals(0, ingest.pendingRuns());
+    }
+
+    @Test
+    void flushMergesRunsIntoOneRowPerGame() {
+        start(60_000, 100);
+        db.addUser(1);
+        ingest.submit(1, "flappy", 100);
+        ingest.submit(1, " Flappy ", 300);
+        ProgressResponse last = ingest.submit(1, "flappy", 200);
+        assertEquals(new ProgressResponse(300, 200, 600L, 1, false, 600L, 1000L), last);
+        assertEquals(3, ingest.pendingRuns());
+
+        // prima del flush su DB non c'è niente, ma la risposta live sì
+        assertNull(db.jdbc.progress(1, "flappy"));
+        assertEquals(300, ingest.peek(1, "flappy").orElseThrow().bestScore());
+
+        ingest.flushNow();
+        assertEquals(0, ingest.pendingRuns());
+        assertArrayEquals(new int[]{300, 200, 3}, db.jdbc.progress(1, "flappy"));
+        assertEquals(600L, ((Number) db.jdbc.user(1).get("xp_total")).longValue());
+        assertEquals(List.of(100, 300, 200), db.jdbc.eventScores(1));
+        // stato committato: esce dalla memoria, la prossima partita riparte dal DB
+        assertTrue(ingest.peek(1, "flappy").isEmpty());
+
+        ProgressResponse next = ingest.submit(1, "flappy", 900);
+        assertEquals(1500L, next.xpTotal());
+        assertEquals(2, next.level());
+        assertTrue(next.leveledUp());
+    }
+
+    @Test
+    void failedFlushRequeuesWithoutLosingRuns() throws InterruptedException {
+        start(20, 100);
+        db.addUser(1);
+        db.jdbc.failing = true;
+
+        ingest.submit(1, "flappy", 100);
+        ingest.submit(1, "flappy", 300);
+        ingest.submit(1, "snake", 50);
+        ingest.flushNow();
+        assertEquals(3, ingest.pendingRuns());
+        assertNull(db.jdbc.progress(1, "flappy"));
+        assertEquals(List.of(), db.jdbc.eventScores(1));
+
+        // con il DB giù le risposte restano calcolate sullo stato completo
+        ProgressResponse r = ingest.submit(1, "flappy", 200);
+        assertEquals(300, r.bestScore());
+        assertEquals(200, r.lastScore());
+        assertEquals(650L, r.xpTotal());
+        assertEquals(4, ingest.pendingRuns());
+
+        db.jdbc.failing = false;
+        awaitDrained();
+        // i delta rimessi in coda si fondono con quelli nuovi: ultimo punteggio = partita più recente
+        assertArrayEquals(new int[]{300, 200, 3}, db.jdbc.progress(1, "flappy"));
+        assertArrayEquals(new int[]{50, 50, 1}, db.jdbc.progress(1, "snake"));
+        assertEquals(650L, ((Number) db.jdbc.user(1).get("xp_total")).longValue());
+        assertEquals(List.of(100, 300, 50, 200), db.jdbc.eventScores(1));
+    }
+
+    @Test
+    void failingUserDoesNotBlockOthers() throws InterruptedException {
+        start(20, 100);
+        for (long u = 1; u <= 3; u++) {
+            db.addUser(u);
+        }
+        db.jdbc.failingUsers.add(2L);
+
+        ingest.submit(1, "flappy", 10);
+        ingest.submit(2, "flappy", 20);
+        ingest.submit(3, "flappy", 30);
+        ingest.flushNow();
+
+        assertArrayEquals(new int[]{10, 10, 1}, db.jdbc.progress(1, "flappy"));
+        assertArrayEquals(new int[]{30, 30, 1}, db.jdbc.progress(3, "flappy"));
+        assertNull(db.jdbc.progress(2, "flappy"));
+        assertEquals(1, ingest.pendingRuns());
+
+        db.jdbc.failingUsers.clear();
+        awaitDrained();
+        assertArrayEquals(new int[]{20, 20, 1}, db.jdbc.progress(2, "flappy"));
+        assertEquals(List.of(20), db.jdbc.eventScores(2));
+    }
+
+    @Test
+    void fullQueueRejectsWithRetryAfter() {
+        start(60_000, 2);
+        db.addUser(1);
+        db.jdbc.failing = true;
+
+        ingest.submit(1, "flappy", 10);
+        ingest.submit(1, "flappy", 20);
+        ServiceUnavailableException ex = assertThrows(ServiceUnavailableException.class,
+                () -> ingest.submit(1, "flappy", 30));
+        assertEquals("SCORE_QUEUE_FULL", ex.getCode());
+        assertEquals(120, ex.retryAfterSeconds); // 2 intervalli di flush
+        // la partita rifiutata non è stata contata
+        assertEquals(2, ingest.pendingRuns());
+        assertEquals(30L, ingest.peek(1, "flappy").orElseThrow().xpTotal());
+    }
+
+    @Test
+    void stopDrainsQueueIncludingUsersInBackoff() {
+        start(60_000, 100);
+        db.addUser(1);
+        db.addUser(2);
+
+        db.jdbc.failing = true;
+        ingest.submit(1, "flappy", 40);
+        ingest.flushNow(); // fallisce: utente 1 in backoff per 60 s
+        db.jdbc.failing = false;
+        ingest.submit(2, "flappy", 70);
+        ingest.flushNow();
+        assertEquals(1, ingest.pendingRuns());
+        assertNull(db.jdbc.progress(1, "flappy"));
+
+        ingest.stop();
+        assertFalse(ingest.isRunning());
+        assertEquals(0, ingest.pendingRuns());
+        assertArrayEquals(new int[]{40, 40, 1}, db.jdbc.progress(1, "flappy"));
+        assertArrayEquals(new int[]{70, 70, 1}, db.jdbc.progress(2, "flappy"));
+
+        // dopo lo stop le partite si rifiutano invece di restare in una coda che nessuno svuota
+        ServiceUnavailableException ex = assertThrows(ServiceUnavailableException.class,
+                () -> ingest.submit(1, "flappy", 10));
+        assertEquals("SCORE_QUEUE_FULL", ex.getCode());
+        assertEquals(List.of(40), db.jdbc.eventScores(1));
+    }
+}
@@ -0,0 +1,162 @@
+package it.project_work.app_arcade.leaderboard;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Invalidazione della cache guidata dagli eventi del motore: un
+ * caricamento iniziato prima di un cambiamento e finito dopo non deve
+ * rimettere in cache righe vecchie; un cambiamento fuori dalla top-K o su
+ * un altro gioco non deve costare un miss.
+ */
+class CaffeineLeaderboardCacheTest {
+
+    private final AtomicReference<CaffeineLeaderboardCache> cacheRef = new AtomicReference<>();
+    // gli eventi arrivano alla cache come farebbe il publisher di Spring (stesso thread)
+    private final LeaderboardEngine engine = new LeaderboardEngine(null, null, null,
+            e -> cacheRef.get().onLeaderboardChanged((LeaderboardChangedEvent) e));
+    private final CaffeineLeaderboardCache cache = new CaffeineLeaderboardCache(engine, 30, 100);
+    private final ExecutorService loaders = Executors.newSingleThreadExecutor();
+
+    {
+        cacheRef.set(cache);
+    }
+
+    @AfterEach
+    void shutdown() {
+        loaders.shutdownNow();
+    }
+
+    private void score(long userId, int best) {
+        engine.upsertPlayer(userId, "u" + userId, "/a.webp", 1);
+        engine.recordScore(userId, "flappy", best, 1, 1);
+    }
+
+    // top dal motore, contando i caricamenti
+    private Supplier<List<String>> loader(AtomicInteger calls) {
+        return () -> {
+            calls.incrementAndGet();
+            return engine.topOfGame("flappy", 20).stream().map(r -> r.username() + ":" + r.bestScore()).toList();
+        };
+    }
+
+    // caricamento che si blocca a metà (dopo aver letto le righe) finché release non viene aperto
+    private Future<List<String>> slowLoad(int limit, AtomicInteger calls, CountDownLatch loaded, CountDownLatch release) {
+        return loaders.submit(() -> cache.get(LeaderboardCache.GAME, "flappy", limit, () -> {
+            List<String> rows = loader(calls).get();
+            if (loaded.getCount() > 0) {
+                loaded.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return rows;
+        }));
+    }
+
+    @Test
+    void inFlightLoadStartedBeforeChangeIsNotCached() throws Exception {
+        score(1, 100);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch loaded = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<List<String>> inFlight = slowLoad(20, calls, loaded, release);
+        loaded.await();
+        // il cambiamento arriva mentre il caricamento ha già letto le righe vecchie
+        score(2, 200);
+        release.countDown();
+
+        // chi aspettava riceve le righe ricalcolate, non quelle lette prima del cambiamento
+        assertEquals(List.of("u2:200", "u1:100"), inFlight.get());
+        assertEquals(2, calls.get());
+
+        // in cache c'è la versione nuova: nessun altro caricamento
+        assertEquals(List.of("u2:200", "u1:100"), cache.get(LeaderboardCache.GAME, "flappy", 20, loader(calls)));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void inFlightLoadOnNewBoardIsNotCached() throws Exception {
+        // classifica che ancora non esiste: revisione 0 all'inizio del caricamento
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch loaded = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<List<String>> inFlight = slowLoad(20, calls, loaded, release);
+        loaded.await();
+        score(1, 50);
+        release.countDown();
+
+        assertEquals(List.of("u1:50"), inFlight.get());
+        assertEquals(List.of("u1:50"), cache.get(LeaderboardCache.GAME, "flappy", 20, loader(calls)));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void inFlightLoadBelowChangeIsKept() throws Exception {
+        for (long u = 1; u <= 5; u++) {
+            score(u, (int) (100 - u));
+        }
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch loaded = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // top-2 in caricamento, il cambiamento è in 6a posizione: la top-2 non cambia
+        Future<List<String>> inFlight = slowLoad(2, calls, loaded, release);
+        loaded.await();
+        score(6, 1);
+        release.countDown();
+        inFlight.get();
+
+        cache.get(LeaderboardCache.GAME, "flappy", 2, loader(calls));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void changeEvictsOnlyAffectedTopsOfThatGame() {
+        for (long u = 1; u <= 5; u++) {
+            score(u, (int) (100 - u));
+        }
+        AtomicInteger top3 = new AtomicInteger();
+        AtomicInteger top10 = new AtomicInteger();
+        AtomicInteger snake = new AtomicInteger();
+        Supplier<List<String>> snakeLoader = () -> {
+            snake.incrementAndGet();
+            return List.of("snake");
+        };
+        cache.get(LeaderboardCache.GAME, "flappy", 3, loader(top3));
+        cache.get(LeaderboardCache.GAME, "flappy", 10, loader(top10));
+        cache.get(LeaderboardCache.GAME, "snake", 10, snakeLoader);
+
+        // pari merito con u3 ma id più alto: 5a posizione, cambia la top-10 e non la top-3
+        score(7, 97);
+        cache.get(LeaderboardCache.GAME, "flappy", 3, loader(top3));
+        cache.get(LeaderboardCache.GAME, "flappy", 10, loader(top10));
+        cache.get(LeaderboardCache.GAME, "snake", 10, snakeLoader);
+        assertEquals(1, top3.get());
+        assertEquals(2, top10.get());
+        assertEquals(1, snake.get());
+
+        // nuovo primo: cambiano entrambe
+        score(8, 500);
+        assertEquals(List.of("u8:500", "u1:99", "u2:98", "u3:97", "u7:97", "u4:96", "u5:95"),
+                cache.get(LeaderboardCache.GAME, "flappy", 10, loader(top10)));
+        cache.get(LeaderboardCache.GAME, "flappy", 3, loader(top3));
+        assertEquals(2, top3.get());
+        assertEquals(3, top10.get());
+    }
+}
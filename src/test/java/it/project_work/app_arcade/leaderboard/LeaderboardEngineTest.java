@@ -0,0 +1,333 @@
+package it.project_work.app_arcade.leaderboard;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import it.project_work.app_arcade.dto.GameTopDTO;
+import it.project_work.app_arcade.dto.LeaderboardPage;
+import it.project_work.app_arcade.dto.LeaderboardResponse;
+import it.project_work.app_arcade.dto.PlayerRankResponse;
+import it.project_work.app_arcade.dto.RankRowDTO;
+
+/**
+ * Top, pagine e posizioni del motore devono coincidere con una lista
+ * ordinata ricalcolata da zero (score desc, userId asc) dopo ogni serie di
+ * aggiornamenti. Senza transazione le scritture si applicano subito.
+ */
+class LeaderboardEngineTest {
+
+    private static final String[] GAMES = {"flappy", "snake"};
+
+    private final LeaderboardEngine engine = new LeaderboardEngine(null, null, null, e -> {
+    });
+
+    // modello: gioco -> userId -> {bestScore, playedCount}
+    private final Map<String, Map<Long, long[]>> model = new HashMap<>();
+    private final Set<Long> users = new HashSet<>();
+
+    private record Row(long userId, long score, long played) {
+
+    }
+
+    private static String name(long userId) {
+        return "u" + userId;
+    }
+
+    private void join(long userId) {
+        if (users.add(userId)) {
+            engine.upsertPlayer(userId, name(userId), "/av" + (userId % 4) + ".webp", 1);
+        }
+    }
+
+    private void score(long userId, String game, int best, int played) {
+        join(userId);
+        engine.recordScore(userId, game, best, played, 1);
+        model.computeIfAbsent(game, k -> new HashMap<>())
+                .merge(userId, new long[]{best, played},
+                        (o, n) -> new long[]{Math.max(o[0], n[0]), Math.max(o[1], n[1])});
+    }
+
+    private void remove(long userId) {
+        engine.removePlayer(userId);
+        users.remove(userId);
+        model.values().forEach(m -> m.remove(userId));
+    }
+
+    private static List<Row> sorted(List<Row> rows) {
+        rows.sort((a, b) -> a.score() != b.score()
+                ? Long.compare(b.score(), a.score())
+                : Long.compare(a.userId(), b.userId()));
+        return rows;
+    }
+
+    private List<Row> expectedGame(String game) {
+        List<Row> rows = new ArrayList<>();
+        model.getOrDefault(game, Map.of()).forEach((u, v) -> rows.add(new Row(u, v[0], v[1])));
+        return sorted(rows);
+    }
+
+    // globale: tutti gli utenti registrati, anche chi non ha ancora giocato (score 0)
+    private List<Row> expectedGlobal() {
+        List<Row> rows = new ArrayList<>();
+        for (long u : users) {
+            long total = 0;
+            long played = 0;
+            for (Map<Long, long[]> m : model.values()) {
+                long[] v = m.get(u);
+                if (v != null) {
+                    total += v[0];
+                    played += v[1];
+                }
+            }
+            rows.add(new Row(u, total, played));
+        }
+        return sorted(rows);
+    }
+
+    private static List<String> gameRows(List<GameTopDTO> rows) {
+        List<String> out = new ArrayList<>(rows.size());
+        rows.forEach(r -> out.add(r.username() + ":" + r.bestScore() + ":" + r.playedCount()));
+        return out;
+    }
+
+    private static List<String> globalRows(List<LeaderboardResponse> rows) {
+        List<String> out = new ArrayList<>(rows.size());
+        rows.forEach(r -> out.add(r.username() + ":" + r.totalScore() + ":" + r.totalPlayed()));
+        return out;
+    }
+
+    private static List<String> modelRows(List<Row> rows) {
+        List<String> out = new ArrayList<>(rows.size());
+        rows.forEach(r -> out.add(name(r.userId()) + ":" + r.score() + ":" + r.played()));
+        return out;
+    }
+
+    private void checkRank(PlayerRankResponse rank, List<Row> expected, int i, int around) {
+        Row me = expected.get(i);
+        assertEquals(i + 1, rank.rank(), () -> "rank di " + name(me.userId()));
+        assertEquals(expected.size(), rank.total());
+        assertEquals(me.score(), rank.score());
+
+        int from = Math.max(0, i - around);
+        int to = Math.min(expected.size(), i + around + 1);
+        assertEquals(to - from, rank.neighbours().size());
+        for (int k = from; k < to; k++) {
+            RankRowDTO row = rank.neighbours().get(k - from);
+            assertEquals(k + 1, row.rank());
+            assertEquals(name(expected.get(k).userId()), row.username());
+            assertEquals(expected.get(k).score(), row.score());
+            assertEquals(k == i, row.me());
+        }
+    }
+
+    private void checkAgainstModel(SplittableRandom rnd) {
+        for (String game : GAMES) {
+            List<Row> expected = expectedGame(game);
+            assertEquals(modelRows(expected), gameRows(engine.topOfGame(game, Integer.MAX_VALUE)));
+            assertEquals(modelRows(expected.subList(0, Math.min(10, expected.size()))),
+                    gameRows(engine.topOfGame(game, 10)));
+
+            // pagine a cursore: concatenate danno la classifica intera, senza buchi né doppioni
+            int size = 1 + rnd.nextInt(20);
+            List<GameTopDTO> paged = new ArrayList<>();
+            PageCursor after = PageCursor.FIRST;
+            while (true) {
+                LeaderboardPage<GameTopDTO> page = engine.pageOfGame(game, after, size);
+                paged.addAll(page.rows());
+                if (page.next() == null) {
+                    break;
+                }
+                assertEquals(size, page.rows().size());
+                after = PageCursor.decode(page.next());
+            }
+            assertEquals(modelRows(expected), gameRows(paged));
+
+            for (int i = 0; i < expected.size(); i += 1 + rnd.nextInt(5)) {
+                int around = rnd.nextInt(4);
+                checkRank(engine.rankInGame(game, expected.get(i).userId(), around), expected, i, around);
+            }
+        }
+
+        List<Row> expected = expectedGlobal();
+        assertEquals(modelRows(expected), globalRows(engine.topGlobal(Integer.MAX_VALUE)));
+        List<LeaderboardResponse> paged = new ArrayList<>();
+        String next = null;
+        do {
+            LeaderboardPage<LeaderboardResponse> page = engine.pageGlobal(PageCursor.decode(next), 13);
+            paged.addAll(page.rows());
+            next = page.next();
+        } while (next != null);
+        assertEquals(modelRows(expected), globalRows(paged));
+        for (int i = 0; i < expected.size(); i += 1 + rnd.nextInt(5)) {
+            checkRank(engine.rankGlobal(expected.get(i).userId(), 2), expected, i, 2);
+        }
+    }
+
+    @Test
+    void emptyBoards() {
+        assertEquals(List.of(), engine.topOfGame("flappy", 10));
+        assertEquals(List.of(), engine.topGlobal(10));
+        LeaderboardPage<GameTopDTO> page = engine.pageOfGame("flappy", PageCursor.FIRST, 10);
+        assertEquals(List.of(), page.rows());
+        assertNull(page.next());
+
+        PlayerRankResponse rank = engine.rankInGame("flappy", 1, 2);
+        assertNull(rank.rank());
+        assertEquals(0, rank.total());
+        assertEquals(List.of(), rank.neighbours());
+    }
+
+    @Test
+    void tiesAndPercentile() {
+        score(3, "flappy", 50, 1);
+        score(1, "flappy", 50, 2);
+        score(2, "flappy", 70, 1);
+        score(4, "flappy", 10, 1);
+
+        assertEquals(List.of("u2:70:1", "u1:50:2", "u3:50:1", "u4:10:1"),
+                gameRows(engine.topOfGame("flappy", 10)));
+
+        PlayerRankResponse rank = engine.rankInGame("flappy", 3, 1);
+        assertEquals(3, rank.rank());
+        assertEquals(4, rank.total());
+        assertEquals(25.0, rank.percentile()); // 1 giocatore su 4 sotto
+        assertEquals(List.of("u1", "u3", "u4"), rank.neighbours().stream().map(RankRowDTO::username).toList());
+
+        // un registrato che non ha giocato: nessuna posizione nel gioco, ultimo nel globale
+        join(9);
+        assertNull(engine.rankInGame("flappy", 9, 1).rank());
+        assertEquals(5, engine.rankGlobal(9, 0).rank());
+    }
+
+    @Test
+    void scoresNeverDecrease() {
+        score(1, "flappy", 80, 5);
+        score(1, "flappy", 30, 2); // arrivato in ritardo: non deve peggiorare la riga
+        assertEquals(List.of("u1:80:5"), gameRows(engine.topOfGame("flappy", 10)));
+        assertEquals(List.of("u1:80:5"), globalRows(engine.topGlobal(10)));
+    }
+
+    @Test
+    void randomUpdatesMatchSortedList() {
+        SplittableRandom rnd = new SplittableRandom(42);
+        for (int step = 1; step <= 10_000; step++) {
+            long userId = 1 + rnd.nextInt(300);
+            if (rnd.nextInt(40) == 0) {
+                remove(userId);
+            } else if (rnd.nextInt(20) == 0) {
+                join(userId);
+            } else {
+                // score piccoli: tanti pari merito
+                score(userId, GAMES[rnd.nextInt(GAMES.length)], rnd.nextInt(rnd.nextBoolean() ? 50 : 5000),
+                        rnd.nextInt(60));
+            }
+            if (step % 500 == 0) {
+                checkAgainstModel(rnd);
+            }
+        }
+    }
+
+    @Test
+    void cursorSkipsRowRemovedBetweenPages() {
+        for (long u = 1; u <= 10; u++) {
+            score(u, "flappy", (int) (100 - u), 1);
+        }
+        LeaderboardPage<GameTopDTO> first = engine.pageOfGame("flappy", PageCursor.FIRST, 4);
+        assertEquals(List.of("u1", "u2", "u3", "u4"), first.rows().stream().map(GameTopDTO::username).toList());
+
+        // la riga del cursore sparisce: si riparte comunque subito dopo la sua posizione
+        remove(4);
+        score(11, "flappy", 200, 1); // finisce prima del cursore, non rientra nelle pagine dopo
+        LeaderboardPage<GameTopDTO> second = engine.pageOfGame("flappy", PageCursor.decode(first.next()), 4);
+        assertEquals(List.of("u5", "u6", "u7", "u8"), second.rows().stream().map(GameTopDTO::username).toList());
+    }
+
+    @Test
+    void cursorPagingDuringConcurrentUpdates() throws InterruptedException {
+        // utenti dispari: score fisso; pari: migliorano di continuo da un altro thread
+        SplittableRandom rnd = new SplittableRandom(7);
+        Map<Long, Integer> fixed = new HashMap<>();
+        for (long u = 1; u <= 400; u++) {
+            int best = rnd.nextInt(1000);
+            score(u, "flappy", best, 1);
+            if (u % 2 == 1) {
+                fixed.put(u, best);
+            }
+        }
+
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> writerError = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            SplittableRandom wr = new SplittableRandom(8);
+            int[] best = new int[401];
+            long newUser = 1000;
+            try {
+                while (!done.get()) {
+                    long u = 2 * (1 + wr.nextInt(200));
+                    best[(int) u] += 1 + wr.nextInt(50);
+                    engine.recordScore(u, "flappy", 1000 + best[(int) u], 1, 1);
+                    if (newUser < 1600 && wr.nextInt(50) == 0) {
+                        // nuovi giocatori con id pari: possono comparire o no, ma una volta sola
+                        engine.upsertPlayer(newUser, name(newUser), "/av.webp", 1);
+                        engine.recordScore(newUser, "flappy", wr.nextInt(2000), 1, 1);
+                        newUser += 2;
+                    }
+                }
+            } catch (Throwable t) {
+                writerError.set(t);
+            }
+        });
+        writer.start();
+        try {
+            for (int pass = 0; pass < 200; pass++) {
+                int size = 1 + pass % 17;
+                List<GameTopDTO> rows = new ArrayList<>();
+                String next = null;
+                do {
+                    LeaderboardPage<GameTopDTO> page = engine.pageOfGame("flappy", PageCursor.decode(next), size);
+                    assertTrue(page.rows().size() <= size);
+                    rows.addAll(page.rows());
+                    next = page.next();
+                } while (next != null);
+
+                // gli score solo crescenti: mai una riga due volte, ordine rispettato anche tra pagine diverse
+                Set<String> seen = new HashSet<>();
+                for (int i = 0; i < rows.size(); i++) {
+                    GameTopDTO row = rows.get(i);
+                    assertTrue(seen.add(row.username()), () -> "doppione " + row.username());
+                    if (i > 0) {
+                        GameTopDTO prev = rows.get(i - 1);
+                        long prevId = Long.parseLong(prev.username().substring(1));
+                        long id = Long.parseLong(row.username().substring(1));
+                        assertTrue(prev.bestScore() > row.bestScore()
+                                || (prev.bestScore().equals(row.bestScore()) && prevId < id),
+                                () -> "ordine " + prev + " -> " + row);
+                    }
+                }
+                // chi non cambia c'è sempre, con il suo score
+                Set<String> all = new HashSet<>(gameRows(rows));
+                for (Map.Entry<Long, Integer> f : fixed.entrySet()) {
+                    String row = name(f.getKey()) + ":" + f.getValue() + ":1";
+                    assertTrue(all.contains(row), () -> "manca " + row);
+                }
+            }
+        } finally {
+            done.set(true);
+            writer.join();
+        }
+        assertNull(writerError.get());
+    }
+}
@@ -0,0 +1,196 @@
+package it.project_work.app_arcade.leaderboard;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * L'indice deve dare sempre lo stesso ordine, le stesse posizioni e gli
+ * stessi range di una lista ordinata (score desc, userId asc).
+ */
+class RankIndexTest {
+
+    // slot -> userId non banale: l'ordine a parità di score va per userId, non per slot
+    private static long userIdOf(int slot) {
+        return 1_000_000L - 7L * slot;
+    }
+
+    private static final Comparator<long[]> ORDER = Comparator
+            .<long[]>comparingLong(r -> -r[0])
+            .thenComparingLong(r -> r[1]);
+
+    private final RankIndex index = new RankIndex(RankIndexTest::userIdOf);
+    private final TreeSet<long[]> model = new TreeSet<>(ORDER);
+    private final long[] scores = new long[512];
+
+    {
+        Arrays.fill(scores, RankIndex.ABSENT);
+    }
+
+    private void set(int slot, long score) {
+        long old = scores[slot];
+        if (old != RankIndex.ABSENT) {
+            model.remove(new long[]{old, userIdOf(slot)});
+        }
+        if (score != RankIndex.ABSENT) {
+            model.add(new long[]{score, userIdOf(slot)});
+        }
+        index.replace(slot, old, score);
+        scores[slot] = score;
+    }
+
+    private static List<String> rows(List<long[]> rows) {
+        List<String> out = new ArrayList<>(rows.size());
+        rows.forEach(r -> out.add(r[0] + ":" + r[1]));
+        return out;
+    }
+
+    private List<String> range(int from, int count) {
+        List<String> out = new ArrayList<>();
+        index.range(from, count, (slot, score) -> out.add(score + ":" + userIdOf(slot)));
+        return out;
+    }
+
+    private List<String> rangeAfter(long score, long userId, int count) {
+        List<String> out = new ArrayList<>();
+        index.rangeAfter(score, userId, count, (slot, s) -> out.add(s + ":" + userIdOf(slot)));
+        return out;
+    }
+
+    private void checkAgainstModel() {
+        List<long[]> sorted = new ArrayList<>(model);
+        assertEquals(sorted.size(), index.size());
+        assertEquals(rows(sorted), range(0, Integer.MAX_VALUE));
+        for (int i = 0; i < sorted.size(); i++) {
+            long[] r = sorted.get(i);
+            assertEquals(i, index.indexOf(r[0], r[1]), "rank di " + r[0] + ":" + r[1]);
+        }
+    }
+
+    @Test
+    void emptyIndex() {
+        assertEquals(0, index.size());
+        assertEquals(0, index.indexOf(100, 1));
+        assertEquals(List.of(), range(0, 10));
+        assertEquals(List.of(), rangeAfter(Long.MAX_VALUE, 0, 10));
+    }
+
+    @Test
+    void tiesAreOrderedByUserId() {
+        // stessi score: slot alti = userId bassi = posizioni prima
+        for (int slot = 0; slot < 10; slot++) {
+            set(slot, 50);
+        }
+        set(10, 60);
+        set(11, 40);
+
+        assertEquals(0, index.indexOf(60, userIdOf(10)));
+        for (int slot = 0; slot < 10; slot++) {
+            assertEquals(10 - slot, index.indexOf(50, userIdOf(slot)));
+        }
+        assertEquals(11, index.indexOf(40, userIdOf(11)));
+
+        // un utente non presente: righe strettamente prima di lui
+        assertEquals(1, index.indexOf(50, Long.MIN_VALUE));
+        assertEquals(11, index.indexOf(50, Long.MAX_VALUE));
+        assertEquals(12, index.indexOf(Long.MIN_VALUE + 1, 0));
+        checkAgainstModel();
+    }
+
+    @Test
+    void replaceMovesAndRemoves() {
+        set(0, 10);
+        set(1, 20);
+        set(2, 30);
+        assertEquals(List.of("30:" + userIdOf(2), "20:" + userIdOf(1), "10:" + userIdOf(0)), range(0, 3));
+
+        set(0, 40); // dall'ultima alla prima posizione
+        assertEquals(0, index.indexOf(40, userIdOf(0)));
+        set(2, RankIndex.ABSENT);
+        assertEquals(2, index.size());
+        set(1, 20); // stesso score: nessun cambiamento
+        checkAgainstModel();
+
+        set(0, RankIndex.ABSENT);
+        set(1, RankIndex.ABSENT);
+        assertEquals(0, index.size());
+        assertEquals(List.of(), range(0, 10));
+    }
+
+    @Test
+    void rangeAndRangeAfterMatchSortedList() {
+        SplittableRandom rnd = new SplittableRandom(3);
+        for (int slot = 0; slot < 200; slot++) {
+            set(slot, rnd.nextInt(30)); // tanti pari merito
+        }
+        List<String> sorted = rows(new ArrayList<>(model));
+
+        for (int from = 0; from <= sorted.size() + 1; from++) {
+            for (int count : new int[]{0, 1, 7, 500}) {
+                List<String> expected = from >= sorted.size() || count == 0
+                        ? List.of()
+                        : sorted.subList(from, Math.min(sorted.size(), from + count));
+                assertEquals(expected, range(from, count), "from=" + from + " count=" + count);
+            }
+        }
+        assertEquals(List.of(), range(-1, 10));
+
+        // rangeAfter riparte subito dopo la riga indicata, anche se non c'è più
+        List<long[]> inOrder = new ArrayList<>(model);
+        for (int i = 0; i < inOrder.size(); i++) {
+            long[] r = inOrder.get(i);
+            assertEquals(sorted.subList(i + 1, Math.min(sorted.size(), i + 6)), rangeAfter(r[0], r[1], 5));
+            assertEquals(sorted.subList(i, Math.min(sorted.size(), i + 5)), rangeAfter(r[0], r[1] - 1, 5));
+        }
+        assertEquals(sorted.subList(0, 5), rangeAfter(Long.MAX_VALUE, 0, 5));
+    }
+
+    @Test
+    void randomOperationsMatchSortedList() {
+        // inserimenti (split), rimozioni (merge) e spostamenti in ordine casuale
+        SplittableRandom rnd = new SplittableRandom(42);
+        for (int step = 0; step < 20_000; step++) {
+            int slot = rnd.nextInt(scores.length);
+            int op = rnd.nextInt(10);
+            if (op == 0) {
+                set(slot, RankIndex.ABSENT);
+            } else if (op < 3 && scores[slot] != RankIndex.ABSENT) {
+                set(slot, scores[slot] + rnd.nextInt(5)); // piccolo miglioramento, spesso un pari merito
+            } else {
+                set(slot, rnd.nextInt(op < 6 ? 50 : 1_000_000));
+            }
+            if (step % 997 == 0) {
+                checkAgainstModel();
+            }
+        }
+        checkAgainstModel();
+    }
+
+    @Test
+    void sortedInsertionsAndFullRemoval() {
+        // inserimenti già ordinati in entrambi i versi: il treap deve restare corretto
+        for (int slot = 0; slot < 300; slot++) {
+            set(slot, slot);
+        }
+        checkAgainstModel();
+        for (int slot = 0; slot < 300; slot++) {
+            set(slot, RankIndex.ABSENT);
+        }
+        assertEquals(0, index.size());
+        for (int slot = 299; slot >= 0; slot--) {
+            set(slot, slot);
+        }
+        checkAgainstModel();
+        for (int slot = 299; slot >= 0; slot -= 2) {
+            set(slot, RankIndex.ABSENT);
+        }
+        checkAgainstModel();
+    }
+}
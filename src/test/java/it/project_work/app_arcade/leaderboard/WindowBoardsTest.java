@@ -0,0 +1,155 @@
+package it.project_work.app_arcade.leaderboard;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import it.project_work.app_arcade.leaderboard.LeaderboardEngine.Board;
+
+/**
+ * Rollover delle finestre a tempo: il periodo cambia esattamente a
+ * mezzanotte (giorno), lunedì (settimana ISO) e il primo del mese, e un
+ * bucket di un periodo chiuso vale come vuoto.
+ */
+class WindowBoardsTest {
+
+    private final WindowBoards windows = new WindowBoards();
+
+    private List<String> rows(LeaderboardWindow window, LocalDate today) {
+        Board board = windows.board(window, "flappy", today);
+        List<String> out = new ArrayList<>();
+        if (board != null) {
+            board.range(0, Integer.MAX_VALUE).forEach(e -> out.add(e.userId() + ":" + e.score() + ":" + e.played()));
+        }
+        return out;
+    }
+
+    private static void assertSamePeriod(LeaderboardWindow w, LocalDate a, LocalDate b) {
+        assertEquals(w.periodOf(a), w.periodOf(b), () -> w + " " + a + " / " + b);
+        assertEquals(w.startOf(a), w.startOf(b));
+    }
+
+    private static void assertNewPeriod(LeaderboardWindow w, LocalDate before, LocalDate after) {
+        assertNotEquals(w.periodOf(before), w.periodOf(after), () -> w + " " + before + " / " + after);
+        assertEquals(after, w.startOf(after));
+    }
+
+    @Test
+    void periodBoundaries() {
+        // mercoledì 31/12 -> giovedì 1/1: cambiano giorno e mese, non la settimana ISO
+        LocalDate newYearsEve = LocalDate.of(2025, 12, 31);
+        LocalDate newYear = LocalDate.of(2026, 1, 1);
+        assertNewPeriod(LeaderboardWindow.DAY, newYearsEve, newYear);
+        assertNewPeriod(LeaderboardWindow.MONTH, newYearsEve, newYear);
+        assertSamePeriod(LeaderboardWindow.WEEK, newYearsEve, newYear);
+        assertEquals(LocalDate.of(2025, 12, 29), LeaderboardWindow.WEEK.startOf(newYear));
+
+        // domenica -> lunedì: cambia la settimana, non il mese
+        LocalDate sunday = LocalDate.of(2026, 1, 4);
+        LocalDate monday = LocalDate.of(2026, 1, 5);
+        assertNewPeriod(LeaderboardWindow.WEEK, sunday, monday);
+        assertSamePeriod(LeaderboardWindow.MONTH, sunday, monday);
+        assertSamePeriod(LeaderboardWindow.WEEK, monday, LocalDate.of(2026, 1, 11));
+
+        // anno bisestile: 29/2 è ancora febbraio
+        assertSamePeriod(LeaderboardWindow.MONTH, LocalDate.of(2024, 2, 1), LocalDate.of(2024, 2, 29));
+        assertNewPeriod(LeaderboardWindow.MONTH, LocalDate.of(2024, 2, 29), LocalDate.of(2024, 3, 1));
+
+        // stesso mese in anni diversi: periodi diversi
+        assertNotEquals(LeaderboardWindow.MONTH.periodOf(LocalDate.of(2025, 1, 10)),
+                LeaderboardWindow.MONTH.periodOf(LocalDate.of(2026, 1, 10)));
+    }
+
+    @Test
+    void bucketKeepsBestAndCountsRuns() {
+        LocalDate day = LocalDate.of(2026, 3, 10);
+        windows.record(1, "flappy", 40, 1, day);
+        windows.record(1, "flappy", 25, 2, day); // peggiore: conta solo come partite
+        windows.record(2, "flappy", 40, 1, day);
+        windows.record(3, "snake", 99, 1, day);
+
+        for (LeaderboardWindow w : LeaderboardWindow.TIMED) {
+            assertEquals(List.of("1:40:3", "2:40:1"), rows(w, day), w::toString);
+        }
+        assertNull(windows.board(LeaderboardWindow.DAY, "tetris", day));
+    }
+
+    @Test
+    void dayRollover() {
+        LocalDate sat = LocalDate.of(2026, 1, 31);
+        LocalDate sun = LocalDate.of(2026, 2, 1);
+        windows.record(1, "flappy", 50, 1, sat);
+
+        // a mezzanotte il giorno si svuota anche senza nuove partite
+        assertEquals(List.of(), rows(LeaderboardWindow.DAY, sun));
+        assertEquals(List.of("1:50:1"), rows(LeaderboardWindow.WEEK, sun));
+        assertEquals(List.of(), rows(LeaderboardWindow.MONTH, sun)); // 1/2: mese nuovo
+
+        // la prima partita del giorno nuovo sostituisce il bucket
+        windows.record(2, "flappy", 10, 1, sun);
+        assertEquals(List.of("2:10:1"), rows(LeaderboardWindow.DAY, sun));
+        assertEquals(List.of("1:50:1", "2:10:1"), rows(LeaderboardWindow.WEEK, sun));
+        assertEquals(List.of("2:10:1"), rows(LeaderboardWindow.MONTH, sun));
+
+        // il giorno prima non si può più leggere: c'è solo il bucket corrente
+        assertEquals(List.of(), rows(LeaderboardWindow.DAY, sat));
+    }
+
+    @Test
+    void weekRollover() {
+        LocalDate sun = LocalDate.of(2026, 3, 8);
+        LocalDate mon = LocalDate.of(2026, 3, 9);
+        windows.record(1, "flappy", 70, 2, LocalDate.of(2026, 3, 2)); // lunedì della stessa settimana
+        windows.record(2, "flappy", 30, 1, sun);
+        assertEquals(List.of("1:70:2", "2:30:1"), rows(LeaderboardWindow.WEEK, sun));
+
+        windows.record(2, "flappy", 20, 1, mon);
+        assertEquals(List.of("2:20:1"), rows(LeaderboardWindow.WEEK, mon));
+        // il mese invece continua: best e partite dei giorni prima restano
+        assertEquals(List.of("1:70:2", "2:30:2"), rows(LeaderboardWindow.MONTH, mon));
+    }
+
+    @Test
+    void monthRollover() {
+        LocalDate feb29 = LocalDate.of(2024, 2, 29);
+        LocalDate mar1 = LocalDate.of(2024, 3, 1);
+        windows.record(1, "flappy", 90, 1, LocalDate.of(2024, 2, 1));
+        windows.record(2, "flappy", 60, 1, feb29);
+        assertEquals(List.of("1:90:1", "2:60:1"), rows(LeaderboardWindow.MONTH, feb29));
+
+        windows.record(2, "flappy", 15, 1, mar1);
+        assertEquals(List.of("2:15:1"), rows(LeaderboardWindow.MONTH, mar1));
+        // 29/2 e 1/3 sono nella stessa settimana (lun 26/2): lì il best resta
+        assertEquals(List.of("2:60:2"), rows(LeaderboardWindow.WEEK, mar1));
+    }
+
+    @Test
+    void lateRunOfClosedPeriodIsIgnored() {
+        LocalDate mon = LocalDate.of(2026, 3, 9);
+        windows.record(1, "flappy", 10, 1, mon);
+        // committata dopo mezzanotte ma giocata domenica: niente più giorno né settimana di domenica
+        windows.record(2, "flappy", 500, 1, mon.minusDays(1));
+
+        assertEquals(List.of("1:10:1"), rows(LeaderboardWindow.DAY, mon));
+        assertEquals(List.of("1:10:1"), rows(LeaderboardWindow.WEEK, mon));
+        // stesso mese: conta
+        assertEquals(List.of("2:500:1", "1:10:1"), rows(LeaderboardWindow.MONTH, mon));
+    }
+
+    @Test
+    void removeClearsEveryWindow() {
+        LocalDate day = LocalDate.of(2026, 3, 10);
+        windows.record(1, "flappy", 40, 1, day);
+        windows.record(2, "flappy", 30, 1, day);
+        windows.remove(1);
+        for (LeaderboardWindow w : LeaderboardWindow.TIMED) {
+            assertEquals(List.of("2:30:1"), rows(w, day), w::toString);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package it.project_work.app_arcade.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Il filtro risponde 429 con Retry-After prima di arrivare al controller,
+ * limita il login anche per username (normalizzato) e ripassa il body
+ * intatto; un body oltre il limite è 413 anche senza Content-Length.
+ */
+class LoginRateLimitFilterTest {
+
+    // login ip: burst 4; login user: burst 2 (6/min -> Retry-After 10); register ip: burst 1
+    private final LoginRateLimiter limiter = new LoginRateLimiter(4, 60, 2, 6, 1, 1, 30, 60, 1000);
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+    private final LoginRateLimitFilter filter = new LoginRateLimitFilter(limiter, jsonMapper);
+
+    private static MockHttpServletRequest request(String method, String uri, String ip, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        request.setRemoteAddr(ip);
+        if (body != null) {
+            request.setContentType("application/json");
+            request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        }
+        return request;
+    }
+
+    private static MockHttpServletRequest login(String ip, String username) {
+        return request("POST", "/auth/login", ip, "{\"username\":\"" + username + "\",\"password\":\"secret1\"}");
+    }
+
+    // risposta + body visto dal controller (null se il filtro ha fermato la richiesta)
+    private record Result(MockHttpServletResponse response, String forwardedBody) {
+
+    }
+
+    private Result run(HttpServletRequest request) throws ServletException, IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, response, chain);
+        String body = null;
+        if (chain.getRequest() != null) {
+            body = new String(chain.getRequest().getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        }
+        return new Result(response, body);
+    }
+
+    @Test
+    void loginBodyIsForwardedIntact() throws Exception {
+        String body = "{\"username\":\"mario\",\"password\":\"àèìòù secret\"}";
+        Result r = run(request("POST", "/auth/login", "10.0.0.1", body));
+        assertEquals(200, r.response().getStatus());
+        assertEquals(body, r.forwardedBody());
+    }
+
+    @Test
+    void usernameLimitAcrossIpsAndSpellings() throws Exception {
+        assertNotNull(run(login("10.0.0.1", "Mario")).forwardedBody());
+        assertNotNull(run(login("10.0.0.2", " mario ")).forwardedBody());
+
+        // terzo tentativo sullo stesso account da un altro IP ancora: bloccato
+        Result r = run(login("10.0.0.3", "MARIO"));
+        assertNull(r.forwardedBody());
+        assertEquals(429, r.response().getStatus());
+        assertEquals("10", r.response().getHeader("Retry-After"));
+        JsonNode error = jsonMapper.readTree(r.response().getContentAsByteArray());
+        assertEquals("TOO_MANY_REQUESTS", error.path("error").asString());
+
+        // gli altri account dallo stesso IP passano
+        assertNotNull(run(login("10.0.0.3", "luigi")).forwardedBody());
+    }
+
+    @Test
+    void ipLimitComesFirst() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            assertNotNull(run(login("10.0.0.9", "user" + i)).forwardedBody());
+        }
+        Result r = run(login("10.0.0.9", "other"));
+        assertEquals(429, r.response().getStatus());
+        assertEquals("1", r.response().getHeader("Retry-After"));
+        // bloccata sull'IP: il secchio dello username non è stato toccato
+        assertEquals(0, limiter.tryAcquire(LoginRateLimiter.Scope.LOGIN_USER, "other"));
+        assertEquals(0, limiter.tryAcquire(LoginRateLimiter.Scope.LOGIN_USER, "other"));
+    }
+
+    @Test
+    void registerAndAvailabilityAreLimitedPerIp() throws Exception {
+        assertNotNull(run(request("POST", "/auth/register", "10.0.0.1", "{}")).forwardedBody());
+        Result r = run(request("POST", "/auth/register", "10.0.0.1", "{}"));
+        assertEquals(429, r.response().getStatus());
+        assertEquals("60", r.response().getHeader("Retry-After"));
+
+        assertEquals(200, run(request("GET", "/auth/availability", "10.0.0.1", null)).response().getStatus());
+    }
+
+    @Test
+    void otherRequestsAreNotFiltered() throws Exception {
+        run(request("POST", "/auth/register", "10.0.0.1", "{}")); // secchio register esaurito
+        for (int i = 0; i < 10; i++) {
+            assertEquals(200, run(request("GET", "/auth/login", "10.0.0.1", null)).response().getStatus());
+            assertEquals(200, run(request("POST", "/auth/logout", "10.0.0.1", null)).response().getStatus());
+            assertEquals(200, run(request("POST", "/api/game/score", "10.0.0.1", "{}")).response().getStatus());
+        }
+    }
+
+    @Test
+    void oversizedLoginBodyIs413() throws Exception {
+        String big = "{\"username\":\"mario\",\"password\":\"" + "x".repeat(5000) + "\"}";
+        Result declared = run(request("POST", "/auth/login", "10.0.0.1", big));
+        assertEquals(413, declared.response().getStatus());
+        assertNull(declared.forwardedBody());
+
+        // chunked: nessun Content-Length, il limite vale lo stesso
+        HttpServletRequest chunked = new HttpServletRequestWrapper(request("POST", "/auth/login", "10.0.0.1", big)) {
+            @Override
+            public int getContentLength() {
+                return -1;
+            }
+
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+        };
+        Result r = run(chunked);
+        assertEquals(413, r.response().getStatus());
+        assertNull(r.forwardedBody());
+        JsonNode error = jsonMapper.readTree(r.response().getContentAsByteArray());
+        assertEquals("PAYLOAD_TOO_LARGE", error.path("error").asString());
+
+        // esattamente al limite passa
+        String padding = "x".repeat(4096 - "{\"username\":\"mario\",\"p\":\"\"}".length());
+        String atLimit = "{\"username\":\"mario\",\"p\":\"" + padding + "\"}";
+        assertEquals(4096, atLimit.length());
+        assertEquals(atLimit, run(request("POST", "/auth/login", "10.0.0.2", atLimit)).forwardedBody());
+    }
+}
@@ -0,0 +1,99 @@
+package it.project_work.app_arcade.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Secchi dei limiti di login: burst, ricarica a ritmo costante, Retry-After
+ * arrotondato per eccesso e una sola chiave per le varianti dello stesso
+ * username.
+ */
+class LoginRateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    // login ip: burst 3, 6/min (un gettone ogni 10 s); login user: burst 2, 60/min; register: burst 1, 1/min
+    private final LoginRateLimiter limiter = new LoginRateLimiter(3, 6, 2, 60, 1, 1, 4, 60, 1000);
+
+    @Test
+    void bucketAllowsBurstThenRefillsOneIntervalAtATime() {
+        // tempo finto: il secchio riceve "adesso" da fuori
+        TokenBucket bucket = new TokenBucket();
+        long interval = 10 * SECOND;
+        long burst = 3 * interval;
+        long t = 1_000 * SECOND;
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, bucket.tryAcquire(t, interval, burst));
+        }
+        assertEquals(interval, bucket.tryAcquire(t, interval, burst));
+        // un rifiuto non consuma: il tempo da attendere scende con il tempo
+        assertEquals(4 * SECOND, bucket.tryAcquire(t + 6 * SECOND, interval, burst));
+
+        // dopo un intervallo torna esattamente un gettone
+        assertEquals(0, bucket.tryAcquire(t + interval, interval, burst));
+        assertEquals(interval, bucket.tryAcquire(t + interval, interval, burst));
+
+        // fermo a lungo: si ricarica fino al burst, non oltre
+        long later = t + 100 * interval;
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, bucket.tryAcquire(later, interval, burst));
+        }
+        assertTrue(bucket.tryAcquire(later, interval, burst) > 0);
+    }
+
+    @Test
+    void retryAfterIsTheWaitRoundedUp() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire(LoginRateLimiter.Scope.LOGIN_IP, "10.0.0.1"));
+        }
+        // prossimo gettone tra poco meno di 10 s: Retry-After 10, mai 0
+        assertEquals(10, limiter.tryAcquire(LoginRateLimiter.Scope.LOGIN_IP, "10.0.0.1"));
+
+        assertEquals(0, limiter.tryAcquire(LoginRateLimiter.Scope.REGISTER_IP, "10.0.0.1"));
+        assertEquals(60, limiter.tryAcquire(LoginRateLimiter.Scope.REGISTER_IP, "10.0.0.1"));
+
+        assertEquals(0, limiter.tryAcquire(LoginRateLimiter.Scope.LOGIN_USER, "mario"));
+        assertEquals(0, limiter.tryAcquire(LoginRateLimiter.Scope.LOGIN_USER, "mario"));
+        assertEquals(1, limiter.tryAcquire(LoginRateLimiter.Scope.LOGIN_USER, "mario"));
+    }
+
+    @Test
+    void usernameVariantsShareOneBucket() {
+        assertEquals("mario", LoginRateLimiter.normalizeUsername("  MaRio\t"));
+
+        assertEquals(0, limiter.tryAcquire(LoginRateLimiter.Scope.LOGIN_USER, "Mario"));
+        assertEquals(0, limiter.tryAcquire(LoginRateLimiter.Scope.LOGIN_USER, " mario "));
+        assertTrue(limiter.tryAcquire(LoginRateLimiter.Scope.LOGIN_USER, "MARIO") > 0);
+        // un altro username ha il suo secchio
+        assertEquals(0, limiter.tryAcquire(LoginRateLimiter.Scope.LOGIN_USER, "luigi"));
+    }
+
+    @Test
+    void scopesAndKeysAreIndependent() {
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire(LoginRateLimiter.Scope.LOGIN_IP, "10.0.0.1");
+        }
+        assertTrue(limiter.tryAcquire(LoginRateLimiter.Scope.LOGIN_IP, "10.0.0.1") > 0);
+        assertEquals(0, limiter.tryAcquire(LoginRateLimiter.Scope.LOGIN_IP, "10.0.0.2"));
+        assertEquals(0, limiter.tryAcquire(LoginRateLimiter.Scope.REGISTER_IP, "10.0.0.1"));
+        assertEquals(0, limiter.tryAcquire(LoginRateLimiter.Scope.AVAILABILITY_IP, "10.0.0.1"));
+        // lo username coincide con un IP già esaurito: scope diversi, secchi diversi
+        assertEquals(0, limiter.tryAcquire(LoginRateLimiter.Scope.LOGIN_USER, "10.0.0.1"));
+
+        // chiave mancante (es. JSON senza username): nessun limite, niente secchio
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, limiter.tryAcquire(LoginRateLimiter.Scope.LOGIN_USER, null));
+            assertEquals(0, limiter.tryAcquire(LoginRateLimiter.Scope.LOGIN_USER, " "));
+        }
+
+        LoginRateLimiter.Stats stats = limiter.stats();
+        assertEquals(1, stats.rejectedIp());
+        assertEquals(0, stats.rejectedUser());
+        assertEquals(7, stats.allowed());
+    }
+}
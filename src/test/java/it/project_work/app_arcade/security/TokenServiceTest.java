@@ -0,0 +1,187 @@
+package it.project_work.app_arcade.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import it.project_work.app_arcade.models.AuthRevocation;
+import it.project_work.app_arcade.models.User;
+import it.project_work.app_arcade.repositories.AuthRevocationRepository;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Token firmati: vale solo un token integro, firmato con una chiave ancora
+ * configurata, non scaduto e non revocato (singolo jti o "not before"
+ * dell'utente), anche quando la revoca arriva da un'altra istanza.
+ */
+class TokenServiceTest {
+
+    private static final String K1 = "k1:0123456789abcdef0123456789abcdef";
+    private static final String K2 = "k2:fedcba9876543210fedcba9876543210";
+
+    private static final ArcadePrincipal MARIO = new ArcadePrincipal(7, "mario", "mario@arcade.test",
+            User.Role.USER, true, 3, 2L, 0L, null);
+    private static final ArcadePrincipal LUIGI = new ArcadePrincipal(8, "luigi", "luigi@arcade.test",
+            User.Role.USER, true, 1, null, 0L, null);
+
+    // auth_revocations condivisa tra le istanze
+    private final List<AuthRevocation> revocations = new ArrayList<>();
+
+    private AuthRevocationRepository repository() {
+        return (AuthRevocationRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{AuthRevocationRepository.class}, (proxy, method, args) -> {
+                    synchronized (revocations) {
+                        return switch (method.getName()) {
+                            case "save" -> {
+                                AuthRevocation r = (AuthRevocation) args[0];
+                                r.setId((long) revocations.size() + 1);
+                                revocations.add(r);
+                                yield r;
+                            }
+                            case "findByIdGreaterThanAndExpiresAtAfterOrderByIdAsc" -> revocations.stream()
+                                    .filter(r -> r.getId() > (Long) args[0]
+                                    && r.getExpiresAt().isAfter((LocalDateTime) args[1]))
+                                    .toList();
+                            default -> throw new UnsupportedOperationException(method.getName());
+                        };
+                    }
+                });
+    }
+
+    private TokenService service(String secrets, long ttlMinutes) {
+        return new TokenService(JsonMapper.builder().build(), repository(), secrets, ttlMinutes, 240, 5);
+    }
+
+    private TokenService service(String secrets) {
+        return service(secrets, 15);
+    }
+
+    private static boolean valid(TokenService tokens, String token) {
+        return tokens.verify(token).isPresent();
+    }
+
+    @Test
+    void issuedTokenCarriesThePrincipal() {
+        TokenService tokens = service(K1);
+        long authTime = System.currentTimeMillis() - 1000;
+        String token = tokens.issue(MARIO, authTime);
+        assertTrue(token.startsWith("k1."));
+
+        TokenService.Claims c = tokens.verify(token).orElseThrow();
+        assertEquals(authTime, c.auth());
+        assertEquals(15 * 60_000, c.exp() - c.iat());
+        ArcadePrincipal p = c.toPrincipal();
+        assertEquals(7, p.getId());
+        assertEquals("mario", p.getUsername());
+        assertEquals("mario@arcade.test", p.getEmail());
+        assertEquals(User.Role.USER, p.getRole());
+        assertEquals(3, p.getLevel());
+        assertEquals(2L, p.getAvatarId());
+    }
+
+    @Test
+    void tamperedTokensAreRejected() {
+        TokenService tokens = service(K1);
+        String token = tokens.issue(MARIO, System.currentTimeMillis());
+        int first = token.indexOf('.');
+        int last = token.lastIndexOf('.');
+
+        // payload di un altro utente con la firma del primo
+        String luigiPayload = tokens.issue(LUIGI, System.currentTimeMillis()).split("\\.")[1];
+        assertTrue(tokens.verify(token.substring(0, first + 1) + luigiPayload + token.substring(last)).isEmpty());
+        // firma alterata, troncata, assente
+        char c = token.charAt(token.length() - 2);
+        assertTrue(tokens.verify(token.substring(0, token.length() - 2) + (c == 'A' ? 'B' : 'A')
+                + token.charAt(token.length() - 1)).isEmpty());
+        assertTrue(tokens.verify(token.substring(0, last)).isEmpty());
+        assertTrue(tokens.verify(token.substring(0, last + 1)).isEmpty());
+        // formato non valido
+        for (String bad : new String[]{null, "", "abc", "k1..", "..", "k1.!!!.###"}) {
+            assertTrue(tokens.verify(bad).isEmpty(), () -> "accettato: " + bad);
+        }
+    }
+
+    @Test
+    void keyRotation() {
+        TokenService old = service(K1);
+        TokenService rotating = service(K2 + "," + K1); // k2 firma, k1 solo in verifica
+        TokenService rotated = service(K2); // k1 ritirata
+
+        String oldToken = old.issue(MARIO, System.currentTimeMillis());
+        String newToken = rotating.issue(MARIO, System.currentTimeMillis());
+        assertTrue(newToken.startsWith("k2."));
+
+        assertTrue(valid(rotating, oldToken));
+        assertTrue(valid(rotating, newToken));
+        assertTrue(valid(rotated, newToken));
+        assertFalse(valid(rotated, oldToken));
+        assertFalse(valid(old, newToken)); // kid sconosciuto
+
+        // stesso kid con segreto diverso: firma non valida
+        TokenService otherSecret = service("k1:" + "x".repeat(32));
+        assertFalse(valid(otherSecret, oldToken));
+    }
+
+    @Test
+    void invalidSecretsAreRefused() {
+        assertThrows(IllegalStateException.class, () -> service("k1:troppo-corto"));
+        assertThrows(IllegalStateException.class, () -> service("senza-kid"));
+        assertThrows(IllegalStateException.class, () -> service(":" + "x".repeat(32)));
+    }
+
+    @Test
+    void expiredTokenIsRejected() {
+        TokenService tokens = service(K1, 0); // scade nell'istante in cui viene emesso
+        assertFalse(valid(tokens, tokens.issue(MARIO, System.currentTimeMillis())));
+        assertTrue(valid(service(K1, 1), service(K1, 1).issue(MARIO, System.currentTimeMillis())));
+    }
+
+    @Test
+    void jtiRevocationTouchesOnlyThatToken() {
+        TokenService tokens = service(K1);
+        TokenService other = service(K1);
+        String a = tokens.issue(MARIO, System.currentTimeMillis());
+        String b = tokens.issue(MARIO, System.currentTimeMillis());
+
+        tokens.revoke(tokens.verify(a).orElseThrow());
+        assertFalse(valid(tokens, a));
+        assertTrue(valid(tokens, b));
+
+        // l'altra istanza la vede dopo la sincronizzazione
+        assertTrue(valid(other, a));
+        other.syncRevocations();
+        assertFalse(valid(other, a));
+        assertTrue(valid(other, b));
+    }
+
+    @Test
+    void notBeforeCutsOffEarlierTokensOfThatUser() throws InterruptedException {
+        TokenService tokens = service(K1);
+        TokenService other = service(K1);
+        String marioBefore = tokens.issue(MARIO, System.currentTimeMillis());
+        String luigi = tokens.issue(LUIGI, System.currentTimeMillis());
+        Thread.sleep(2);
+
+        tokens.revokeAll(MARIO.getId()); // es. cambio password
+        assertFalse(valid(tokens, marioBefore));
+        assertTrue(valid(tokens, luigi));
+
+        // i token emessi dopo la revoca (nuovo login) valgono
+        Thread.sleep(2);
+        String marioAfter = tokens.issue(MARIO, System.currentTimeMillis());
+        assertTrue(valid(tokens, marioAfter));
+
+        other.syncRevocations();
+        assertFalse(valid(other, marioBefore));
+        assertTrue(valid(other, marioAfter));
+        assertTrue(valid(other, luigi));
+    }
+}
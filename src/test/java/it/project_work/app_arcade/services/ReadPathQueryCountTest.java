@@ -0,0 +1,139 @@
+package it.project_work.app_arcade.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.TestPropertySource;
+
+import it.project_work.app_arcade.dto.GameTopDTO;
+import it.project_work.app_arcade.dto.LeaderboardResponse;
+import it.project_work.app_arcade.dto.MeResponse;
+import it.project_work.app_arcade.dto.ProgressResponse;
+import it.project_work.app_arcade.models.Avatar;
+import it.project_work.app_arcade.models.User;
+import it.project_work.app_arcade.models.UserGameProgress;
+import it.project_work.app_arcade.repositories.AvatarRepository;
+import it.project_work.app_arcade.repositories.ProgressRepository;
+import it.project_work.app_arcade.repositories.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Ogni lettura che costruisce profilo o classifica deve costare una query,
+ * qualunque sia il numero di righe: niente N+1 su User/Avatar lazy.
+ */
+@SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:querycount;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class ReadPathQueryCountTest {
+
+    private static final int PLAYERS = 25;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ProgressService progressService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProgressRepository progressRepository;
+
+    @Autowired
+    private AvatarRepository avatarRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Long firstUserId;
+
+    @BeforeAll
+    void seed() {
+        Avatar avatar = new Avatar();
+        avatar.setName("base");
+        avatar.setImageUrl("/img/avatars/base.webp");
+        avatar.setRequiredLevel(1);
+        avatar.setActive(true);
+        avatar = avatarRepository.save(avatar);
+
+        for (int i = 0; i < PLAYERS; i++) {
+            User u = new User();
+            u.setUsername("player" + i);
+            u.setEmail("player" + i + "@arcade.test");
+            u.setPasswordHash("x");
+            u.setRole(User.Role.USER);
+            u.setSelectedAvatar(avatar);
+            u = userRepository.save(u);
+            if (firstUserId == null) {
+                firstUserId = u.getId();
+            }
+
+            UserGameProgress p = new UserGameProgress();
+            p.setUser(u);
+            p.setGameCode("flappy");
+            p.setBestScore(100 + i);
+            p.setLastScore(i);
+            p.setPlayedCount(1);
+            progressRepository.save(p);
+        }
+    }
+
+    private <T> T countQueries(int expected, Supplier<T> read) {
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        stats.clear();
+        T result = read.get();
+        assertEquals(expected, stats.getPrepareStatementCount(), "query eseguite");
+        return result;
+    }
+
+    @Test
+    void gameTopIsOneQuery() {
+        List<GameTopDTO> top = countQueries(1, () -> progressRepository.findGameTop("flappy", PageRequest.of(0, 20)));
+        assertEquals(20, top.size());
+        assertEquals("/img/avatars/base.webp", top.get(0).avatarUrl());
+    }
+
+    @Test
+    void globalTopIsOneQuery() {
+        List<LeaderboardResponse> top = countQueries(1, () -> progressRepository.findGlobalLeaderboard(PageRequest.of(0, 20)));
+        assertEquals(20, top.size());
+    }
+
+    @Test
+    void meIsOneQuery() {
+        MeResponse me = countQueries(1, () -> userService.me(firstUserId));
+        assertEquals(100, me.bestScore());
+        assertTrue(me.avatarId() != null);
+    }
+
+    @Test
+    void authMeIsOneQuery() {
+        assertTrue(countQueries(1, () -> userRepository.findSnapshotById(firstUserId)).isPresent());
+    }
+
+    @Test
+    void progressIsOneQuery() {
+        ProgressResponse progress = countQueries(1, () -> progressService.getProgress(firstUserId, "flappy"));
+        assertEquals(100, progress.bestScore());
+
+        // gioco mai giocato: stessa query, punteggi a zero
+        assertEquals(0, countQueries(1, () -> progressService.getProgress(firstUserId, "snake")).bestScore());
+    }
+}
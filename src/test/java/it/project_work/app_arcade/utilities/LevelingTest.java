@@ -0,0 +1,119 @@
+package it.project_work.app_arcade.utilities;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Il calcolo a tabella deve dare esattamente gli stessi LevelInfo del vecchio ciclo.
+ */
+class LevelingTest {
+
+    // implementazione originale, usata come riferimento
+    private static LevelInfo legacy(long xpTotal) {
+        long xp = Math.max(0, xpTotal);
+
+        int lvl = 1;
+        long toNext = 1000;
+
+        while (xp >= toNext) {
+            xp -= toNext;
+            lvl++;
+
+            if (toNext > Long.MAX_VALUE / 2) {
+                toNext = Long.MAX_VALUE;
+                break;
+            }
+            toNext *= 2;
+        }
+        return new LevelInfo(lvl, xp, toNext);
+    }
+
+    private static void check(long xp) {
+        LevelInfo expected = legacy(xp);
+        assertEquals(expected, Leveling.fromTotalXp(xp), () -> "xp=" + xp);
+        assertEquals(expected.level(), Leveling.levelOf(xp), () -> "levelOf xp=" + xp);
+    }
+
+    @Test
+    void sameAsLegacyForEveryValueUpToTwoMillion() {
+        for (long xp = -10; xp <= 2_000_000; xp++) {
+            check(xp);
+        }
+    }
+
+    @Test
+    void sameAsLegacyAroundEveryLevelBoundary() {
+        long start = 0;
+        long toNext = 1000;
+        while (true) {
+            for (long d = -3; d <= 3; d++) {
+                check(start + d);
+            }
+            if (start > Long.MAX_VALUE - toNext) {
+                break;
+            }
+            start += toNext;
+            if (toNext > Long.MAX_VALUE / 2) {
+                break;
+            }
+            toNext *= 2;
+        }
+        check(Long.MAX_VALUE);
+        check(Long.MAX_VALUE - 1);
+        check(Long.MIN_VALUE);
+    }
+
+    @Test
+    void sameAsLegacyOnRandomValues() {
+        SplittableRandom rnd = new SplittableRandom(2024);
+        for (int k = 0; k < 1_000_000; k++) {
+            // distribuzione su tutti gli ordini di grandezza
+            check(rnd.nextLong() >>> rnd.nextInt(64));
+        }
+    }
+
+    // regola usata nell'UPDATE di UserRepository.addXp: LENGTH(BIN(xp DIV 1000 + 1))
+    private static int sqlLevel(long xp) {
+        return 64 - Long.numberOfLeadingZeros(xp / 1000 + 1);
+    }
+
+    @Test
+    void sqlFormulaMatchesLeveling() {
+        for (long xp = 0; xp <= 2_000_000; xp++) {
+            assertEquals(Leveling.levelOf(xp), sqlLevel(xp), "xp=" + xp);
+        }
+        long start = 0;
+        long toNext = 1000;
+        while (start <= Long.MAX_VALUE - toNext && toNext <= Long.MAX_VALUE / 2) {
+            for (long d = -2; d <= 2; d++) {
+                long xp = start + toNext + d;
+                assertEquals(Leveling.levelOf(xp), sqlLevel(xp), "xp=" + xp);
+            }
+            start += toNext;
+            toNext *= 2;
+        }
+        SplittableRandom rnd = new SplittableRandom(11);
+        for (int k = 0; k < 1_000_000; k++) {
+            long xp = rnd.nextLong() >>> rnd.nextInt(1, 64);
+            assertEquals(Leveling.levelOf(xp), sqlLevel(xp), "xp=" + xp);
+        }
+        assertEquals(Leveling.levelOf(Long.MAX_VALUE), sqlLevel(Long.MAX_VALUE));
+    }
+
+    @Test
+    void bulkMatchesSingle() {
+        SplittableRandom rnd = new SplittableRandom(7);
+        long[] xp = new long[10_000];
+        for (int k = 0; k < xp.length; k++) {
+            xp[k] = rnd.nextLong() >>> rnd.nextInt(64);
+        }
+        int[] levels = new int[xp.length];
+        Leveling.levelsOf(xp, levels);
+        for (int k = 0; k < xp.length; k++) {
+            assertEquals(legacy(xp[k]).level(), levels[k]);
+        }
+    }
+}